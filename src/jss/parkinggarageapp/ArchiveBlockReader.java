@@ -0,0 +1,279 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * ArchiveBlockReader class is used to read an archive written by the
+ * ArchiveBlockWriter one block at a time, so memory use depends on the block
+ * size and not on the size of the day. Blocks can be decoded back to
+ * transactions, or totalled straight into a TransactionSummary without building
+ * a transaction or decoding the tickets and vehicles at all. Only archives of
+ * the writer's current version are read.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class ArchiveBlockReader implements Closeable {
+    private final DataInputStream in;
+    private final String garageName;
+    private final int day;
+    private double[] calcRates;
+    private boolean finished;
+
+    /**
+     * Overrides the default constructor requiring the stream to be passed in. The
+     * header is read straight away.
+     *
+     * @param in Stream the archive is read from
+     * @throws IOException If the stream cannot be read, is not an archive or is from another version
+     * @throws IllegalArgumentException Stream cannot be null
+     */
+    public ArchiveBlockReader(InputStream in) throws IOException, IllegalArgumentException {
+        if (in == null) {
+            throw new IllegalArgumentException("Stream cannot be null");
+        }
+        this.in = new DataInputStream(new BufferedInputStream(in, 65536));
+        try {
+            if (this.in.readInt() != ArchiveBlockWriter.MAGIC) {
+                throw new IOException("Not a transaction archive");
+            }
+            int version = this.in.readInt();
+            if (version != ArchiveBlockWriter.VERSION) {
+                throw new IOException("Unsupported archive version " + version + ", expected " + ArchiveBlockWriter.VERSION);
+            }
+            garageName = this.in.readUTF();
+            day = this.in.readInt();
+        } catch (IOException ex) {
+            this.in.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * nextBlock decodes the next block back to transactions
+     *
+     * @return List of the block's transactions in the order they were written, or null after the last block
+     * @throws IOException If the stream cannot be read
+     */
+    public final List<Transaction> nextBlock() throws IOException {
+        int rows = readRows();
+        if (rows == 0) {
+            return null;
+        }
+        String[] calcIDs = readCalcIDs();
+        double[] feeValues = readFees();
+
+        int[] tickets = new int[rows];
+        readVarint(in);
+        int ticket = 0;
+        for (int i = 0; i < rows; i++) {
+            int zigzag = (int) readVarint(in);
+            ticket += (zigzag >>> 1) ^ -(zigzag & 1);
+            tickets[i] = ticket;
+        }
+
+        String[] vehicleIDs = new String[rows];
+        readVarint(in);
+        char[] chars = new char[4];
+        for (int i = 0; i < rows; i++) {
+            for (int c = 0; c < 4; c++) {
+                chars[c] = (char) readVarint(in);
+            }
+            vehicleIDs[i] = new String(chars);
+        }
+
+        double[] hours = new double[rows];
+        readVarint(in);
+        for (int i = 0; i < rows; i++) {
+            hours[i] = hundredths(readVarint(in)) / 100.0;
+        }
+
+        double[] fees = new double[rows];
+        readVarint(in);
+        for (int i = 0; i < rows; i++) {
+            fees[i] = feeValues[(int) readVarint(in)];
+        }
+
+        List<Transaction> transactions = new ArrayList<Transaction>(rows);
+        readVarint(in);
+        for (int i = 0; i < rows; i++) {
+            int calc = (int) readVarint(in);
+            transactions.add(new Transaction(tickets[i], vehicleIDs[i], hours[i], fees[i],
+                    calcIDs[calc], garageName, day, calcRates[calc]));
+        }
+        return transactions;
+    }
+
+    /**
+     * skipBlock moves past the next block without decoding its rows
+     *
+     * @return Integer containing the number of rows skipped, zero after the last block
+     * @throws IOException If the stream cannot be read
+     */
+    public final int skipBlock() throws IOException {
+        int rows = readRows();
+        if (rows == 0) {
+            return 0;
+        }
+        readCalcIDs();
+        int feeCount = (int) readVarint(in);
+        for (int i = 0; i < feeCount; i++) {
+            readVarint(in);
+        }
+        for (int section = 0; section < 5; section++) {
+            skipSection();
+        }
+        return rows;
+    }
+
+    /**
+     * aggregate totals every remaining block, skipping the ticket and vehicle
+     * sections and only decoding the hours, fees and calculators
+     *
+     * @return Instance of the TransactionSummary with the totals
+     * @throws IOException If the stream cannot be read
+     */
+    public final TransactionSummary aggregate() throws IOException {
+        TransactionSummary summary = new TransactionSummary();
+        int rows;
+        while ((rows = readRows()) != 0) {
+            String[] calcIDs = readCalcIDs();
+            int feeCount = (int) readVarint(in);
+            long[] feeCents = new long[feeCount];
+            for (int i = 0; i < feeCount; i++) {
+                feeCents[i] = readVarint(in);
+            }
+            skipSection();
+            skipSection();
+
+            long[] hours = new long[rows];
+            readVarint(in);
+            for (int i = 0; i < rows; i++) {
+                hours[i] = hundredths(readVarint(in));
+            }
+
+            int[] feeIndexes = new int[rows];
+            readVarint(in);
+            for (int i = 0; i < rows; i++) {
+                feeIndexes[i] = (int) readVarint(in);
+            }
+
+            long[][] totals = new long[calcIDs.length][3];
+            readVarint(in);
+            for (int i = 0; i < rows; i++) {
+                long[] total = totals[(int) readVarint(in)];
+                total[0]++;
+                total[1] += feeCents[feeIndexes[i]];
+                total[2] += hours[i];
+            }
+            for (int c = 0; c < calcIDs.length; c++) {
+                if (totals[c][0] > 0) {
+                    summary.add(calcIDs[c], totals[c][0], totals[c][1], totals[c][2]);
+                }
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Gets the name of the garage the archive belongs to
+     *
+     * @return String containing the garage name
+     */
+    public final String getGarageName() {
+        return garageName;
+    }
+
+    /**
+     * Gets the day of the archive
+     *
+     * @return Integer containing the day in yyyyMMdd form
+     */
+    public final int getDay() {
+        return day;
+    }
+
+    /**
+     * close closes the stream
+     *
+     * @throws IOException If the stream cannot be closed
+     */
+    @Override
+    public final void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * readRows reads the row count of the next block, zero once the end marker is reached
+     */
+    private int readRows() throws IOException {
+        if (finished) {
+            return 0;
+        }
+        int rows = (int) readVarint(in);
+        if (rows == 0) {
+            finished = true;
+        }
+        return rows;
+    }
+
+    /**
+     * readCalcIDs reads the calculator dictionary, keeping the rates of the block in calcRates
+     */
+    private String[] readCalcIDs() throws IOException {
+        String[] calcIDs = new String[(int) readVarint(in)];
+        calcRates = new double[calcIDs.length];
+        for (int i = 0; i < calcIDs.length; i++) {
+            calcIDs[i] = in.readUTF();
+            calcRates[i] = readVarint(in) / 10000.0;
+        }
+        return calcIDs;
+    }
+
+    private double[] readFees() throws IOException {
+        double[] fees = new double[(int) readVarint(in)];
+        for (int i = 0; i < fees.length; i++) {
+            fees[i] = readVarint(in) / 100.0;
+        }
+        return fees;
+    }
+
+    private void skipSection() throws IOException {
+        long length = readVarint(in);
+        while (length > 0) {
+            int skipped = in.skipBytes((int) Math.min(length, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                throw new EOFException("Archive ends inside a block");
+            }
+            length -= skipped;
+        }
+    }
+
+    /**
+     * hundredths turns an hours code back into hundredths of an hour
+     */
+    private static long hundredths(long code) {
+        return (code & 1) == 0 ? (code >>> 1) * 100 : code >>> 1;
+    }
+
+    /**
+     * readVarint reads a number written by ArchiveBlockWriter.writeVarint
+     *
+     * @param in Stream the number is read from
+     * @return Long containing the number
+     * @throws IOException If the stream cannot be read or the number is too long
+     */
+    static long readVarint(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in archive");
+    }
+
+}
@@ -0,0 +1,241 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * ArchiveBlockWriter class is used to write an archived day in a compact binary
+ * form instead of one line of text per transaction. The file starts with the
+ * garage name and day, then holds blocks of up to BLOCK_ROWS transactions, each
+ * laid out as:
+ * <pre>
+ *   rows                      varint, zero marks the end of the file
+ *   calculator dictionary     count, then each calculator ID and the rate it applied in ten-thousandths
+ *   fee dictionary            count, then each distinct fee in cents
+ *   ticket section            byte length, then each ticket as a zigzag delta from the one before
+ *   vehicle section           byte length, then the four characters of each vehicle ID
+ *   hours section             byte length, then whole hours times two, or hundredths times two plus one
+ *   fee section               byte length, then each fee's dictionary number
+ *   calculator section        byte length, then each calculator's dictionary number
+ * </pre>
+ * Every number is a varint, seven bits to a byte, so most fields take one byte.
+ * The sections carry their length so a reader totalling fees and hours can skip
+ * the tickets and vehicles without decoding them.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class ArchiveBlockWriter implements Closeable {
+    public static final int MAGIC = 0x47424C4B;
+    public static final int VERSION = 2;
+    public static final int BLOCK_ROWS = 4096;
+
+    private final DataOutputStream out;
+    private final Transaction[] block = new Transaction[BLOCK_ROWS];
+    private int rows;
+    private final ByteArrayOutputStream tickets = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream vehicles = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream hours = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream fees = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream calcs = new ByteArrayOutputStream();
+
+    /**
+     * Overrides the default constructor requiring the stream, garage name and day
+     * to be passed in. The header is written straight away.
+     *
+     * @param out Stream the archive is written to
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @throws IOException If the header cannot be written
+     * @throws IllegalArgumentException Stream and garage name cannot be null
+     */
+    public ArchiveBlockWriter(OutputStream out, String garageName, int day) throws IOException, IllegalArgumentException {
+        if (out == null || garageName == null) {
+            throw new IllegalArgumentException("Stream and garage name cannot be null");
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 65536));
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        this.out.writeUTF(garageName);
+        this.out.writeInt(day);
+    }
+
+    /**
+     * add queues a transaction and writes the block once it is full
+     *
+     * @param transaction Instance of the Transaction class
+     * @throws IOException If a block cannot be written
+     * @throws IllegalArgumentException Transaction cannot be null
+     */
+    public final void add(Transaction transaction) throws IOException, IllegalArgumentException {
+        if (transaction == null) {
+            throw new IllegalArgumentException("Transaction cannot be null");
+        }
+        block[rows++] = transaction;
+        if (rows == BLOCK_ROWS) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * close writes the last block and the end marker and closes the stream
+     *
+     * @throws IOException If the stream cannot be written
+     */
+    @Override
+    public final void close() throws IOException {
+        if (rows > 0) {
+            writeBlock();
+        }
+        writeVarint(out, 0);
+        out.close();
+    }
+
+    /**
+     * writeBlock builds the dictionaries and sections for the queued rows and writes them
+     */
+    private void writeBlock() throws IOException {
+        Map<String, Integer> calcLookup = new LinkedHashMap<String, Integer>();
+        List<String> calcIDs = new ArrayList<String>();
+        List<Long> calcRates = new ArrayList<Long>();
+        Map<Long, Integer> feeLookup = new LinkedHashMap<Long, Integer>();
+        tickets.reset();
+        vehicles.reset();
+        hours.reset();
+        fees.reset();
+        calcs.reset();
+        int previousTicket = 0;
+
+        for (int i = 0; i < rows; i++) {
+            Transaction transaction = block[i];
+            block[i] = null;
+
+            int ticket = transaction.getTicketNumber();
+            int delta = ticket - previousTicket;
+            writeVarint(tickets, (delta << 1) ^ (delta >> 31));
+            previousTicket = ticket;
+
+            String vehicleID = transaction.getVehicleID();
+            for (int c = 0; c < 4; c++) {
+                writeVarint(vehicles, vehicleID.charAt(c));
+            }
+
+            long hundredths = TransactionHistory.toHundredths(transaction.getHours());
+            if (hundredths % 100 == 0) {
+                writeVarint(hours, (hundredths / 100) << 1);
+            } else {
+                writeVarint(hours, (hundredths << 1) | 1);
+            }
+
+            Long cents = TransactionHistory.toCents(transaction.getFees());
+            Integer feeIndex = feeLookup.get(cents);
+            if (feeIndex == null) {
+                feeIndex = feeLookup.size();
+                feeLookup.put(cents, feeIndex);
+            }
+            writeVarint(fees, feeIndex);
+
+            long rate = Math.round(transaction.getRate() * 10000);
+            String calcKey = transaction.getCalcID() + rate;
+            Integer calcIndex = calcLookup.get(calcKey);
+            if (calcIndex == null) {
+                calcIndex = calcLookup.size();
+                calcLookup.put(calcKey, calcIndex);
+                calcIDs.add(transaction.getCalcID());
+                calcRates.add(rate);
+            }
+            writeVarint(calcs, calcIndex);
+        }
+
+        writeVarint(out, rows);
+        writeVarint(out, calcIDs.size());
+        for (int c = 0; c < calcIDs.size(); c++) {
+            out.writeUTF(calcIDs.get(c));
+            writeVarint(out, calcRates.get(c));
+        }
+        writeVarint(out, feeLookup.size());
+        for (Long cents : feeLookup.keySet()) {
+            writeVarint(out, cents);
+        }
+        for (ByteArrayOutputStream section : new ByteArrayOutputStream[]{tickets, vehicles, hours, fees, calcs}) {
+            writeVarint(out, section.size());
+            section.writeTo(out);
+        }
+        rows = 0;
+    }
+
+    /**
+     * writeVarint writes a non-negative number seven bits at a time, lowest bits
+     * first, with the high bit set on every byte but the last
+     *
+     * @param out Stream the number is written to
+     * @param value Long containing a number that is not negative
+     * @throws IOException If the stream cannot be written
+     */
+    static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Converts a plain text segment to an archive and compares the size and the
+     * time to total each.
+     *
+     * Usage: ArchiveBlockWriter segment.txt archive.blk
+     *
+     * @param args Text segment path and archive path
+     * @throws IOException If a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        File text = new File(args[0]);
+        File archive = new File(args[1]);
+        String garageName = null;
+        int day = 0;
+
+        ArchiveBlockWriter writer = null;
+        try (BufferedReader in = new BufferedReader(new FileReader(text))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                Transaction transaction = TransactionFileFormat.parse(line);
+                if (writer == null) {
+                    garageName = transaction.getGarageName();
+                    day = transaction.getDay();
+                    writer = new ArchiveBlockWriter(new FileOutputStream(archive), garageName, day);
+                }
+                writer.add(transaction);
+            }
+        }
+        if (writer == null) {
+            System.out.println("Segment is empty");
+            return;
+        }
+        writer.close();
+
+        long start = System.nanoTime();
+        TransactionSummary fromText = new TransactionSummary();
+        try (BufferedReader in = new BufferedReader(new FileReader(text))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                Transaction transaction = TransactionFileFormat.parse(line);
+                fromText.add(transaction.getCalcID(), TransactionHistory.toCents(transaction.getFees()),
+                        TransactionHistory.toHundredths(transaction.getHours()));
+            }
+        }
+        long textNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        TransactionSummary fromArchive;
+        try (ArchiveBlockReader reader = new ArchiveBlockReader(new FileInputStream(archive))) {
+            fromArchive = reader.aggregate();
+        }
+        long archiveNanos = System.nanoTime() - start;
+
+        System.out.println(String.format("text=%d bytes archive=%d bytes ratio=%.1fx textScan=%.1fms archiveScan=%.1fms identical=%b",
+                text.length(), archive.length(), (double) text.length() / archive.length(),
+                textNanos / 1e6, archiveNanos / 1e6, fromText.equals(fromArchive)));
+    }
+
+}
@@ -1,10 +1,12 @@
 package jss.parkinggarageapp;
 
+import java.io.*;
 import java.util.*;
 
 /**
  * AutomatedTeller class is used to take in the vehicle information as well as output
- * fees and totals for the garage program
+ * fees and totals for the garage program. Methods that read or change the receipt
+ * are synchronized so one teller can be shared by several gates or request threads.
  * 
  * @author Jamie Studzinski
  * @version 1.2
@@ -13,6 +15,11 @@ public class AutomatedTeller {
     private Receipt receipt;
     private ReceiptOutputStrategy ros;
     private Garage garage;
+    private int lastTicketNum;
+    private int day = Transaction.today();
+    private DailySegmentStore segmentStore;
+    private TransactionSummary daySummary = new TransactionSummary();
+    private GateEventRing eventRing;
 
     /**
      * Overrides the default constructor requiring a receipt, ReceiptOutputStrategy
@@ -36,76 +43,844 @@ public class AutomatedTeller {
      * @param garage Instance of the Garage class
      * @throws IllegalArgumentException Garage object cannot be null
      */
-    public final void startNewDay(Garage garage) throws IllegalArgumentException{
+    public final synchronized void startNewDay(Garage garage) throws IllegalArgumentException{
+        startNewDay(garage, Transaction.today());
+    }
+
+    /**
+     * startNewDay method is used to clear all totals for the previous day and start
+     * fresh on the given day. When an event ring is set its consumers finish the
+     * events already published first. When a segment store is set the previous day's
+     * segment is closed, and vehicles the old receipt still had parked are
+     * counted out of the garage's occupancy and give back their spots along with it.
+     * When the old receipt spilled closed visits the new one spills to the same
+     * spill, emptied for the new day.
+     * 
+     * @param garage Instance of the Garage class
+     * @param day Integer containing the new day in yyyyMMdd form
+     * @throws IllegalArgumentException Garage object cannot be null
+     * @throws IllegalStateException The previous day's segment could not be closed or a consumer that stops on errors has stopped
+     */
+    public final synchronized void startNewDay(Garage garage, int day) throws IllegalArgumentException, IllegalStateException{
         if(garage == null) {
             throw new IllegalArgumentException("Garage object cannot be null");
         } else {
+            drain();
+            if (segmentStore != null) {
+                try {
+                    segmentStore.closeDay(this.garage.getName(), this.day);
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Could not close the segment for " + this.day, ex);
+                }
+            }
+            for (Vehicle vehicle : receipt.getVehicles()) {
+                if (!vehicle.getTicket().isPaid()) {
+                    release(receipt.getGarage(), vehicle.getTicket());
+                }
+            }
+            ClosedTicketSpill spill = receipt.getSpill();
+            int maxClosed = receipt.getMaxClosed();
             receipt = new Receipt(garage);
+            if (spill != null) {
+                receipt.setSpill(spill, maxClosed);
+            }
             receipt.resetForNewDay();
+            receipt.setDay(day);
+            daySummary = new TransactionSummary();
+            this.day = day;
         }
     }
     
     /**
-     * parkNewVehicle method will add the vehicle to an array in the receipt class
+     * parkNewVehicle method will add the vehicle to an array in the receipt class.
+     * When the garage assigns spots the vehicle is given the free spot nearest the
+     * exit, and when it tracks occupancy the vehicle is counted in on that spot's
+     * level, or the first level with room. The spot and level are kept on its ticket.
+     * When the garage takes bookings the vehicle is matched to its booking for the
+     * time it arrived by vehicle ID, and the reservation is kept on its ticket too.
+     * The vehicle arrives now unless the arrival time is passed in. When an event
+     * ring is set the check-in is published to it for its consumers to journal,
+     * its slot being claimed before the vehicle is parked so a ring that has
+     * stopped leaves the garage as it was. Otherwise, when a segment store is set
+     * the check-in is journaled to it.
      * 
      * @param vehicleID String contain a unique ID for the vehicle
      * @param hours Total number of hours the car was parked at the garage
      * @param ticketNum A unique number for the ticket
-     * @throws IllegalArgumentException  VehicleID cannot be null, Hours has to be between 1 and 24
+     * @throws IllegalArgumentException  VehicleID cannot be null and must be 4 characters long, Hours has to be between 1 and 24
+     * @throws IllegalStateException The garage is full, the event ring has stopped, or the booking could not be journaled, in which case the vehicle is not parked, or the check-in could not be journaled, in which case the vehicle is still parked
      */
-    public final void parkNewVehicle(String vehicleID, double hours, int ticketNum) throws IllegalArgumentException{
-       if (vehicleID == null || hours <= 0 || hours > 24) {
-           throw new IllegalArgumentException("vehicleID cannot be null, hours has to be greater than zero or less than 24");
+    public final synchronized void parkNewVehicle(String vehicleID, double hours, int ticketNum) throws IllegalArgumentException, IllegalStateException{
+        parkNewVehicle(vehicleID, hours, ticketNum, System.currentTimeMillis());
+    }
+
+    /**
+     * parkNewVehicle parks a vehicle the way parkNewVehicle(vehicleID, hours,
+     * ticketNum) does, matching it to its booking for the time it arrived at the
+     * gate rather than the time the check-in reached the teller
+     * 
+     * @param vehicleID String contain a unique ID for the vehicle
+     * @param hours Total number of hours the car was parked at the garage
+     * @param ticketNum A unique number for the ticket
+     * @param arrivalMillis Long containing the time the vehicle arrived in milliseconds
+     * @throws IllegalArgumentException  VehicleID cannot be null and must be 4 characters long, Hours has to be between 1 and 24
+     * @throws IllegalStateException The garage is full, the event ring has stopped, or the booking could not be journaled, in which case the vehicle is not parked, or the check-in could not be journaled, in which case the vehicle is still parked
+     */
+    public final synchronized void parkNewVehicle(String vehicleID, double hours, int ticketNum, long arrivalMillis) throws IllegalArgumentException, IllegalStateException{
+       if (Receipt.validateVehicle(vehicleID, hours) != GateStatus.OK) {
+           throw new IllegalArgumentException("vehicleID cannot be null and must be 4 characters long, hours has to be greater than zero and at most 24");
        } else {
-           receipt.addVehicleToArray(vehicleID, hours, ticketNum);
+           Garage parkedAt = receipt.getGarage();
+           int[] place = admit(parkedAt, -1, -1);
+           if (place == null) {
+               throw new IllegalStateException(parkedAt.getName() + " is full");
+           }
+           ReservationCalendar.Reservation booking = matchBooking(parkedAt, vehicleID, arrivalMillis, place);
+           long sequence = claimCheckIn(parkedAt, place, booking);
+           Vehicle vehicle = receipt.addVehicleToArray(vehicleID, hours, ticketNum);
+           checkedIn(vehicle, place, booking);
+           if (eventRing != null) {
+               publishCheckIn(sequence, vehicle);
+           } else {
+               journalCheckIns(Collections.singletonList(vehicle));
+           }
        }
     }
+
+    /**
+     * validateParkNewVehicle checks whether a vehicle could park without throwing,
+     * for checking many vehicles where most bad ones are expected. The vehicle
+     * is not parked, so another thread using the teller may take the last spot
+     * before it is.
+     * 
+     * @param vehicleID String contain a unique ID for the vehicle
+     * @param hours Total number of hours the car was parked at the garage
+     * @return GateStatus.OK, GateStatus.BAD_VEHICLE_ID, GateStatus.BAD_HOURS or GateStatus.GARAGE_FULL
+     */
+    public final synchronized int validateParkNewVehicle(String vehicleID, double hours) {
+        int status = Receipt.validateVehicle(vehicleID, hours);
+        if (status != GateStatus.OK) {
+            return status;
+        }
+        Garage parkedAt = receipt.getGarage();
+        if ((parkedAt.getSpotAllocator() != null && parkedAt.getSpotAllocator().getFree() == 0)
+                || (parkedAt.getOccupancy() != null && parkedAt.getOccupancy().isFull())) {
+            return GateStatus.GARAGE_FULL;
+        }
+        return GateStatus.OK;
+    }
+
+    /**
+     * validateCheckoutVehicle checks whether a vehicle could check out without
+     * throwing
+     * 
+     * @param vehicleID String containing a unique ID for the vehicle
+     * @return GateStatus.OK, GateStatus.BAD_VEHICLE_ID or GateStatus.NOT_PARKED
+     */
+    public final synchronized int validateCheckoutVehicle(String vehicleID) {
+        int status = Vehicle.validateVehicleID(vehicleID);
+        if (status != GateStatus.OK) {
+            return status;
+        }
+        return receipt.findVehicle(vehicleID) == null ? GateStatus.NOT_PARKED : GateStatus.OK;
+    }
+
+    /**
+     * parkNewVehicles parks a batch of vehicles in one call, such as the check-ins
+     * a gate kept while its connection was down. Each vehicle is given the next
+     * ticket number issued by this teller. The IDs and hours of the whole batch
+     * are checked first with GateValidator, in parallel for a large batch, and a
+     * vehicle that cannot park is given a status in the result instead of
+     * throwing while the rest of the batch parks. The receipt's vehicle array is
+     * grown once for the whole batch. Every vehicle is matched to its booking
+     * for the time the batch reaches the teller. When an event ring is set each
+     * check-in is published as parkNewVehicle does it, so if the ring stops part
+     * way the vehicles before are parked and the rest are not. Otherwise, when a
+     * segment store is set the batch is journaled in one write.
+     * 
+     * @param vehicleIDs Array of Strings containing the ID of each vehicle
+     * @param hours Array of Doubles containing the hours of each vehicle
+     * @return GateBatchResult with the status and ticket number of each vehicle
+     * @throws IllegalArgumentException Arrays cannot be null and must be the same length
+     * @throws IllegalStateException The event ring has stopped, or the check-ins could not be journaled, in which case the vehicles are still parked
+     */
+    public final synchronized GateBatchResult parkNewVehicles(String[] vehicleIDs, double[] hours) throws IllegalArgumentException, IllegalStateException{
+        return parkNewVehicles(vehicleIDs, hours, null);
+    }
+
+    /**
+     * parkNewVehicles parks a batch of vehicles the way parkNewVehicles(vehicleIDs,
+     * hours) does, matching each one to its booking for the time it arrived at
+     * the gate, so a batch a gate kept while its connection was down matches the
+     * bookings the vehicles came for and not the ones current when it is sent. If
+     * a booking cannot be journaled the batch stops there; the vehicles before it
+     * are parked and journaled and the rest are not parked.
+     * 
+     * @param vehicleIDs Array of Strings containing the ID of each vehicle
+     * @param hours Array of Doubles containing the hours of each vehicle
+     * @param arrivalMillis Array of Longs containing the time each vehicle arrived in milliseconds, or null for now
+     * @return GateBatchResult with the status and ticket number of each vehicle
+     * @throws IllegalArgumentException Arrays cannot be null, other than the arrival times, and must be the same length
+     * @throws IllegalStateException The event ring has stopped, a booking could not be journaled, or the check-ins could not be journaled, in which case the vehicles are still parked
+     */
+    public final synchronized GateBatchResult parkNewVehicles(String[] vehicleIDs, double[] hours, long[] arrivalMillis) throws IllegalArgumentException, IllegalStateException{
+        if (vehicleIDs == null || hours == null || vehicleIDs.length != hours.length
+                || (arrivalMillis != null && arrivalMillis.length != vehicleIDs.length)) {
+            throw new IllegalArgumentException("Arrays cannot be null and must be the same length");
+        }
+        long now = System.currentTimeMillis();
+        GateBatchResult result = new GateBatchResult(vehicleIDs.length);
+        Garage parkedAt = receipt.getGarage();
+        List<Vehicle> parked = new ArrayList<Vehicle>(vehicleIDs.length);
+        byte[] statuses = GateValidator.validateAll(vehicleIDs, hours);
+        receipt.ensureCapacity(vehicleIDs.length);
+        try {
+            for (int i = 0; i < vehicleIDs.length; i++) {
+                String vehicleID = vehicleIDs[i];
+                int status = statuses[i];
+                if (status != GateStatus.OK) {
+                    result.reject(i, status);
+                } else {
+                    int[] place = admit(parkedAt, -1, -1);
+                    if (place == null) {
+                        result.reject(i, GateStatus.GARAGE_FULL);
+                    } else {
+                        ReservationCalendar.Reservation booking = matchBooking(parkedAt, vehicleID,
+                                arrivalMillis == null ? now : arrivalMillis[i], place);
+                        long sequence = claimCheckIn(parkedAt, place, booking);
+                        Vehicle vehicle = receipt.addVehicleToArray(vehicleID, hours[i], lastTicketNum + 1);
+                        checkedIn(vehicle, place, booking);
+                        if (eventRing != null) {
+                            publishCheckIn(sequence, vehicle);
+                        } else {
+                            parked.add(vehicle);
+                        }
+                        result.accept(i, lastTicketNum, 0);
+                    }
+                }
+            }
+        } catch (IllegalStateException ex) {
+            try {
+                journalCheckIns(parked);
+            } catch (IllegalStateException journalEx) {
+                ex.addSuppressed(journalEx);
+            }
+            throw ex;
+        }
+        journalCheckIns(parked);
+        return result;
+    }
+
+    /**
+     * matchBooking matches a vehicle that has been given its place to its booking
+     * for the time it arrived, when the garage takes bookings, giving the place
+     * back if the match could not be journaled
+     * 
+     * @return Instance of the Reservation matched, or null when there is none
+     */
+    private ReservationCalendar.Reservation matchBooking(Garage parkedAt, String vehicleID, long arrivalMillis, int[] place)
+            throws IllegalStateException {
+        if (parkedAt.getReservations() == null) {
+            return null;
+        }
+        try {
+            return parkedAt.getReservations().checkIn(vehicleID, arrivalMillis);
+        } catch (IllegalStateException ex) {
+            release(parkedAt, place[0], place[1]);
+            throw ex;
+        }
+    }
+
+    /**
+     * checkedIn keeps the spot, level and booking of a vehicle that has just
+     * parked on its ticket
+     */
+    private void checkedIn(Vehicle vehicle, int[] place, ReservationCalendar.Reservation booking) {
+        ParkingTicket ticket = vehicle.getTicket();
+        setPlace(ticket, place);
+        if (booking != null) {
+            ticket.setReservationID(booking.getReservationID());
+        }
+        lastTicketNum = Math.max(lastTicketNum, ticket.getTicketNumber());
+    }
+
+    /**
+     * journalCheckIns writes check-ins to the segment store when one is set
+     */
+    private void journalCheckIns(List<Vehicle> parked) throws IllegalStateException {
+        if (segmentStore != null && !parked.isEmpty()) {
+            try {
+                segmentStore.appendCheckIns(garage.getName(), day, parked);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not journal the check-ins for " + day, ex);
+            }
+        }
+    }
+
+    /**
+     * claimCheckIn claims a slot in the event ring, when one is set, for a vehicle
+     * that has been given its place and booking but not yet parked, giving the
+     * place and booking back if the ring has stopped
+     * 
+     * @return Long containing the sequence of the slot, -1 when there is no ring
+     */
+    private long claimCheckIn(Garage parkedAt, int[] place, ReservationCalendar.Reservation booking) throws IllegalStateException {
+        if (eventRing == null) {
+            return -1;
+        }
+        try {
+            return eventRing.next();
+        } catch (IllegalStateException ex) {
+            release(parkedAt, place[0], place[1]);
+            if (booking != null) {
+                try {
+                    parkedAt.getReservations().undoCheckIn(booking.getReservationID());
+                } catch (IllegalStateException undoEx) {
+                    ex.addSuppressed(undoEx);
+                }
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * publishCheckIn fills in a claimed slot with a vehicle that has parked and publishes it
+     */
+    private void publishCheckIn(long sequence, Vehicle vehicle) {
+        ParkingTicket ticket = vehicle.getTicket();
+        eventRing.get(sequence).setCheckIn(ticket.getTicketNumber(), vehicle.getVehicleID(), ticket.getHours(),
+                ticket.getSpot(), ticket.getLevel(), ticket.getReservationID(), receipt.getGarage().getName(), day);
+        eventRing.publish(sequence);
+    }
+
+    /**
+     * drain lets the event ring's consumers finish the events already published,
+     * when a ring is set
+     */
+    private void drain() throws IllegalStateException {
+        if (eventRing != null) {
+            eventRing.drain();
+        }
+    }
+
+    /**
+     * admit gives a vehicle a spot and counts it into a level when the garage
+     * tracks them, trying the spot and level it had before first
+     * 
+     * @return Array holding the spot and level, -1 for those not tracked, or null when there is no room
+     */
+    private int[] admit(Garage garage, int spot, int level) {
+        SpotAllocator spots = garage.getSpotAllocator();
+        OccupancyTracker occupancy = garage.getOccupancy();
+        if (spots != null) {
+            if (spot < 0 || spot >= spots.getCapacity() || !spots.take(spot)) {
+                spot = spots.allocate();
+                if (spot < 0) {
+                    return null;
+                }
+            }
+            level = spots.getLevel(spot);
+        } else {
+            spot = -1;
+        }
+        if (occupancy != null) {
+            if (level >= 0 && level < occupancy.getLevelCount() && occupancy.enter(level)) {
+                return new int[]{spot, level};
+            }
+            level = spots == null ? occupancy.enter() : -1;
+            if (level < 0) {
+                if (spot >= 0) {
+                    spots.free(spot);
+                }
+                return null;
+            }
+        }
+        return new int[]{spot, level};
+    }
+
+    /**
+     * release gives back a vehicle's spot and counts it out of its level
+     */
+    private void release(Garage garage, ParkingTicket ticket) {
+        release(garage, ticket.getSpot(), garage.getOccupancy() == null ? -1 : ticket.getLevel());
+    }
+
+    private void release(Garage garage, int spot, int level) {
+        if (spot >= 0 && garage.getSpotAllocator() != null) {
+            garage.getSpotAllocator().free(spot);
+        }
+        if (level >= 0 && garage.getOccupancy() != null) {
+            garage.getOccupancy().exit(level);
+        }
+    }
+
+    private static void setPlace(ParkingTicket ticket, int[] place) {
+        if (place[0] >= 0) {
+            ticket.setSpot(place[0]);
+        }
+        if (place[1] >= 0) {
+            ticket.setLevel(place[1]);
+        }
+    }
+
+    /**
+     * parkNewVehicle method will add the vehicle to an array in the receipt class
+     * using the next ticket number issued by this teller
+     * 
+     * @param vehicleID String contain a unique ID for the vehicle
+     * @param hours Total number of hours the car was parked at the garage
+     * @return The ticket number issued to the vehicle
+     * @throws IllegalArgumentException  VehicleID cannot be null, Hours has to be between 1 and 24
+     * @throws IllegalStateException The garage is full
+     */
+    public final synchronized int parkNewVehicle(String vehicleID, double hours) throws IllegalArgumentException, IllegalStateException{
+        parkNewVehicle(vehicleID, hours, lastTicketNum + 1);
+        return lastTicketNum;
+    }
     
     /**
      * outputFee uses the vehicleID to gather the total hours and fees for the particular
-     * vehicle
+     * vehicle. After the vehicle has checked out this reprints its last receipt.
+     * When an event ring is set the receipt is published as a RECEIPT_PRINTED
+     * event for the ring's receipt consumer to output.
      * 
      * @param vehicleID String containing a unique ID for the vehicle
      * @throws IllegalArgumentException VehicleID cannot be null
+     * @throws IllegalStateException The event ring has stopped
      */
-    public final void outputFee(String vehicleID) throws IllegalArgumentException{
+    public final synchronized void outputFee(String vehicleID) throws IllegalArgumentException, IllegalStateException{
         if(vehicleID == null) {
             throw new IllegalArgumentException("vehicleID cannot be null");
+        } else if (eventRing != null) {
+            ReceiptRecord record = receipt.getRecord(vehicleID);
+            eventRing.publishPriced(GateEvent.Type.RECEIPT_PRINTED, record.getTicketNumber(), vehicleID,
+                    record.getHours(), record.getFee(), record.getCalcID(), record.getRate(), record.getGarageName(), day);
         } else {
             ros.displayCarFee(receipt, vehicleID);
         }
     }
+
+    /**
+     * quoteFee gets the fee due for the vehicle without outputting a receipt. When
+     * an event ring is set the quote is published as a FEE_COMPUTED event.
+     * 
+     * @param vehicleID String containing a unique ID for the vehicle
+     * @return Double containing the fee due for the vehicle
+     * @throws IllegalArgumentException VehicleID cannot be null and must be parked at the garage
+     * @throws IllegalStateException The event ring has stopped
+     */
+    public final synchronized double quoteFee(String vehicleID) throws IllegalArgumentException, IllegalStateException{
+        double fee = receipt.calculateTotalFee(vehicleID);
+        if (eventRing != null) {
+            ParkingTicket ticket = receipt.findVehicle(vehicleID).getTicket();
+            eventRing.publishPriced(GateEvent.Type.FEE_COMPUTED, ticket.getTicketNumber(), vehicleID, ticket.getHours(),
+                    fee, receipt.getGarage().getFeeCalculator().getCalcID(), 1, receipt.getGarage().getName(), day);
+        }
+        return fee;
+    }
+
+    /**
+     * findVehicleIDs gets the IDs of active and recent vehicles starting with
+     * part of a plate, for finding a customer who has lost their ticket. Active
+     * vehicles are parked now; recent ones checked out today and have not yet
+     * been spilled, so a match is not always still in the garage.
+     *
+     * @param prefix String containing the start of the vehicle ID
+     * @param limit Most IDs to return
+     * @return List of matching vehicle IDs in sorted order
+     * @throws IllegalArgumentException Prefix cannot be null and limit must be greater than zero
+     */
+    public final synchronized List<String> findVehicleIDs(String prefix, int limit) throws IllegalArgumentException{
+        return receipt.findVehicleIDsByPrefix(prefix, limit);
+    }
+
+    /**
+     * findSimilarVehicleIDs gets the IDs of active and recent vehicles, as
+     * findVehicleIDs does, matching a plate that may have one character read
+     * wrong
+     *
+     * @param vehicleID String containing the vehicle ID as read
+     * @return List of matching vehicle IDs in sorted order
+     * @throws IllegalArgumentException VehicleID cannot be null
+     */
+    public final synchronized List<String> findSimilarVehicleIDs(String vehicleID) throws IllegalArgumentException{
+        return receipt.findSimilarVehicleIDs(vehicleID);
+    }
+
+    /**
+     * getVisitCount gets how many times the vehicle has parked today
+     * 
+     * @param vehicleID String containing a unique ID for the vehicle
+     * @return Integer containing the number of visits
+     */
+    public final synchronized int getVisitCount(String vehicleID) {
+        return receipt.getVisitCount(vehicleID);
+    }
+
+    /**
+     * getCumulativeFees gets the fees the vehicle has paid across its visits today
+     * 
+     * @param vehicleID String containing a unique ID for the vehicle
+     * @return Double containing the fees paid
+     */
+    public final synchronized double getCumulativeFees(String vehicleID) {
+        return receipt.getCumulativeFees(vehicleID);
+    }
+
+    /**
+     * checkoutVehicle marks the vehicle's open visit paid, outputs its fee and
+     * returns its hours and fee in the same map layout the FileService writes.
+     * When a segment store is set the transaction is appended to the garage's
+     * segment for the day first, and only once that has worked is the visit
+     * marked paid and its receipt output, so a failed write leaves the vehicle
+     * parked with no receipt printed. The vehicle gives back its spot and is
+     * counted out of its level when the garage tracks them. When an event ring is
+     * set the checkout is published to it instead, before the visit is marked
+     * paid, and its consumers save it and output the receipt. When the price changes
+     * with occupancy the rate is read once and used for both the fee and the
+     * transaction, so the transaction shows exactly how the fee was priced. The
+     * receipt record is made from that fee, so outputs show it without pricing the
+     * visit again.
+     * 
+     * @param vehicleID String containing a unique ID for the vehicle
+     * @return Map containing the Hours and Fees for the vehicle
+     * @throws IOException If the transaction cannot be written to the segment store, in which case the vehicle is still parked
+     * @throws IllegalArgumentException VehicleID cannot be null and must be parked at the garage
+     * @throws IllegalStateException The event ring has stopped, in which case the vehicle is still parked
+     */
+    public final synchronized LinkedHashMap<String, String> checkoutVehicle(String vehicleID) throws IOException, IllegalArgumentException, IllegalStateException{
+        LinkedHashMap<String, String> parkedCar = new LinkedHashMap<String, String>();
+
+        Transaction transaction = price(vehicleID, receipt.calculateTotalFee(vehicleID));
+        saveAndSettle(Collections.singletonList(transaction));
+
+        parkedCar.put("Hours", Double.toString(transaction.getHours()));
+        parkedCar.put("Fees", Double.toString(transaction.getFees()));
+        return parkedCar;
+    }
+
+    /**
+     * checkoutVehicles checks out a batch of vehicles in one call, such as the
+     * checkouts a gate kept while its connection was down. Each vehicle is priced
+     * the way checkoutVehicle does it, but a vehicle that cannot check out is
+     * given a status in the result instead of throwing. The IDs of the whole
+     * batch are checked first with GateValidator. A vehicle that comes up
+     * again later in the batch is given GateStatus.DUPLICATE there, so every
+     * vehicle is priced once and its next visit waits for the next batch. When a
+     * segment store is set the priced batch is appended to it in one write, and
+     * only then are the vehicles marked paid, given back their spots and given
+     * their receipts, so if the write fails none of them is checked out and no
+     * receipt is printed. When an event ring is set the batch is published to it
+     * instead, claiming the slots for a ring's worth of checkouts before any of
+     * them is marked paid, so a ring that has stopped leaves those vehicles parked.
+     * 
+     * @param vehicleIDs Array of Strings containing the ID of each vehicle
+     * @return GateBatchResult with the status, ticket number and fee of each vehicle
+     * @throws IOException If the batch cannot be written to the segment store, in which case no vehicle is checked out
+     * @throws IllegalArgumentException Array cannot be null
+     * @throws IllegalStateException The event ring has stopped
+     */
+    public final synchronized GateBatchResult checkoutVehicles(String[] vehicleIDs) throws IOException, IllegalArgumentException, IllegalStateException{
+        if (vehicleIDs == null) {
+            throw new IllegalArgumentException("Array cannot be null");
+        }
+        GateBatchResult result = new GateBatchResult(vehicleIDs.length);
+        List<Transaction> transactions = new ArrayList<Transaction>(vehicleIDs.length);
+        Set<String> priced = new HashSet<String>();
+        byte[] statuses = GateValidator.validateAll(vehicleIDs, null);
+        for (int i = 0; i < vehicleIDs.length; i++) {
+            String vehicleID = vehicleIDs[i];
+            int status = statuses[i];
+            if (status == GateStatus.OK) {
+                status = priced.contains(vehicleID) ? GateStatus.DUPLICATE
+                        : receipt.findVehicle(vehicleID) == null ? GateStatus.NOT_PARKED : GateStatus.OK;
+            }
+            if (status != GateStatus.OK) {
+                result.reject(i, status);
+            } else {
+                Transaction transaction = price(vehicleID, receipt.calculateTotalFee(vehicleID));
+                transactions.add(transaction);
+                priced.add(vehicleID);
+                result.accept(i, transaction.getTicketNumber(), transaction.getFees());
+            }
+        }
+        saveAndSettle(transactions);
+        return result;
+    }
+
+    /**
+     * saveAndSettle saves priced checkouts and then settles each of them. With an
+     * event ring they are published, a ring's worth at a time with every slot
+     * claimed before any of them is settled. Otherwise they are written to the
+     * segment store, when one is set, in one write.
+     */
+    private void saveAndSettle(List<Transaction> transactions) throws IOException, IllegalStateException {
+        if (eventRing != null) {
+            int lot = eventRing.getBufferSize();
+            for (int from = 0; from < transactions.size(); from += lot) {
+                List<Transaction> published = transactions.subList(from, Math.min(transactions.size(), from + lot));
+                long last = eventRing.next(published.size());
+                long sequence = last - published.size() + 1;
+                for (Transaction transaction : published) {
+                    eventRing.get(sequence++).setCheckout(transaction.getTicketNumber(), transaction.getVehicleID(),
+                            transaction.getHours(), transaction.getFees(), transaction.getCalcID(),
+                            transaction.getRate(), transaction.getGarageName(), transaction.getDay());
+                }
+                eventRing.publish(last);
+                for (Transaction transaction : published) {
+                    settle(transaction);
+                }
+            }
+            return;
+        }
+        if (segmentStore != null && !transactions.isEmpty()) {
+            segmentStore.appendAll(transactions);
+        }
+        for (Transaction transaction : transactions) {
+            settle(transaction);
+        }
+    }
+
+    /**
+     * price works out the fee of the vehicle's open visit without changing anything
+     * 
+     * @return The Transaction of the checkout, not yet recorded
+     */
+    private Transaction price(String vehicleID, double fees) {
+        ParkingTicket ticket = receipt.findVehicle(vehicleID).getTicket();
+        double hours = ticket.getHours();
+        FeeCalculatorStrategy calculator = receipt.getGarage().getFeeCalculator();
+        double rate = 1;
+        if (calculator instanceof OccupancyPricingCalculator && !receipt.isSubscriber(vehicleID, day)) {
+            rate = ((OccupancyPricingCalculator) calculator).getRate();
+            fees = ((OccupancyPricingCalculator) calculator).calculateFee(hours, rate);
+        }
+
+        return new Transaction(ticket.getTicketNumber(), vehicleID, hours, fees, calculator.getCalcID(),
+                receipt.getGarage().getName(), day, rate);
+    }
+
+    /**
+     * settle keeps the receipt record of a saved checkout, marks the visit paid,
+     * gives back its spot, adds it to the day's totals and outputs the receipt,
+     * unless an event ring's consumer outputs it
+     */
+    private void settle(Transaction transaction) {
+        Garage parkedAt = receipt.getGarage();
+        receipt.setRecord(new ReceiptRecord(parkedAt.getName(), parkedAt.getAddress(), transaction.getVehicleID(),
+                transaction.getTicketNumber(), transaction.getHours(), transaction.getFees(), transaction.getCalcID(),
+                transaction.getRate()));
+        Vehicle vehicle = receipt.checkOutVehicle(transaction.getVehicleID(), transaction.getTicketNumber(),
+                transaction.getFees(), transaction.getCalcID(), transaction.getRate());
+        release(receipt.getGarage(), vehicle.getTicket());
+        daySummary.add(transaction.getCalcID(), TransactionHistory.toCents(transaction.getFees()),
+                TransactionHistory.toHundredths(transaction.getHours()));
+        if (eventRing == null) {
+            ros.displayCarFee(receipt, transaction.getVehicleID());
+        }
+    }
     
     /**
      * outputDailyTotal will gather the hours and fees for all vehicles parked 
-     * and calculate the total hours and total fees for the day
+     * and calculate the total hours and total fees for the day. When an event
+     * ring is set the receipts already published are output first.
      * 
      * @param input List of maps containing the hours and fees of all vehicles
      */
-    public final void outputDailyTotal(List<LinkedHashMap<String, String>> input) {
+    public final synchronized void outputDailyTotal(List<LinkedHashMap<String, String>> input) {
+        drain();
+        ros.displayDailyTotal(receipt, input);
+    }
+
+    /**
+     * outputDailyTotal outputs the hours and fees of every checkout made through
+     * checkoutVehicle today, using the running totals instead of a list of every car
+     */
+    public final synchronized void outputDailyTotal() {
+        drain();
+        List<LinkedHashMap<String, String>> input = new ArrayList<LinkedHashMap<String, String>>();
+        if (daySummary.getCount() > 0) {
+            LinkedHashMap<String, String> totals = new LinkedHashMap<String, String>();
+            totals.put("Hours", Double.toString(daySummary.getTotalHours()));
+            totals.put("Fees", Double.toString(daySummary.getRevenue()));
+            input.add(totals);
+        }
         ros.displayDailyTotal(receipt, input);
     }
 
+    /**
+     * Gets the running totals of every checkout made through checkoutVehicle today
+     * 
+     * @return A copy of the day's TransactionSummary
+     */
+    public final synchronized TransactionSummary getDaySummary() {
+        return new TransactionSummary().merge(daySummary);
+    }
+
+    /**
+     * createSnapshot captures the running state of the day so it can be restored
+     * without replaying the whole day. When an event ring is set its consumers
+     * finish the events already published first, so the journal offsets cover
+     * everything the snapshot holds.
+     * 
+     * @return Instance of the RecoverySnapshot
+     * @throws IllegalStateException A consumer that stops on errors has stopped
+     */
+    public final synchronized RecoverySnapshot createSnapshot() throws IllegalStateException {
+        drain();
+        long offset = segmentStore == null ? 0 : segmentStore.getLength(garage.getName(), day);
+        long checkInOffset = segmentStore == null ? 0 : segmentStore.getCheckInLength(garage.getName(), day);
+        Vehicle[] vehicles = receipt.getVehicles();
+        for (int i = 0; i < vehicles.length; i++) {
+            ParkingTicket ticket = new ParkingTicket(vehicles[i].getTicket().getHours(),
+                    vehicles[i].getTicket().getTicketNumber());
+            if (vehicles[i].getTicket().isPaid()) {
+                ticket.pay(vehicles[i].getTicket().getFeePaid(), vehicles[i].getTicket().getCalcID(),
+                        vehicles[i].getTicket().getRate());
+            }
+            setPlace(ticket, new int[]{vehicles[i].getTicket().getSpot(), vehicles[i].getTicket().getLevel()});
+            if (vehicles[i].getTicket().getReservationID() > 0) {
+                ticket.setReservationID(vehicles[i].getTicket().getReservationID());
+            }
+            vehicles[i] = new Vehicle(ticket, vehicles[i].getVehicleID());
+        }
+        int spilled = receipt.getSpill() == null ? 0 : receipt.getSpill().size();
+        return new RecoverySnapshot(garage.getName(), day, lastTicketNum, offset, checkInOffset, spilled,
+                getDaySummary(), vehicles);
+    }
+
+    /**
+     * restore rebuilds the day from a snapshot and the transactions appended after it
+     * 
+     * @param snapshot Instance of the RecoverySnapshot, or null to start from an empty day
+     * @param tail List of transactions appended to the day's segment after the snapshot
+     * @throws IllegalArgumentException Tail cannot be null and the snapshot must be for this garage
+     * @throws IllegalStateException The spill holds fewer visits than the snapshot
+     */
+    public final synchronized void restore(RecoverySnapshot snapshot, List<Transaction> tail) throws IllegalArgumentException, IllegalStateException{
+        restore(snapshot, new ArrayList<Vehicle>(), tail);
+    }
+
+    /**
+     * restore rebuilds the day from a snapshot and the check-ins and transactions
+     * journaled after it. The check-ins are parked again with their tickets before
+     * the transactions check vehicles out. Vehicles still parked are put back in their spots and counted back into
+     * their levels when the garage tracks them.
+     * When the receipt spills closed visits the spill is kept: visits spilled
+     * after the snapshot was taken are thrown away, since the snapshot still held
+     * them in memory, and the tail spills again as the day is rebuilt. A teller
+     * restarted after a crash reopens its spill with ClosedTicketSpill.open
+     * before restoring.
+     * 
+     * @param snapshot Instance of the RecoverySnapshot, or null to start from an empty day
+     * @param checkIns List of vehicles journaled to the day's check-in file after the snapshot
+     * @param tail List of transactions appended to the day's segment after the snapshot
+     * @throws IllegalArgumentException Check-ins and tail cannot be null and the snapshot must be for this garage
+     * @throws IllegalStateException The spill holds fewer visits than the snapshot
+     */
+    public final synchronized void restore(RecoverySnapshot snapshot, List<Vehicle> checkIns, List<Transaction> tail) throws IllegalArgumentException, IllegalStateException{
+        if (checkIns == null || tail == null || (snapshot != null && !snapshot.getGarageName().equals(garage.getName()))) {
+            throw new IllegalArgumentException("Check-ins and tail cannot be null and the snapshot must be for this garage");
+        }
+        drain();
+        Receipt restored = new Receipt(receipt.getGarage());
+        ClosedTicketSpill spill = receipt.getSpill();
+        if (spill != null) {
+            try {
+                spill.truncate(snapshot == null ? 0 : snapshot.getSpilledVisits());
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not restore " + spill.getFile(), ex);
+            }
+            restored.setSpill(spill, receipt.getMaxClosed());
+        }
+        daySummary = new TransactionSummary();
+        if (snapshot != null) {
+            restored.setVehicles(Arrays.copyOf(snapshot.getVehicles(), snapshot.getVehicles().length));
+            daySummary.merge(snapshot.getSummary());
+            lastTicketNum = Math.max(lastTicketNum, snapshot.getLastTicketNum());
+            day = snapshot.getDay();
+        }
+        restored.setDay(day);
+        for (Vehicle checkIn : checkIns) {
+            ParkingTicket ticket = checkIn.getTicket();
+            Vehicle vehicle = restored.addVehicleToArray(checkIn.getVehicleID(), ticket.getHours(), ticket.getTicketNumber());
+            setPlace(vehicle.getTicket(), new int[]{ticket.getSpot(), ticket.getLevel()});
+            if (ticket.getReservationID() > 0) {
+                vehicle.getTicket().setReservationID(ticket.getReservationID());
+            }
+            lastTicketNum = Math.max(lastTicketNum, ticket.getTicketNumber());
+        }
+        for (Transaction transaction : tail) {
+            Vehicle open = restored.findVehicle(transaction.getVehicleID());
+            if (open == null || open.getTicket().getTicketNumber() != transaction.getTicketNumber()) {
+                restored.addVehicleToArray(transaction.getVehicleID(), transaction.getHours(), transaction.getTicketNumber());
+            }
+            restored.checkOutVehicle(transaction.getVehicleID(), transaction.getTicketNumber(), transaction.getFees(),
+                    transaction.getCalcID(), transaction.getRate());
+            daySummary.add(transaction.getCalcID(), TransactionHistory.toCents(transaction.getFees()),
+                    TransactionHistory.toHundredths(transaction.getHours()));
+            lastTicketNum = Math.max(lastTicketNum, transaction.getTicketNumber());
+        }
+        Garage parkedAt = restored.getGarage();
+        if (parkedAt.getSpotAllocator() != null) {
+            parkedAt.getSpotAllocator().reset();
+        }
+        if (parkedAt.getOccupancy() != null) {
+            parkedAt.getOccupancy().reset();
+        }
+        for (Vehicle vehicle : restored.getVehicles()) {
+            ParkingTicket ticket = vehicle.getTicket();
+            if (!ticket.isPaid()) {
+                int[] place = admit(parkedAt, ticket.getSpot(), ticket.getLevel());
+                if (place != null) {
+                    setPlace(ticket, place);
+                }
+            }
+        }
+        receipt = restored;
+    }
+
+    /**
+     * getDailyTotal adds up the fees in the list using the receipt
+     * 
+     * @param input List of maps containing the hours and fees of all vehicles
+     * @return Double containing the total fees
+     */
+    public final synchronized double getDailyTotal(List<LinkedHashMap<String, String>> input) {
+        return receipt.getDailyTotal(input);
+    }
+
+    /**
+     * getTotalHours adds up the hours in the list using the receipt
+     * 
+     * @param input List of maps containing the hours and fees of all vehicles
+     * @return Double containing the total hours
+     */
+    public final synchronized double getTotalHours(List<LinkedHashMap<String, String>> input) {
+        return receipt.getTotalHours(input);
+    }
+
     /**
      * Gets the particular instance of the receipt object used
      * 
      * @return The instance of the receipt class
      *
      */
-    public final Receipt getReceipt() {
+    public final synchronized Receipt getReceipt() {
         return receipt;
     }
 
     /**
-     * Sets the receipt object for this class
+     * Sets the receipt object for this class, moving it to the teller's business day
      * 
      * @param receipt Receipt object being passed through
      * @throws IllegalArgumentException Receipt object cannot be null
      */
-    public final void setReceipt(Receipt receipt) throws IllegalArgumentException{
+    public final synchronized void setReceipt(Receipt receipt) throws IllegalArgumentException{
         if(receipt == null) {
             throw new IllegalArgumentException("Receipt object cannot be null");
         } else {
+            receipt.setDay(day);
             this.receipt = receipt;
         }
     }
@@ -125,7 +900,7 @@ public class AutomatedTeller {
      * @param ros ReceiptOutputStrategy object being passed through
      * @throws IllegalArgumentException ReceiptOutputStrategy cannot be null
      */
-    public final void setRos(ReceiptOutputStrategy ros) throws IllegalArgumentException{
+    public final synchronized void setRos(ReceiptOutputStrategy ros) throws IllegalArgumentException{
         if(ros == null) {
             throw new IllegalArgumentException("ReceiptOuputStrategy cannot be null");
         } else {
@@ -157,6 +932,71 @@ public class AutomatedTeller {
         }
     }
 
+    /**
+     * Gets the day transactions are recorded under
+     * 
+     * @return Integer containing the day in yyyyMMdd form
+     */
+    public final synchronized int getDay() {
+        return day;
+    }
+
+    /**
+     * Gets the segment store checkouts are persisted to
+     * 
+     * @return Instance of the DailySegmentStore, or null when checkouts are not persisted
+     */
+    public final synchronized DailySegmentStore getSegmentStore() {
+        return segmentStore;
+    }
+
+    /**
+     * Sets the segment store checkouts are persisted to. Ticket numbers carry on
+     * from the highest ticket the store holds for the garage.
+     * 
+     * @param segmentStore Instance of the DailySegmentStore
+     * @throws IllegalArgumentException Segment store cannot be null
+     */
+    public final synchronized void setSegmentStore(DailySegmentStore segmentStore) throws IllegalArgumentException{
+        if(segmentStore == null) {
+            throw new IllegalArgumentException("Segment store cannot be null");
+        } else {
+            this.segmentStore = segmentStore;
+            lastTicketNum = Math.max(lastTicketNum, segmentStore.getLastTicketNumber(garage.getName()));
+        }
+    }
+
+    /**
+     * Gets the ring check-ins and checkouts are published to
+     * 
+     * @return Instance of the GateEventRing, or null when events are not published
+     */
+    public final synchronized GateEventRing getEventRing() {
+        return eventRing;
+    }
+
+    /**
+     * Sets the ring gate events are published to. The teller's methods are
+     * synchronized, so it is the ring's only writer. Once a ring is set the
+     * teller journals and saves nothing and outputs no receipts itself: the ring
+     * needs a consumer saving to the segment store, added with
+     * GateEventHandlers.persistTo to stop on errors, and a receipt consumer added
+     * after it with GateEventHandlers.outputTo. The segment store stays set on the
+     * teller for ticket numbers, snapshots and closing days, and the teller lets
+     * the consumers catch up before it takes a snapshot, restores or starts a new
+     * day. The ring should be started before events are published.
+     * 
+     * @param eventRing Instance of the GateEventRing
+     * @throws IllegalArgumentException Event ring cannot be null
+     */
+    public final synchronized void setEventRing(GateEventRing eventRing) throws IllegalArgumentException{
+        if(eventRing == null) {
+            throw new IllegalArgumentException("Event ring cannot be null");
+        } else {
+            this.eventRing = eventRing;
+        }
+    }
+
     /**
      * Overrides the toString method 
      * 
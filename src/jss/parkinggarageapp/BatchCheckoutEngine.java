@@ -0,0 +1,293 @@
+package jss.parkinggarageapp;
+
+import filemanager.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * BatchCheckoutEngine class is used to run check-ins and checkouts for the garage
+ * without the GUI. It reads one command per line from a file or standard input
+ * and drives the AutomatedTeller, so gate logs can be replayed at night on a
+ * machine with no display.
+ *
+ * The commands understood are:
+ * <pre>
+ *   IN vehicleID hours     parks a new vehicle for the given hours
+ *   OUT vehicleID          checks the vehicle out and records its fee
+ *   TOTAL                  outputs the daily total for the garage
+ *   NEWDAY                 clears all totals and starts a new day
+ * </pre>
+ * Blank lines and lines starting with # are skipped.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class BatchCheckoutEngine {
+    private AutomatedTeller atm;
+    private List<LinkedHashMap<String, String>> carFees = new ArrayList<LinkedHashMap<String, String>>();
+    private final List<LinkedHashMap<String, String>> history = new ArrayList<LinkedHashMap<String, String>>();
+    private long transactions;
+    private long rejected;
+    private long elapsedNanos;
+
+    /**
+     * Overrides the default constructor requiring an AutomatedTeller object to be
+     * passed in
+     *
+     * @param atm Instance of the AutomatedTeller class the commands are run against
+     */
+    public BatchCheckoutEngine(AutomatedTeller atm) {
+        setAtm(atm);
+    }
+
+    /**
+     * processCommands reads every line from the reader and runs it as a command.
+     * A bad line is reported on the error stream and counted as rejected so one
+     * dirty entry does not stop the rest of the replay. Lines are checked with
+     * runCommand, so a dirty log costs no exceptions.
+     *
+     * @param in Reader containing one command per line
+     * @throws IOException If the reader cannot be read
+     * @throws IllegalArgumentException Reader cannot be null
+     */
+    public final void processCommands(BufferedReader in) throws IOException, IllegalArgumentException {
+        if (in == null) {
+            throw new IllegalArgumentException("Reader cannot be null");
+        }
+        long start = System.nanoTime();
+        int lineNum = 0;
+        String line;
+
+        while ((line = in.readLine()) != null) {
+            lineNum++;
+            int status = runCommand(line);
+            if (status != GateStatus.OK) {
+                rejected++;
+                System.err.println("Line " + lineNum + " rejected, " + GateStatus.describe(status) + ": " + line);
+            }
+        }
+        elapsedNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * processCommand runs a single command against the AutomatedTeller
+     *
+     * @param line A string containing one command
+     * @throws IOException If a checkout cannot be persisted
+     * @throws IllegalArgumentException Command must be one of IN, OUT, TOTAL or NEWDAY with valid arguments
+     * @throws IllegalStateException The garage is full
+     */
+    public final void processCommand(String line) throws IOException, IllegalArgumentException, IllegalStateException {
+        if (line == null) {
+            throw new IllegalArgumentException("Command cannot be null");
+        }
+        int status = runCommand(line);
+        if (status == GateStatus.GARAGE_FULL) {
+            throw new IllegalStateException(atm.getGarage().getName() + " is full");
+        } else if (status != GateStatus.OK) {
+            throw new IllegalArgumentException("Command rejected, " + GateStatus.describe(status) + ": " + line);
+        }
+    }
+
+    /**
+     * runCommand runs a single command against the AutomatedTeller, checking it
+     * first and returning what is wrong with it instead of throwing
+     *
+     * @param line A string containing one command
+     * @return GateStatus code, OK for a command that ran or a blank or comment line
+     * @throws IOException If a checkout cannot be persisted
+     */
+    public final int runCommand(String line) throws IOException {
+        if (line == null) {
+            return GateStatus.BAD_COMMAND;
+        }
+        String command = line.trim();
+        if (command.isEmpty() || command.charAt(0) == '#') {
+            return GateStatus.OK;
+        }
+        String[] parts = command.split("\\s+");
+        int status;
+
+        switch (parts[0].toUpperCase()) {
+            case "IN":
+                if (parts.length != 3) {
+                    return GateStatus.BAD_COMMAND;
+                }
+                double hours = parseHours(parts[2]);
+                status = atm.validateParkNewVehicle(parts[1], hours);
+                if (status == GateStatus.OK) {
+                    atm.parkNewVehicle(parts[1], hours);
+                }
+                return status;
+            case "OUT":
+                if (parts.length != 2) {
+                    return GateStatus.BAD_COMMAND;
+                }
+                status = atm.validateCheckoutVehicle(parts[1]);
+                if (status == GateStatus.OK) {
+                    LinkedHashMap<String, String> fee = atm.checkoutVehicle(parts[1]);
+                    carFees.add(fee);
+                    history.add(fee);
+                    transactions++;
+                }
+                return status;
+            case "TOTAL":
+                atm.outputDailyTotal(carFees);
+                return GateStatus.OK;
+            case "NEWDAY":
+                atm.startNewDay(atm.getGarage());
+                carFees = new ArrayList<LinkedHashMap<String, String>>();
+                return GateStatus.OK;
+            default:
+                return GateStatus.BAD_COMMAND;
+        }
+    }
+
+    /**
+     * parseHours reads hours written as digits with at most one decimal point,
+     * the way gate logs write them, giving NaN for anything else instead of
+     * throwing
+     */
+    private static double parseHours(String text) {
+        boolean point = false;
+        boolean digit = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digit = true;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return Double.NaN;
+            }
+        }
+        return digit ? Double.parseDouble(text) : Double.NaN;
+    }
+
+    /**
+     * Gets the transactions per second sustained over all calls to processCommands
+     *
+     * @return Double containing the checkouts processed per second
+     */
+    public final double getTransactionsPerSecond() {
+        if (elapsedNanos == 0) {
+            return 0;
+        }
+        return transactions * 1000000000.0 / elapsedNanos;
+    }
+
+    /**
+     * Gets the number of checkouts processed
+     *
+     * @return Long containing the number of checkouts
+     */
+    public final long getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Gets the number of lines that were rejected
+     *
+     * @return Long containing the number of rejected lines
+     */
+    public final long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Gets the hours and fees recorded for each checkout of the current day
+     *
+     * @return List of maps containing the hours and fees
+     */
+    public final List<LinkedHashMap<String, String>> getCarFees() {
+        return carFees;
+    }
+
+    /**
+     * Gets the hours and fees recorded for each checkout of every day replayed,
+     * which NEWDAY does not clear
+     *
+     * @return List of maps containing the hours and fees
+     */
+    public final List<LinkedHashMap<String, String>> getHistory() {
+        return history;
+    }
+
+    /**
+     * Gets the AutomatedTeller object the commands are run against
+     *
+     * @return Instance of the AutomatedTeller class
+     */
+    public final AutomatedTeller getAtm() {
+        return atm;
+    }
+
+    /**
+     * Sets the AutomatedTeller object the commands are run against
+     *
+     * @param atm Instance of the AutomatedTeller class
+     * @throws IllegalArgumentException ATM cannot be null
+     */
+    public final void setAtm(AutomatedTeller atm) throws IllegalArgumentException {
+        if (atm == null) {
+            throw new IllegalArgumentException("ATM cannot be null");
+        } else {
+            this.atm = atm;
+        }
+    }
+
+    /**
+     * Runs a replay without the GUI. The first argument is the command file, or
+     * - for standard input. The optional second argument is a file the recorded
+     * hours and fees of every day replayed are written to when the replay
+     * finishes. Check-ins and checkouts go through a GateEventRing, whose
+     * consumers write the receipts to the console through a BufferedReceiptOutput,
+     * a buffer at a time, and time how long events wait in the ring.
+     *
+     * @param args Command file and optional history file
+     * @throws IOException If a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Garage garage = new Garage(new ThriftyFeeCalculator(1.5, 2, .75, "A1234"),
+                "Jims Parking Garage", "1234 West Ave, Pewaukee, WI");
+        BufferedReceiptOutput receipts = BufferedReceiptOutput.toConsole(1000);
+        AutomatedTeller atm = new AutomatedTeller(new Receipt(garage), receipts, garage);
+        GateEventRing ring = new GateEventRing(4096);
+        LatencyRecorder latency = new LatencyRecorder();
+        ring.addConsumer("receipts", GateEventHandlers.outputTo(receipts, garage),
+                GateEventRing.WaitStrategy.SLEEPING, 256);
+        ring.addConsumer("latency", GateEventHandlers.recordLatency(latency),
+                GateEventRing.WaitStrategy.SLEEPING, 256);
+        ring.start();
+        atm.setEventRing(ring);
+        BatchCheckoutEngine engine = new BatchCheckoutEngine(atm);
+
+        BufferedReader in;
+        if (args.length == 0 || args[0].equals("-")) {
+            in = new BufferedReader(new InputStreamReader(System.in));
+        } else {
+            in = new BufferedReader(new FileReader(args[0]));
+        }
+        try {
+            engine.processCommands(in);
+        } finally {
+            in.close();
+            try {
+                ring.halt();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            receipts.flush();
+        }
+
+        if (args.length > 1) {
+            FileWriterStrategy writer = new TextFileWriter(new CustomGarageFileFormat(), args[1]);
+            writer.writeToFile(engine.getHistory());
+        }
+
+        System.err.println("Processed " + engine.getTransactions() + " checkouts, rejected "
+                + engine.getRejected() + " lines, " + String.format("%.0f", engine.getTransactionsPerSecond())
+                + " transactions per second, ring wait " + latency);
+    }
+
+}
@@ -162,6 +162,7 @@ public class BestValueFeeCalculator implements FeeCalculatorStrategy {
      * 
      * @return A string containing a unique ID 
      */
+    @Override
     public String getCalcID() {
         return calcID;
     }
@@ -0,0 +1,247 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * BufferedReceiptOutput class is used to write receipts to the console or a file
+ * in bulk, for replaying a day of checkouts where ReceiptConsoleOutput would
+ * spend most of its time in println. Receipts are laid out with the text
+ * template straight into one reusable buffer, and the buffer goes out in one
+ * write when it fills up or when the oldest receipt in it has waited longer
+ * than the flush delay. The text is the same as ReceiptConsoleOutput writes:
+ * every line of a receipt and daily total ends with the platform line
+ * separator, including the lines inside the template.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class BufferedReceiptOutput implements ReceiptOutputStrategy, Flushable, Closeable {
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer out;
+    private final char[] buffer;
+    private int length;
+    private long oldestMillis;
+    private final long flushDelayMillis;
+    private final Timer timer;
+    private final StringBuilder line = new StringBuilder(256);
+
+    /**
+     * Overrides the default constructor requiring the writer, buffer size and
+     * flush delay to be passed in
+     *
+     * @param out Writer the receipts are written to
+     * @param bufferChars Integer containing the characters held before a write
+     * @param flushDelayMillis Long containing the longest a receipt waits in the buffer, zero to only flush when full
+     * @throws IllegalArgumentException Writer cannot be null, buffer must hold at least 256 characters and the delay cannot be negative
+     */
+    public BufferedReceiptOutput(Writer out, int bufferChars, long flushDelayMillis) throws IllegalArgumentException {
+        if (out == null || bufferChars < 256 || flushDelayMillis < 0) {
+            throw new IllegalArgumentException("Writer cannot be null, buffer must hold at least 256 characters and delay cannot be negative");
+        }
+        this.out = out;
+        this.buffer = new char[bufferChars];
+        this.flushDelayMillis = flushDelayMillis;
+        if (flushDelayMillis > 0) {
+            timer = new Timer("receipt-flush", true);
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    flushIfStale();
+                }
+            }, flushDelayMillis, flushDelayMillis);
+        } else {
+            timer = null;
+        }
+    }
+
+    /**
+     * toConsole makes an output writing to standard out without going through System.out
+     *
+     * @param flushDelayMillis Long containing the longest a receipt waits before it shows
+     * @return Instance of the BufferedReceiptOutput
+     */
+    public static BufferedReceiptOutput toConsole(long flushDelayMillis) {
+        return new BufferedReceiptOutput(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)), 65536,
+                flushDelayMillis);
+    }
+
+    /**
+     * toFile makes an output adding receipts to the end of a file
+     *
+     * @param file File the receipts are written to
+     * @param flushDelayMillis Long containing the longest a receipt waits before it is written
+     * @return Instance of the BufferedReceiptOutput
+     * @throws IOException If the file cannot be opened
+     */
+    public static BufferedReceiptOutput toFile(File file, long flushDelayMillis) throws IOException {
+        return new BufferedReceiptOutput(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"), 65536,
+                flushDelayMillis);
+    }
+
+    /**
+     * displayCarFee adds the fee and hours of a car to the buffer
+     *
+     * @param receipt An instance of the receipt object being passed in
+     * @param vehicleID A String containing a unique ID referencing a vehicle
+     * @throws IllegalArgumentException Receipt cannot be null, Vehicle cannot be null, vehicleID has to be 4 characters long
+     * @throws IllegalStateException The buffer could not be written
+     */
+    @Override
+    public final synchronized void displayCarFee(Receipt receipt, String vehicleID) throws IllegalArgumentException, IllegalStateException {
+        if (receipt == null || vehicleID == null || vehicleID.length() != 4) {
+            throw new IllegalArgumentException("Receipt object cannot be null, vehicleID cannot be null, and must contain 4 characters");
+        }
+        line.setLength(0);
+        ReceiptTemplate.TEXT.appendTo(line, receipt.getRecord(vehicleID));
+        if (!"\n".equals(LINE_SEPARATOR)) {
+            for (int i = line.indexOf("\n"); i >= 0; i = line.indexOf("\n", i + LINE_SEPARATOR.length())) {
+                line.replace(i, i + 1, LINE_SEPARATOR);
+            }
+        }
+        line.append(LINE_SEPARATOR).append(LINE_SEPARATOR);
+        append(line);
+    }
+
+    /**
+     * displayDailyTotal adds the total hours and fees for the day to the buffer
+     *
+     * @param receipt An instance of the receipt object being passed in
+     * @param input A list of maps contain the total hours and fees for the day
+     * @throws IllegalArgumentException Receipt and input cannot be null
+     * @throws IllegalStateException The buffer could not be written
+     */
+    @Override
+    public final synchronized void displayDailyTotal(Receipt receipt, List<LinkedHashMap<String, String>> input) throws IllegalArgumentException, IllegalStateException {
+        if (receipt == null || input == null) {
+            throw new IllegalArgumentException("Receipt object cannot be null");
+        }
+        line.setLength(0);
+        line.append("Total amount earned for ").append(receipt.getGarage().getName()).append(" today is: $")
+                .append(receipt.getDailyTotal(input)).append(", with a total of ").append(receipt.getTotalHours(input))
+                .append(" hours.").append(LINE_SEPARATOR);
+        append(line);
+    }
+
+    private void append(StringBuilder text) throws IllegalStateException {
+        int count = text.length();
+        if (length + count > buffer.length) {
+            writeBuffer();
+        }
+        if (count > buffer.length) {
+            try {
+                out.append(text);
+                out.flush();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not write receipts", ex);
+            }
+            return;
+        }
+        if (length == 0) {
+            oldestMillis = System.currentTimeMillis();
+        }
+        text.getChars(0, count, buffer, length);
+        length += count;
+        if (flushDelayMillis > 0 && System.currentTimeMillis() - oldestMillis >= flushDelayMillis) {
+            writeBuffer();
+        }
+    }
+
+    private void writeBuffer() throws IllegalStateException {
+        if (length == 0) {
+            return;
+        }
+        try {
+            out.write(buffer, 0, length);
+            out.flush();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not write receipts", ex);
+        } finally {
+            length = 0;
+        }
+    }
+
+    private synchronized void flushIfStale() {
+        if (length > 0 && System.currentTimeMillis() - oldestMillis >= flushDelayMillis) {
+            writeBuffer();
+        }
+    }
+
+    /**
+     * flush writes everything in the buffer
+     *
+     * @throws IOException If the buffer cannot be written
+     */
+    @Override
+    public final synchronized void flush() throws IOException {
+        try {
+            writeBuffer();
+        } catch (IllegalStateException ex) {
+            throw (IOException) ex.getCause();
+        }
+    }
+
+    /**
+     * close writes everything in the buffer, stops the flush timer and closes the writer
+     *
+     * @throws IOException If the buffer cannot be written or the writer closed
+     */
+    @Override
+    public final synchronized void close() throws IOException {
+        if (timer != null) {
+            timer.cancel();
+        }
+        flush();
+        out.close();
+    }
+
+    /**
+     * Compares receipts per second written by ReceiptConsoleOutput and by this
+     * class to the same file.
+     *
+     * Usage: BufferedReceiptOutput output.txt [receipts]
+     *
+     * @param args File the receipts are written to and optional number of receipts, 200,000 by default
+     * @throws IOException If the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        File file = new File(args[0]);
+        int receipts = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        Garage garage = new Garage(new ThriftyFeeCalculator(1.5, 2, .75, "A1234"), "Jims Parking Garage",
+                "1234 West Ave, Pewaukee, WI");
+        Receipt receipt = new Receipt(garage);
+        String[] vehicleIDs = new String[1000];
+        for (int i = 0; i < vehicleIDs.length; i++) {
+            vehicleIDs[i] = String.format("V%03d", i);
+            receipt.addVehicleToArray(vehicleIDs[i], 1 + i % 23 + (i % 4) * .25, i + 1);
+        }
+
+        PrintStream console = System.out;
+        for (int round = 1; round <= 2; round++) {
+            try (PrintStream redirected = new PrintStream(new BufferedOutputStream(new FileOutputStream(file), 128), true)) {
+                System.setOut(redirected);
+                ReceiptConsoleOutput plain = new ReceiptConsoleOutput();
+                long start = System.nanoTime();
+                for (int i = 0; i < receipts; i++) {
+                    plain.displayCarFee(receipt, vehicleIDs[i % vehicleIDs.length]);
+                }
+                long plainNanos = System.nanoTime() - start;
+                System.setOut(console);
+
+                BufferedReceiptOutput buffered = toFile(file, 1000);
+                start = System.nanoTime();
+                for (int i = 0; i < receipts; i++) {
+                    buffered.displayCarFee(receipt, vehicleIDs[i % vehicleIDs.length]);
+                }
+                buffered.close();
+                long bufferedNanos = System.nanoTime() - start;
+                console.println(String.format("round %d: console %.0f receipts/s, buffered %.0f receipts/s", round,
+                        receipts * 1e9 / plainNanos, receipts * 1e9 / bufferedNanos));
+            } finally {
+                System.setOut(console);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,278 @@
+package jss.parkinggarageapp;
+
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * CheckoutServer class is used to let kiosks and pay stations reach the garage
+ * over HTTP. It uses the HttpServer built into the JDK so no other library is
+ * needed, and every request is run against one shared AutomatedTeller.
+ *
+ * The paths served are:
+ * <pre>
+ *   /checkin?vehicleID=AB12&amp;hours=3    parks the vehicle and returns its ticket number
+ *   /quote?vehicleID=AB12                 returns the fee due without a receipt
+ *   /checkout?vehicleID=AB12              outputs the receipt and returns the hours and fee
+ *   /total                                returns the fees and hours of the teller's current day
+ * </pre>
+ * Bad input gets a 400 response with the error message as the body, a request
+ * the garage cannot take right now, such as a check-in when it is full, gets a
+ * 409, and a failure to save or read the day gets a 500 or 503.
+ *
+ * Small replies are sent as separate header and body writes, so without
+ * TCP_NODELAY every keep-alive request waits on the client's delayed ack. The
+ * JDK server only reads that setting from the sun.net.httpserver.nodelay system
+ * property, which is global to the JVM, so main sets it and a program that
+ * starts the server itself should launch with -Dsun.net.httpserver.nodelay=true.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class CheckoutServer {
+    private AutomatedTeller atm;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Overrides the default constructor requiring an AutomatedTeller and an
+     * executor the requests are run on. A thread per request executor such as
+     * a cached pool (or a virtual thread executor on newer JDKs) keeps a slow
+     * receipt from holding up other kiosks.
+     *
+     * @param atm Instance of the AutomatedTeller class shared by all requests
+     * @param executor ExecutorService each request is run on
+     */
+    public CheckoutServer(AutomatedTeller atm, ExecutorService executor) {
+        setAtm(atm);
+        setExecutor(executor);
+    }
+
+    /**
+     * start binds the server to the address and starts taking requests
+     *
+     * @param address Address and port to listen on, port 0 picks a free port
+     * @throws IOException If the address cannot be bound
+     * @throws IllegalStateException Server is already started
+     */
+    public final synchronized void start(InetSocketAddress address) throws IOException, IllegalStateException {
+        if (server != null) {
+            throw new IllegalStateException("Server is already started");
+        }
+        server = HttpServer.create(address, 1024);
+        addContext("/checkin", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                Map<String, String> params = parseQuery(exchange);
+                String vehicleID = params.get("vehicleID");
+                double hours = parseHours(params.get("hours"));
+                respond(exchange, 200, "Ticket: " + atm.parkNewVehicle(vehicleID, hours));
+            }
+        });
+        addContext("/quote", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String vehicleID = parseQuery(exchange).get("vehicleID");
+                respond(exchange, 200, "Fees: " + atm.quoteFee(vehicleID));
+            }
+        });
+        addContext("/checkout", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                LinkedHashMap<String, String> parkedCar = atm.checkoutVehicle(parseQuery(exchange).get("vehicleID"));
+                respond(exchange, 200, "Hours: " + parkedCar.get("Hours") + "\nFees: " + parkedCar.get("Fees"));
+            }
+        });
+        addContext("/total", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                TransactionSummary day = atm.getDaySummary();
+                respond(exchange, 200, "Fees: " + day.getRevenue()
+                        + "\nHours: " + day.getTotalHours());
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * stop closes the listening socket, waiting up to the given seconds for
+     * requests that are still running
+     *
+     * @param delaySeconds Seconds to wait for running requests
+     */
+    public final synchronized void stop(int delaySeconds) {
+        if (server != null) {
+            server.stop(delaySeconds);
+            server = null;
+        }
+    }
+
+    /**
+     * Gets the address the server is listening on
+     *
+     * @return The bound address, or null when the server is not started
+     */
+    public final synchronized InetSocketAddress getAddress() {
+        return server == null ? null : server.getAddress();
+    }
+
+    /**
+     * Gets the AutomatedTeller object the requests are run against
+     *
+     * @return Instance of the AutomatedTeller class
+     */
+    public final AutomatedTeller getAtm() {
+        return atm;
+    }
+
+    /**
+     * Sets the AutomatedTeller object the requests are run against
+     *
+     * @param atm Instance of the AutomatedTeller class
+     * @throws IllegalArgumentException ATM cannot be null
+     */
+    public final void setAtm(AutomatedTeller atm) throws IllegalArgumentException {
+        if (atm == null) {
+            throw new IllegalArgumentException("ATM cannot be null");
+        } else {
+            this.atm = atm;
+        }
+    }
+
+    /**
+     * Gets the executor the requests are run on
+     *
+     * @return The ExecutorService used by the server
+     */
+    public final ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor the requests are run on, used the next time the server starts
+     *
+     * @param executor ExecutorService the requests are run on
+     * @throws IllegalArgumentException Executor cannot be null
+     */
+    public final void setExecutor(ExecutorService executor) throws IllegalArgumentException {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        } else {
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * addContext registers a handler for the path with the error filter in front of it
+     */
+    private void addContext(String path, HttpHandler handler) {
+        server.createContext(path, handler).getFilters().add(new ErrorFilter());
+    }
+
+    /**
+     * parseQuery decodes the query string of the request into a map
+     */
+    private static Map<String, String> parseQuery(HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<String, String>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                            URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+                }
+            }
+        }
+        return params;
+    }
+
+    /**
+     * parseHours reads the hours parameter, which is required for a check-in
+     */
+    private static double parseHours(String hours) throws IllegalArgumentException {
+        if (hours == null) {
+            throw new IllegalArgumentException("hours is required");
+        }
+        return Double.parseDouble(hours);
+    }
+
+    /**
+     * respond writes a plain text body with the given status code
+     */
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * ErrorFilter turns an exception from the teller into an error response
+     * instead of dropping the connection. An IllegalArgumentException is bad
+     * input and gets a 400. An IllegalStateException with no cause is a request
+     * the garage's state does not allow, such as a check-in when it is full, and
+     * gets a 409, while one wrapping a failure, such as a check-in that could not
+     * be journaled, gets a 503. An IOException or any other exception gets a 500.
+     * When the response has already been started the exception is passed on.
+     */
+    private static class ErrorFilter extends Filter {
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            try {
+                chain.doFilter(exchange);
+            } catch (IllegalArgumentException ex) {
+                fail(exchange, 400, ex);
+            } catch (IllegalStateException ex) {
+                fail(exchange, ex.getCause() == null ? 409 : 503, ex);
+            } catch (IOException ex) {
+                fail(exchange, 500, ex);
+            } catch (RuntimeException ex) {
+                fail(exchange, 500, ex);
+            }
+        }
+
+        private static void fail(HttpExchange exchange, int status, Exception ex) throws IOException {
+            if (exchange.getResponseCode() != -1) {
+                if (ex instanceof IOException) {
+                    throw (IOException) ex;
+                }
+                throw (RuntimeException) ex;
+            }
+            respond(exchange, status, String.valueOf(ex.getMessage()));
+        }
+
+        @Override
+        public String description() {
+            return "Sends a 400, 409, 500 or 503 response for a failed request";
+        }
+    }
+
+    /**
+     * Starts the server on the loopback address with TCP_NODELAY turned on. The
+     * optional first argument is the port, 8080 by default.
+     *
+     * @param args Optional port number
+     * @throws IOException If the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        Garage garage = new Garage(new ThriftyFeeCalculator(1.5, 2, .75, "A1234"),
+                "Jims Parking Garage", "1234 West Ave, Pewaukee, WI");
+        CheckoutServer server = new CheckoutServer(
+                new AutomatedTeller(new Receipt(garage), new ReceiptConsoleOutput(), garage),
+                Executors.newCachedThreadPool());
+        server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        System.err.println("Checkout server listening on " + server.getAddress());
+    }
+
+}
@@ -0,0 +1,117 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * CheckoutServerLoadTest class is used to measure the CheckoutServer over the
+ * loopback address. Each client thread checks a vehicle in and then checks it
+ * out, paced to a target request rate, and the latency of every request is
+ * recorded so the p99 can be reported.
+ *
+ * Usage: CheckoutServerLoadTest [requestsPerSecond] [seconds] [clients]
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class CheckoutServerLoadTest {
+
+    /**
+     * Runs the load test and prints the achieved rate and latency percentiles
+     *
+     * @param args Optional target requests per second, seconds to run and client threads
+     * @throws Exception If the server cannot be started or a client fails
+     */
+    public static void main(String[] args) throws Exception {
+        final int targetRate = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final int clients = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+
+        // Send replies without waiting on delayed acks, as CheckoutServer.main does
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        // Let every client keep its own connection alive instead of the default of five
+        System.setProperty("http.maxConnections", Integer.toString(clients));
+
+        Garage garage = new Garage(new ThriftyFeeCalculator(1.5, 2, .75, "A1234"),
+                "Jims Parking Garage", "1234 West Ave, Pewaukee, WI");
+        ExecutorService requestThreads = Executors.newCachedThreadPool();
+        CheckoutServer server = new CheckoutServer(
+                new AutomatedTeller(new Receipt(garage), new ReceiptNoOutput(), garage), requestThreads);
+        server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        final String base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        // Each client sends two requests per loop so its loop period is set from half its share
+        final long periodNanos = 2L * clients * 1000000000L / targetRate;
+        final long endNanos = System.nanoTime() + seconds * 1000000000L;
+        ExecutorService clientThreads = Executors.newFixedThreadPool(clients);
+        List<Future<LatencyRecorder>> results = new ArrayList<Future<LatencyRecorder>>();
+
+        for (int c = 0; c < clients; c++) {
+            final int clientNum = c;
+            results.add(clientThreads.submit(new Callable<LatencyRecorder>() {
+                @Override
+                public LatencyRecorder call() throws IOException, InterruptedException {
+                    LatencyRecorder recorder = new LatencyRecorder();
+                    Random random = new Random(clientNum);
+                    long next = System.nanoTime();
+                    int visit = 0;
+
+                    while (next < endNanos) {
+                        String vehicleID = String.format("%c%03d", (char) ('A' + clientNum % 26), visit++ % 1000);
+                        recorder.record(send(base + "/checkin?vehicleID=" + vehicleID + "&hours=" + (1 + random.nextInt(24))));
+                        recorder.record(send(base + "/checkout?vehicleID=" + vehicleID));
+
+                        next += periodNanos;
+                        long sleep = next - System.nanoTime();
+                        if (sleep > 0) {
+                            TimeUnit.NANOSECONDS.sleep(sleep);
+                        }
+                    }
+                    return recorder;
+                }
+            }));
+        }
+
+        LatencyRecorder all = new LatencyRecorder();
+        long start = System.nanoTime();
+        for (Future<LatencyRecorder> result : results) {
+            all.merge(result.get());
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        clientThreads.shutdown();
+        server.stop(0);
+        requestThreads.shutdown();
+
+        System.out.println(String.format("target=%d req/s achieved=%.0f req/s %s", targetRate,
+                all.getCount() / elapsed, all));
+    }
+
+    /**
+     * send makes one GET request and reads the whole response so the connection
+     * can be kept alive
+     *
+     * @param url String containing the full request url
+     * @return Long containing the elapsed time in nanoseconds
+     * @throws IOException If the request fails or does not return 200
+     */
+    private static long send(String url) throws IOException {
+        long start = System.nanoTime();
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        if (conn.getResponseCode() != 200) {
+            throw new IOException("Request failed with " + conn.getResponseCode() + ": " + url);
+        }
+        try (InputStream in = conn.getInputStream()) {
+            byte[] buffer = new byte[256];
+            while (in.read(buffer) != -1) {
+                // drain the body
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+}
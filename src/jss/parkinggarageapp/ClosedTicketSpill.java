@@ -0,0 +1,460 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * ClosedTicketSpill class is used to keep the visits a Receipt has closed on disk
+ * instead of in memory, so a garage open all day and night keeps only its open
+ * tickets and its most recent closed ones on the heap however many cars pass
+ * through.
+ *
+ * The file starts with a table of buckets followed by one fixed-width record per
+ * visit, in the order the visits were spilled:
+ * <pre>
+ *   bucket table:  offset of the newest record in each bucket, 0 when empty
+ *   record:        vehicleID chars, ticket, spot, level, reservation, hours,
+ *                  fee paid, rate, calculator, offset of the previous record in the bucket
+ * </pre>
+ * A vehicle's visits are found by hashing its ID to a bucket and following the
+ * records back from the bucket's newest, so neither the table nor the chains are
+ * held in memory. The only things kept on the heap are the IDs of the few fee
+ * calculators used during the day, which are also written to a small file next
+ * to the spill along with the number of buckets, so open can pick up a spill
+ * left on disk by a teller that stopped.
+ *
+ * The spill is not synchronized; the Receipt holding it is only used through the
+ * synchronized methods of the AutomatedTeller.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class ClosedTicketSpill implements Closeable {
+    private static final int RECORD_BYTES = 64;
+
+    private final File file;
+    private final RandomAccessFile data;
+    private final RandomAccessFile calcs;
+    private final FileChannel channel;
+    private final int bucketMask;
+    private final long recordsStart;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+    private final ByteBuffer slot = ByteBuffer.allocate(8);
+    private final List<String> calcIDs = new ArrayList<String>();
+    private long end;
+    private int size;
+
+    /**
+     * Overrides the default constructor requiring the spill file and the number
+     * of buckets to be passed in. Anything already in the file is thrown away.
+     *
+     * @param file File the closed visits are written to
+     * @param buckets Integer containing the number of buckets, rounded up to a power of two
+     * @throws IOException If the file cannot be opened
+     * @throws IllegalArgumentException File cannot be null and buckets must be between 1 and 2^24
+     */
+    public ClosedTicketSpill(File file, int buckets) throws IOException, IllegalArgumentException {
+        this(file, buckets, false);
+    }
+
+    private ClosedTicketSpill(File file, int buckets, boolean keep) throws IOException, IllegalArgumentException {
+        if (file == null || buckets < 1 || buckets > 1 << 24) {
+            throw new IllegalArgumentException("File cannot be null and buckets must be between 1 and 2^24");
+        }
+        int tableSize = Integer.highestOneBit(buckets);
+        if (tableSize < buckets) {
+            tableSize <<= 1;
+        }
+        this.file = file;
+        this.bucketMask = tableSize - 1;
+        this.recordsStart = tableSize * 8L;
+        this.data = new RandomAccessFile(file, "rw");
+        this.channel = data.getChannel();
+        this.calcs = new RandomAccessFile(getCalcFile(file), "rw");
+        if (keep && calcs.length() > 0) {
+            load(tableSize);
+        } else {
+            clear();
+        }
+    }
+
+    /**
+     * open opens a spill file keeping the visits already in it, so a teller
+     * restarted after a crash can restore its day on top of them. A record cut
+     * short by the crash is dropped. An empty or missing file is opened as a new spill.
+     *
+     * @param file File the closed visits are written to
+     * @param buckets Integer containing the number of buckets the file was made with
+     * @return Instance of the ClosedTicketSpill
+     * @throws IOException If the file cannot be opened or was made with a different number of buckets
+     * @throws IllegalArgumentException File cannot be null and buckets must be between 1 and 2^24
+     */
+    public static ClosedTicketSpill open(File file, int buckets) throws IOException, IllegalArgumentException {
+        return new ClosedTicketSpill(file, buckets, true);
+    }
+
+    /**
+     * spill writes a closed visit to the file
+     *
+     * @param vehicle Instance of the Vehicle holding the paid visit
+     * @param calcID String containing the ID of the calculator the fee was worked out with
+     * @param rate Double containing the rate the fee was multiplied by, 1 for the standard price
+     * @throws IOException If the record cannot be written
+     * @throws IllegalArgumentException Vehicle and calcID cannot be null and the visit must be paid
+     */
+    public final void spill(Vehicle vehicle, String calcID, double rate) throws IOException, IllegalArgumentException {
+        if (vehicle == null || calcID == null || !vehicle.getTicket().isPaid()) {
+            throw new IllegalArgumentException("Vehicle and calcID cannot be null and the visit must be paid");
+        }
+        String vehicleID = vehicle.getVehicleID();
+        ParkingTicket ticket = vehicle.getTicket();
+        long bucket = bucketOffset(vehicleID);
+        int calc = calcIDs.indexOf(calcID);
+        if (calc < 0) {
+            calc = calcIDs.size();
+            calcs.seek(calcs.length());
+            calcs.writeUTF(calcID);
+            calcIDs.add(calcID);
+        }
+
+        record.clear();
+        for (int i = 0; i < 4; i++) {
+            record.putChar(vehicleID.charAt(i));
+        }
+        record.putInt(ticket.getTicketNumber()).putInt(ticket.getSpot()).putInt(ticket.getLevel())
+                .putInt(ticket.getReservationID()).putDouble(ticket.getHours()).putDouble(ticket.getFeePaid())
+                .putDouble(rate).putInt(calc).putInt(0).putLong(readSlot(bucket));
+        record.flip();
+        write(record, end);
+
+        slot.clear();
+        slot.putLong(end).flip();
+        write(slot, bucket);
+        end += RECORD_BYTES;
+        size++;
+    }
+
+    /**
+     * getVisits gets the vehicle's spilled visits, oldest first
+     *
+     * @param vehicleID String containing a unique ID for the vehicle
+     * @return An array of the visits, empty when none have been spilled
+     * @throws IOException If the file cannot be read
+     */
+    public final Vehicle[] getVisits(String vehicleID) throws IOException {
+        List<Vehicle> visits = new ArrayList<Vehicle>();
+        long offset = firstRecord(vehicleID);
+        while (offset != 0) {
+            if (matches(vehicleID)) {
+                ParkingTicket ticket = new ParkingTicket(record.getDouble(24), record.getInt(8));
+                ticket.pay(record.getDouble(32), calcIDs.get(record.getInt(48)), record.getDouble(40));
+                if (record.getInt(12) >= 0) {
+                    ticket.setSpot(record.getInt(12));
+                }
+                if (record.getInt(16) >= 0) {
+                    ticket.setLevel(record.getInt(16));
+                }
+                if (record.getInt(20) > 0) {
+                    ticket.setReservationID(record.getInt(20));
+                }
+                visits.add(new Vehicle(ticket, vehicleID));
+            }
+            offset = nextRecord();
+        }
+        Collections.reverse(visits);
+        return visits.toArray(new Vehicle[visits.size()]);
+    }
+
+    /**
+     * getVisitCount gets how many of the vehicle's visits have been spilled
+     *
+     * @param vehicleID String containing a unique ID for the vehicle
+     * @return Integer containing the number of visits
+     * @throws IOException If the file cannot be read
+     */
+    public final int getVisitCount(String vehicleID) throws IOException {
+        int count = 0;
+        long offset = firstRecord(vehicleID);
+        while (offset != 0) {
+            if (matches(vehicleID)) {
+                count++;
+            }
+            offset = nextRecord();
+        }
+        return count;
+    }
+
+    /**
+     * getFeeCents gets the fees paid on the vehicle's spilled visits
+     *
+     * @param vehicleID String containing a unique ID for the vehicle
+     * @return Long containing the fees in cents
+     * @throws IOException If the file cannot be read
+     */
+    public final long getFeeCents(String vehicleID) throws IOException {
+        long cents = 0;
+        long offset = firstRecord(vehicleID);
+        while (offset != 0) {
+            if (matches(vehicleID)) {
+                cents += TransactionHistory.toCents(record.getDouble(32));
+            }
+            offset = nextRecord();
+        }
+        return cents;
+    }
+
+    /**
+     * findLastRecord gets the receipt of the vehicle's newest spilled visit
+     *
+     * @param vehicleID String containing a unique ID for the vehicle
+     * @param garage Instance of the Garage the visit was at
+     * @return Instance of the ReceiptRecord, or null when none of the vehicle's visits have been spilled
+     * @throws IOException If the file cannot be read
+     */
+    public final ReceiptRecord findLastRecord(String vehicleID, Garage garage) throws IOException {
+        long offset = firstRecord(vehicleID);
+        while (offset != 0) {
+            if (matches(vehicleID)) {
+                return new ReceiptRecord(garage.getName(), garage.getAddress(), vehicleID, record.getInt(8),
+                        record.getDouble(24), record.getDouble(32), calcIDs.get(record.getInt(48)),
+                        record.getDouble(40));
+            }
+            offset = nextRecord();
+        }
+        return null;
+    }
+
+    /**
+     * clear throws away every spilled visit
+     *
+     * @throws IOException If the file cannot be emptied
+     */
+    public final void clear() throws IOException {
+        channel.truncate(0);
+        data.setLength(recordsStart);
+        calcs.setLength(0);
+        calcs.writeInt(bucketMask + 1);
+        calcIDs.clear();
+        end = recordsStart;
+        size = 0;
+    }
+
+    /**
+     * truncate throws away every visit spilled after the first ones, so the spill
+     * goes back to how it was when a RecoverySnapshot was taken. Buckets pointing
+     * at a visit thrown away are pointed back at the newest one kept.
+     *
+     * @param visits Integer containing the number of visits to keep
+     * @throws IOException If the file cannot be rewritten or holds fewer visits than asked for
+     */
+    public final void truncate(int visits) throws IOException {
+        if (visits < 0 || visits > size) {
+            throw new IOException("Spill " + file + " holds " + size + " visits, cannot keep " + visits);
+        }
+        if (visits < size) {
+            cutBack(recordsStart + (long) visits * RECORD_BYTES);
+            size = visits;
+        }
+    }
+
+    private void cutBack(long newEnd) throws IOException {
+        ByteBuffer table = ByteBuffer.allocate((int) Math.min(recordsStart, 1 << 16));
+        for (long start = 0; start < recordsStart; start += table.capacity()) {
+            table.clear();
+            while (table.hasRemaining()) {
+                if (channel.read(table, start + table.position()) < 0) {
+                    throw new EOFException("Spill file ends inside its bucket table");
+                }
+            }
+            boolean changed = false;
+            for (int i = 0; i < table.capacity(); i += 8) {
+                long offset = table.getLong(i);
+                if (offset >= newEnd) {
+                    while (offset >= newEnd) {
+                        read(offset);
+                        offset = record.getLong(56);
+                    }
+                    table.putLong(i, offset);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                table.rewind();
+                write(table, start);
+            }
+        }
+        channel.truncate(newEnd);
+        end = newEnd;
+    }
+
+    /**
+     * close closes the spill file, leaving it on disk
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    @Override
+    public final void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            calcs.close();
+        }
+    }
+
+    private void load(int tableSize) throws IOException {
+        calcs.seek(0);
+        if (calcs.readInt() != tableSize) {
+            throw new IOException("Spill " + file + " was made with a different number of buckets");
+        }
+        calcIDs.clear();
+        long good = calcs.getFilePointer();
+        try {
+            while (good < calcs.length()) {
+                calcIDs.add(calcs.readUTF());
+                good = calcs.getFilePointer();
+            }
+        } catch (EOFException ex) {
+            calcs.setLength(good);
+        }
+        if (data.length() < recordsStart) {
+            data.setLength(recordsStart);
+        }
+        long records = (data.length() - recordsStart) / RECORD_BYTES;
+        size = (int) records;
+        cutBack(recordsStart + records * RECORD_BYTES);
+    }
+
+    private static File getCalcFile(File file) {
+        return new File(file.getPath() + ".calc");
+    }
+
+    private long bucketOffset(String vehicleID) {
+        int hash = vehicleID.hashCode() * 0x9E3779B9;
+        return ((hash ^ (hash >>> 16)) & bucketMask) * 8L;
+    }
+
+    private long firstRecord(String vehicleID) throws IOException {
+        if (vehicleID == null || vehicleID.length() != 4 || size == 0) {
+            return 0;
+        }
+        long offset = readSlot(bucketOffset(vehicleID));
+        if (offset != 0) {
+            read(offset);
+        }
+        return offset;
+    }
+
+    private long nextRecord() throws IOException {
+        long offset = record.getLong(56);
+        if (offset != 0) {
+            read(offset);
+        }
+        return offset;
+    }
+
+    private boolean matches(String vehicleID) {
+        for (int i = 0; i < 4; i++) {
+            if (record.getChar(i * 2) != vehicleID.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long readSlot(long position) throws IOException {
+        slot.clear();
+        while (slot.hasRemaining()) {
+            if (channel.read(slot, position + slot.position()) < 0) {
+                throw new EOFException("Spill file ends inside its bucket table");
+            }
+        }
+        return slot.getLong(0);
+    }
+
+    private void read(long position) throws IOException {
+        record.clear();
+        while (record.hasRemaining()) {
+            if (channel.read(record, position + record.position()) < 0) {
+                throw new EOFException("Spill file ends inside a record at " + position);
+            }
+        }
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Gets the file the closed visits are written to
+     *
+     * @return File of the spill
+     */
+    public final File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the number of visits spilled
+     *
+     * @return Integer containing the number of visits
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * Overrides the toString method, converts a ClosedTicketSpill to a string
+     *
+     * @return A string containing the file and the number of visits spilled
+     */
+    @Override
+    public String toString() {
+        return "Closed ticket spill " + file + " visits: " + size;
+    }
+
+    /**
+     * Checks in and checks out a day of cars through a teller, with and without
+     * a spill, and prints the heap used by the receipt as the day goes on.
+     *
+     * Usage: ClosedTicketSpill spill.bin [cars]
+     *
+     * @param args File the closed visits are spilled to and optional number of cars, 500,000 by default
+     * @throws IOException If the spill cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        File file = new File(args[0]);
+        int cars = args.length > 1 ? Integer.parseInt(args[1]) : 500000;
+        for (int round = 0; round < 2; round++) {
+            boolean spilling = round == 1;
+            Garage garage = new Garage(new ThriftyFeeCalculator(1.5, 2, .75, "A1234"), "Jims Parking Garage",
+                    "1234 West Ave, Pewaukee, WI");
+            AutomatedTeller atm = new AutomatedTeller(new Receipt(garage), new ReceiptNoOutput(), garage);
+            try (ClosedTicketSpill spill = new ClosedTicketSpill(file, 1 << 16)) {
+                if (spilling) {
+                    atm.getReceipt().setSpill(spill, 5000);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < cars; i++) {
+                    String vehicleID = Integer.toString(i % 1679616 + 46656, 36).toUpperCase();
+                    atm.parkNewVehicle(vehicleID, 1 + i % 23);
+                    if (i >= 2000) {
+                        atm.checkoutVehicle(Integer.toString((i - 2000) % 1679616 + 46656, 36).toUpperCase());
+                    }
+                    if ((i + 1) % (cars / 5) == 0) {
+                        System.gc();
+                        Runtime runtime = Runtime.getRuntime();
+                        System.out.println(String.format("%s %d cars: %d KB heap", spilling ? "spill" : "memory",
+                                i + 1, (runtime.totalMemory() - runtime.freeMemory()) / 1024));
+                    }
+                }
+                System.out.println(String.format("%s: %.0f cars/s, %d visits spilled", spilling ? "spill" : "memory",
+                        cars * 1e9 / (System.nanoTime() - start), spill.size()));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,282 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * ColumnarExportReader class is used to query an export written by the
+ * ColumnarExportWriter. A query names the column to total and a range of values
+ * another column must fall in. Chunks whose min and max show no row can match
+ * are skipped without reading, chunks whose every row matches are totalled
+ * without reading the filter column, and only the named columns are ever read
+ * from disk.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class ColumnarExportReader implements Closeable {
+    private static final int COLUMNS = TransactionColumn.values().length;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final List<String> calcIDs;
+    private final List<String> garageNames;
+    private final int[] chunkRows;
+    private final long[][] chunkStats;
+    private final ByteBuffer valueBuffer = ByteBuffer.allocate(ColumnarExportWriter.CHUNK_ROWS * 8);
+    private final ByteBuffer filterBuffer = ByteBuffer.allocate(ColumnarExportWriter.CHUNK_ROWS * 8);
+    private int chunksSkipped;
+
+    /**
+     * Overrides the default constructor requiring the export file to be passed in.
+     * The footer is read straight away.
+     *
+     * @param export File written by the ColumnarExportWriter
+     * @throws IOException If the file cannot be read or is not an export
+     * @throws IllegalArgumentException File cannot be null
+     */
+    public ColumnarExportReader(File export) throws IOException, IllegalArgumentException {
+        if (export == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        file = new RandomAccessFile(export, "r");
+        channel = file.getChannel();
+        try {
+            if (file.readInt() != ColumnarExportWriter.MAGIC || file.readInt() != ColumnarExportWriter.VERSION) {
+                throw new IOException("Not a columnar export");
+            }
+            file.seek(file.length() - 8);
+            long footer = file.readLong();
+            byte[] bytes = new byte[(int) (file.length() - 8 - footer)];
+            file.seek(footer);
+            file.readFully(bytes);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            calcIDs = readNames(in);
+            garageNames = readNames(in);
+            chunkRows = new int[in.readInt()];
+            chunkStats = new long[chunkRows.length][COLUMNS * 3];
+            for (int i = 0; i < chunkRows.length; i++) {
+                chunkRows[i] = in.readInt();
+                for (int c = 0; c < COLUMNS * 3; c++) {
+                    chunkStats[i][c] = in.readLong();
+                }
+            }
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * sum totals one column over every row
+     *
+     * @param column Column to total
+     * @return Long containing the total
+     * @throws IOException If the export cannot be read
+     */
+    public final long sum(TransactionColumn column) throws IOException {
+        return sum(column, column, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * sum totals one column over the rows whose filter column is in a range
+     *
+     * @param column Column to total
+     * @param filter Column the range applies to
+     * @param min Smallest filter value to include
+     * @param max Largest filter value to include
+     * @return Long containing the total
+     * @throws IOException If the export cannot be read
+     * @throws IllegalArgumentException Columns cannot be null
+     */
+    public final long sum(TransactionColumn column, TransactionColumn filter, long min, long max)
+            throws IOException, IllegalArgumentException {
+        return query(column, filter, min, max)[1];
+    }
+
+    /**
+     * count counts the rows whose filter column is in a range
+     *
+     * @param filter Column the range applies to
+     * @param min Smallest filter value to include
+     * @param max Largest filter value to include
+     * @return Long containing the number of rows
+     * @throws IOException If the export cannot be read
+     * @throws IllegalArgumentException Column cannot be null
+     */
+    public final long count(TransactionColumn filter, long min, long max) throws IOException,
+            IllegalArgumentException {
+        return query(null, filter, min, max)[0];
+    }
+
+    /**
+     * query counts the matching rows and, when a column is given, totals it
+     */
+    private long[] query(TransactionColumn column, TransactionColumn filter, long min, long max)
+            throws IOException, IllegalArgumentException {
+        if (filter == null) {
+            throw new IllegalArgumentException("Columns cannot be null");
+        }
+        long count = 0;
+        long total = 0;
+        chunksSkipped = 0;
+        for (int i = 0; i < chunkRows.length; i++) {
+            long chunkMin = chunkStats[i][filter.ordinal() * 3 + 1];
+            long chunkMax = chunkStats[i][filter.ordinal() * 3 + 2];
+            if (chunkMax < min || chunkMin > max) {
+                chunksSkipped++;
+                continue;
+            }
+            int rows = chunkRows[i];
+            boolean allMatch = chunkMin >= min && chunkMax <= max;
+            if (allMatch) {
+                count += rows;
+                if (column != null) {
+                    ByteBuffer values = readColumn(i, column, valueBuffer);
+                    for (int r = 0; r < rows; r++) {
+                        total += get(values, column, r);
+                    }
+                }
+                continue;
+            }
+
+            ByteBuffer filters = readColumn(i, filter, filterBuffer);
+            ByteBuffer values = column == null ? null
+                    : column == filter ? filters : readColumn(i, column, valueBuffer);
+            for (int r = 0; r < rows; r++) {
+                long value = get(filters, filter, r);
+                if (value >= min && value <= max) {
+                    count++;
+                    if (values != null) {
+                        total += get(values, column, r);
+                    }
+                }
+            }
+        }
+        return new long[]{count, total};
+    }
+
+    /**
+     * readColumn reads one column of one chunk into the buffer
+     */
+    private ByteBuffer readColumn(int chunk, TransactionColumn column, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        buffer.limit(chunkRows[chunk] * column.getWidth());
+        long offset = chunkStats[chunk][column.ordinal() * 3];
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Export ends inside a chunk");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long get(ByteBuffer buffer, TransactionColumn column, int row) {
+        return column.getWidth() == 8 ? buffer.getLong(row * 8) : buffer.getInt(row * 4);
+    }
+
+    /**
+     * getCalcIndex gets the number the CALC column uses for a calculator ID
+     *
+     * @param calcID String containing the calculator ID
+     * @return Integer containing the number, or -1 when the export does not hold the calculator
+     */
+    public final int getCalcIndex(String calcID) {
+        return calcIDs.indexOf(calcID);
+    }
+
+    /**
+     * getGarageIndex gets the number the GARAGE column uses for a garage name
+     *
+     * @param garageName String containing the garage name
+     * @return Integer containing the number, or -1 when the export does not hold the garage
+     */
+    public final int getGarageIndex(String garageName) {
+        return garageNames.indexOf(garageName);
+    }
+
+    /**
+     * Gets the calculator IDs in the export, in the order the CALC column numbers them
+     *
+     * @return List of calculator IDs
+     */
+    public final List<String> getCalcIDs() {
+        return Collections.unmodifiableList(calcIDs);
+    }
+
+    /**
+     * Gets the garage names in the export, in the order the GARAGE column numbers them
+     *
+     * @return List of garage names
+     */
+    public final List<String> getGarageNames() {
+        return Collections.unmodifiableList(garageNames);
+    }
+
+    /**
+     * Gets the number of chunks in the export
+     *
+     * @return Integer containing the chunk count
+     */
+    public final int getChunkCount() {
+        return chunkRows.length;
+    }
+
+    /**
+     * Gets the number of chunks the last query skipped using their min and max
+     *
+     * @return Integer containing the chunks skipped
+     */
+    public final int getChunksSkipped() {
+        return chunksSkipped;
+    }
+
+    /**
+     * close closes the export file
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    @Override
+    public final void close() throws IOException {
+        file.close();
+    }
+
+    private static List<String> readNames(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> names = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(in.readUTF());
+        }
+        return names;
+    }
+
+    /**
+     * Prints the revenue and hours of an export, and the revenue of one day as an
+     * example of a query that skips chunks.
+     *
+     * Usage: ColumnarExportReader export.col [yyyyMMdd]
+     *
+     * @param args Export file and an optional day
+     * @throws IOException If the export cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        try (ColumnarExportReader reader = new ColumnarExportReader(new File(args[0]))) {
+            System.out.println(String.format("rows=%d revenue=$%.2f hours=%.2f chunks=%d",
+                    reader.count(TransactionColumn.FEE, Long.MIN_VALUE, Long.MAX_VALUE),
+                    reader.sum(TransactionColumn.FEE) / 100.0, reader.sum(TransactionColumn.HOURS) / 100.0,
+                    reader.getChunkCount()));
+            if (args.length > 1) {
+                int day = Integer.parseInt(args[1]);
+                long revenue = reader.sum(TransactionColumn.FEE, TransactionColumn.DAY, day, day);
+                System.out.println(String.format("day %d revenue=$%.2f chunks skipped=%d", day, revenue / 100.0,
+                        reader.getChunksSkipped()));
+            }
+        }
+    }
+
+}
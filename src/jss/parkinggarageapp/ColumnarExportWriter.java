@@ -0,0 +1,230 @@
+package jss.parkinggarageapp;
+
+import filemanager.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * ColumnarExportWriter class is used to export transaction history for analysis
+ * as column chunks instead of rows. Every CHUNK_ROWS transactions are written as
+ * one chunk holding each TransactionColumn in turn, as fixed width big-endian
+ * values. The footer lists the calculator and garage dictionaries and, for every
+ * chunk, where each column starts and its smallest and largest value, so the
+ * ColumnarExportReader can skip chunks a query cannot match and read one column
+ * without the others:
+ * <pre>
+ *   magic, version
+ *   chunk 0: DAY values, TICKET values, FEE values, HOURS values, CALC values, GARAGE values
+ *   chunk 1: ...
+ *   footer: calculator IDs, garage names, chunk count, then per chunk the rows and
+ *           per column the offset, min and max
+ *   offset of the footer, the last 8 bytes
+ * </pre>
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class ColumnarExportWriter implements Closeable {
+    public static final int MAGIC = 0x47434F4C;
+    public static final int VERSION = 1;
+    public static final int CHUNK_ROWS = 8192;
+
+    private static final TransactionColumn[] COLUMNS = TransactionColumn.values();
+
+    private final DataOutputStream out;
+    private long position;
+    private int rows;
+    private final long[][] values = new long[COLUMNS.length][CHUNK_ROWS];
+    private final List<long[]> chunkStats = new ArrayList<long[]>();
+    private final List<Integer> chunkRows = new ArrayList<Integer>();
+    private final List<String> calcIDs = new ArrayList<String>();
+    private final Map<String, Integer> calcLookup = new HashMap<String, Integer>();
+    private final List<String> garageNames = new ArrayList<String>();
+    private final Map<String, Integer> garageLookup = new HashMap<String, Integer>();
+
+    /**
+     * Overrides the default constructor requiring the stream to be passed in
+     *
+     * @param out Stream the export is written to
+     * @throws IOException If the header cannot be written
+     * @throws IllegalArgumentException Stream cannot be null
+     */
+    public ColumnarExportWriter(OutputStream out) throws IOException, IllegalArgumentException {
+        if (out == null) {
+            throw new IllegalArgumentException("Stream cannot be null");
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 65536));
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        position = 8;
+    }
+
+    /**
+     * add queues one transaction and writes the chunk once it is full
+     *
+     * @param transaction Instance of the Transaction class
+     * @throws IOException If a chunk cannot be written
+     * @throws IllegalArgumentException Transaction cannot be null
+     */
+    public final void add(Transaction transaction) throws IOException, IllegalArgumentException {
+        if (transaction == null) {
+            throw new IllegalArgumentException("Transaction cannot be null");
+        }
+        add(transaction.getDay(), transaction.getTicketNumber(), TransactionHistory.toCents(transaction.getFees()),
+                TransactionHistory.toHundredths(transaction.getHours()), transaction.getCalcID(),
+                transaction.getGarageName());
+    }
+
+    /**
+     * add queues one row given as its column values and writes the chunk once it is full
+     *
+     * @param day Integer containing the day in yyyyMMdd form, zero when unknown
+     * @param ticketNumber Integer containing the ticket number, zero when unknown
+     * @param feeCents Long containing the fee in cents
+     * @param hourHundredths Long containing the hours in hundredths
+     * @param calcID String containing the calculator ID, empty when unknown
+     * @param garageName String containing the garage name, empty when unknown
+     * @throws IOException If a chunk cannot be written
+     * @throws IllegalArgumentException Calculator ID and garage name cannot be null
+     */
+    public final void add(int day, int ticketNumber, long feeCents, long hourHundredths, String calcID,
+            String garageName) throws IOException, IllegalArgumentException {
+        if (calcID == null || garageName == null) {
+            throw new IllegalArgumentException("Calculator ID and garage name cannot be null");
+        }
+        values[TransactionColumn.DAY.ordinal()][rows] = day;
+        values[TransactionColumn.TICKET.ordinal()][rows] = ticketNumber;
+        values[TransactionColumn.FEE.ordinal()][rows] = feeCents;
+        values[TransactionColumn.HOURS.ordinal()][rows] = hourHundredths;
+        values[TransactionColumn.CALC.ordinal()][rows] = indexOf(calcID, calcIDs, calcLookup);
+        values[TransactionColumn.GARAGE.ordinal()][rows] = indexOf(garageName, garageNames, garageLookup);
+        rows++;
+        if (rows == CHUNK_ROWS) {
+            writeChunk();
+        }
+    }
+
+    /**
+     * addAll queues every row read through a FileService. Rows written by the
+     * TransactionFileFormat keep every column; rows holding only Hours and Fees,
+     * as the CustomGarageFileFormat writes them, get zero for the day and ticket
+     * and an empty calculator and garage.
+     *
+     * @param fs Instance of the FileService to read
+     * @return Integer containing the number of rows added
+     * @throws IOException If the FileService cannot be read or a chunk cannot be written
+     * @throws IllegalArgumentException FileService cannot be null and every row needs Hours and Fees
+     */
+    public final int addAll(FileService fs) throws IOException, IllegalArgumentException {
+        if (fs == null) {
+            throw new IllegalArgumentException("FileService cannot be null");
+        }
+        int added = 0;
+        for (LinkedHashMap<String, String> row : fs.getAllData()) {
+            if (row.containsKey("Ticket")) {
+                add(TransactionFileFormat.fromMap(row));
+            } else if (row.get("Hours") != null && row.get("Fees") != null) {
+                add(0, 0, TransactionHistory.toCents(Double.parseDouble(row.get("Fees"))),
+                        TransactionHistory.toHundredths(Double.parseDouble(row.get("Hours"))), "", "");
+            } else {
+                throw new IllegalArgumentException("Row must contain Hours and Fees");
+            }
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * close writes the last chunk and the footer and closes the stream
+     *
+     * @throws IOException If the stream cannot be written
+     */
+    @Override
+    public final void close() throws IOException {
+        if (rows > 0) {
+            writeChunk();
+        }
+        long footer = position;
+        writeNames(calcIDs);
+        writeNames(garageNames);
+        out.writeInt(chunkRows.size());
+        for (int i = 0; i < chunkRows.size(); i++) {
+            out.writeInt(chunkRows.get(i));
+            long[] stats = chunkStats.get(i);
+            for (int c = 0; c < stats.length; c++) {
+                out.writeLong(stats[c]);
+            }
+        }
+        out.writeLong(footer);
+        out.close();
+    }
+
+    /**
+     * writeChunk writes every column of the queued rows and keeps their offsets and min and max
+     */
+    private void writeChunk() throws IOException {
+        long[] stats = new long[COLUMNS.length * 3];
+        for (TransactionColumn column : COLUMNS) {
+            long[] columnValues = values[column.ordinal()];
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < rows; i++) {
+                long value = columnValues[i];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                if (column.getWidth() == 8) {
+                    out.writeLong(value);
+                } else {
+                    out.writeInt((int) value);
+                }
+            }
+            stats[column.ordinal() * 3] = position;
+            stats[column.ordinal() * 3 + 1] = min;
+            stats[column.ordinal() * 3 + 2] = max;
+            position += (long) rows * column.getWidth();
+        }
+        chunkStats.add(stats);
+        chunkRows.add(rows);
+        rows = 0;
+    }
+
+    private void writeNames(List<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    private static int indexOf(String value, List<String> values, Map<String, Integer> lookup) {
+        Integer index = lookup.get(value);
+        if (index == null) {
+            index = values.size();
+            values.add(value);
+            lookup.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Exports a history file written through a FileService, in either the
+     * TransactionFileFormat or the CustomGarageFileFormat.
+     *
+     * Usage: ColumnarExportWriter history.txt export.col [custom]
+     *
+     * @param args History file, export file and custom when the history holds only hours and fees
+     * @throws IOException If a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        TextFileReader reader = new TextFileReader(new CustomGarageFileFormat(), args[0]);
+        if (args.length < 3 || !"custom".equals(args[2])) {
+            reader.setFormatter(new TransactionFileFormat());
+        }
+        FileService fs = new FileService(new TextFileWriter(reader.getFormatter(), args[0]), reader);
+        int added;
+        try (ColumnarExportWriter writer = new ColumnarExportWriter(new FileOutputStream(args[1]))) {
+            added = writer.addAll(fs);
+        }
+        System.out.println("Exported " + added + " rows to " + args[1]);
+    }
+
+}
@@ -0,0 +1,1114 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * DailySegmentStore class is used to persist transactions as one file per garage
+ * per day instead of one file for all time. Each garage gets a folder under the
+ * root folder and each day a segment named yyyyMMdd.txt written with the
+ * TransactionFileFormat. A segment left HOT by a crash is cut back to its last
+ * whole line when the store is opened, so the next transaction starts on a
+ * fresh line instead of running into half of one. A small manifest.txt in the root lists every segment
+ * with its row count, highest ticket number and state, so a range query only
+ * opens the segments it needs and scans them in parallel.
+ *
+ * A segment is HOT while it is being appended to, CLOSED once its day has ended
+ * and ARCHIVED once it has been rewritten to yyyyMMdd.blk by the
+ * ArchiveBlockWriter. Archiving only touches closed days, never today's hot file.
+ *
+ * Every append also adds the transaction to the day's SegmentIndex, which is
+ * written to yyyyMMdd.idx when the day is closed, so a ticket or a vehicle's
+ * visits can be found without scanning the day.
+ *
+ * Check-ins are journaled apart from the transactions, to yyyyMMdd.in next to
+ * the day's segment, one line per vehicle with its ticket number, ID, hours,
+ * spot, level and reservation, so a garage restarted after a crash gets back
+ * the vehicles parked since its last snapshot and never issues their ticket
+ * numbers again.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class DailySegmentStore {
+    public static final String MANIFEST = "manifest.txt";
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    private final File root;
+    private final Map<String, Segment> segments = new TreeMap<String, Segment>();
+    private final Map<String, Writer> openWriters = new HashMap<String, Writer>();
+    private final Map<String, SegmentIndex> hotIndexes = new HashMap<String, SegmentIndex>();
+    private final Map<String, Writer> checkInWriters = new HashMap<String, Writer>();
+    private final Map<String, Integer> lastCheckIns = new HashMap<String, Integer>();
+
+    /**
+     * Segment class holds the manifest entry of one garage's day
+     */
+    public static class Segment {
+        private final String garageName;
+        private final int day;
+        private final File folder;
+        private int rows;
+        private int maxTicket;
+        private String state;
+        private long length;
+
+        private Segment(String garageName, int day, File folder, int rows, int maxTicket, String state) {
+            this.garageName = garageName;
+            this.day = day;
+            this.folder = folder;
+            this.rows = rows;
+            this.maxTicket = maxTicket;
+            this.state = state;
+        }
+
+        /**
+         * Gets the name of the garage the segment belongs to
+         *
+         * @return String containing the garage name
+         */
+        public final String getGarageName() {
+            return garageName;
+        }
+
+        /**
+         * Gets the day of the segment
+         *
+         * @return Integer containing the day in yyyyMMdd form
+         */
+        public final int getDay() {
+            return day;
+        }
+
+        /**
+         * Gets the number of transactions in the segment
+         *
+         * @return Integer containing the row count
+         */
+        public final int getRows() {
+            return rows;
+        }
+
+        /**
+         * Gets the highest ticket number in the segment
+         *
+         * @return Integer containing the ticket number, zero when the segment is empty
+         */
+        public final int getMaxTicket() {
+            return maxTicket;
+        }
+
+        /**
+         * Gets the state of the segment
+         *
+         * @return HOT, CLOSED or ARCHIVED
+         */
+        public final String getState() {
+            return state;
+        }
+
+        /**
+         * Checks if the segment has been compressed
+         *
+         * @return A boolean whether the segment is archived
+         */
+        public final boolean isArchived() {
+            return "ARCHIVED".equals(state);
+        }
+
+        /**
+         * Gets the file holding the segment's transactions
+         *
+         * @return The plain text or archive file
+         */
+        public final File getFile() {
+            return new File(folder, day + (isArchived() ? ".blk" : ".txt"));
+        }
+
+        /**
+         * Overrides the toString method, converts a Segment to a string
+         *
+         * @return A string containing the garage, day, rows and state
+         */
+        @Override
+        public String toString() {
+            return garageName + " " + day + " rows: " + rows + " " + state;
+        }
+    }
+
+    /**
+     * Overrides the default constructor requiring the root folder to be passed
+     * in. The manifest is loaded if there is one, and any segment still marked
+     * HOT, which means the program stopped without closing it, is recounted.
+     *
+     * @param root Folder the segments and manifest are kept in
+     * @throws IOException If the folder or manifest cannot be read
+     * @throws IllegalArgumentException Root folder cannot be null
+     */
+    public DailySegmentStore(File root) throws IOException, IllegalArgumentException {
+        if (root == null) {
+            throw new IllegalArgumentException("Root folder cannot be null");
+        }
+        this.root = root;
+        if (!root.isDirectory() && !root.mkdirs()) {
+            throw new IOException("Cannot create folder " + root);
+        }
+        loadManifest();
+    }
+
+    /**
+     * append writes a transaction to the end of its garage's segment for its day,
+     * creating the segment when it is the first transaction of the day
+     *
+     * @param transaction Instance of the Transaction class
+     * @throws IOException If the segment cannot be written
+     * @throws IllegalArgumentException Transaction cannot be null
+     * @throws IllegalStateException The day has already been archived
+     */
+    public final synchronized void append(Transaction transaction) throws IOException, IllegalArgumentException,
+            IllegalStateException {
+        if (transaction == null) {
+            throw new IllegalArgumentException("Transaction cannot be null");
+        }
+        write(transaction).flush();
+    }
+
+    /**
+     * appendAll writes a batch of transactions to the ends of their segments,
+     * flushing each segment once for the whole batch instead of once per
+     * transaction
+     *
+     * @param transactions List of transactions in the order they happened
+     * @throws IOException If a segment cannot be written
+     * @throws IllegalArgumentException List and the transactions in it cannot be null
+     * @throws IllegalStateException A day has already been archived
+     */
+    public final synchronized void appendAll(List<Transaction> transactions) throws IOException,
+            IllegalArgumentException, IllegalStateException {
+        if (transactions == null || transactions.contains(null)) {
+            throw new IllegalArgumentException("Transactions cannot be null");
+        }
+        Set<Writer> written = Collections.newSetFromMap(new IdentityHashMap<Writer, Boolean>());
+        try {
+            for (Transaction transaction : transactions) {
+                written.add(write(transaction));
+            }
+        } finally {
+            for (Writer writer : written) {
+                writer.flush();
+            }
+        }
+    }
+
+    /**
+     * write adds a transaction to its segment and index without flushing
+     *
+     * @return The segment's writer
+     */
+    private Writer write(Transaction transaction) throws IOException, IllegalStateException {
+        String key = key(transaction.getGarageName(), transaction.getDay());
+        Segment segment = segments.get(key);
+        if (segment == null) {
+            segment = new Segment(transaction.getGarageName(), transaction.getDay(),
+                    getFolder(transaction.getGarageName()), 0, 0, "HOT");
+            segments.put(key, segment);
+            writeManifest();
+        } else if (segment.isArchived()) {
+            throw new IllegalStateException("Cannot append to archived day " + segment);
+        } else if (!"HOT".equals(segment.state)) {
+            segment.state = "HOT";
+            writeManifest();
+        }
+
+        Writer writer = openWriters.get(key);
+        if (writer == null) {
+            File folder = segment.folder;
+            if (!folder.isDirectory() && !folder.mkdirs()) {
+                throw new IOException("Cannot create folder " + folder);
+            }
+            trimTornLine(segment.getFile());
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(segment.getFile(), true), StandardCharsets.UTF_8));
+            openWriters.put(key, writer);
+            segment.length = segment.getFile().length();
+        }
+        SegmentIndex index = getHotIndex(segment);
+        String line = TransactionFileFormat.format(transaction);
+        writer.write(line);
+        writer.write('\n');
+
+        index.add(transaction.getTicketNumber(), transaction.getVehicleID(), segment.rows, segment.length);
+        segment.length += line.getBytes(StandardCharsets.UTF_8).length + 1;
+        segment.rows++;
+        segment.maxTicket = Math.max(segment.maxTicket, transaction.getTicketNumber());
+        return writer;
+    }
+
+    /**
+     * appendCheckIns journals a batch of check-ins to the garage's check-in file
+     * for the day, flushing once for the whole batch
+     *
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @param vehicles List of the vehicles that have parked, in the order they parked
+     * @throws IOException If the check-in file cannot be written
+     * @throws IllegalArgumentException Garage name, list and the vehicles in it cannot be null
+     */
+    public final synchronized void appendCheckIns(String garageName, int day, List<Vehicle> vehicles)
+            throws IOException, IllegalArgumentException {
+        if (garageName == null || vehicles == null || vehicles.contains(null)) {
+            throw new IllegalArgumentException("Garage name and vehicles cannot be null");
+        }
+        if (vehicles.isEmpty()) {
+            return;
+        }
+        String key = key(garageName, day);
+        Writer writer = checkInWriters.get(key);
+        if (writer == null) {
+            File file = getCheckInFile(garageName, day);
+            File folder = file.getParentFile();
+            if (!folder.isDirectory() && !folder.mkdirs()) {
+                throw new IOException("Cannot create folder " + folder);
+            }
+            trimTornLine(file);
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+            checkInWriters.put(key, writer);
+        }
+        int last = getLastCheckIn(garageName);
+        StringBuilder line = new StringBuilder(48);
+        for (Vehicle vehicle : vehicles) {
+            ParkingTicket ticket = vehicle.getTicket();
+            line.setLength(0);
+            line.append(ticket.getTicketNumber()).append('|').append(vehicle.getVehicleID()).append('|')
+                    .append(ticket.getHours()).append('|').append(ticket.getSpot()).append('|')
+                    .append(ticket.getLevel()).append('|').append(ticket.getReservationID()).append('\n');
+            writer.append(line);
+            last = Math.max(last, ticket.getTicketNumber());
+        }
+        writer.flush();
+        lastCheckIns.put(garageName, last);
+    }
+
+    /**
+     * readCheckIns loads the check-ins of one garage's day that were journaled
+     * after the check-in file had the given length. A last line cut short by a
+     * crash is left out.
+     *
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @param offset Length of the check-in file in bytes to skip, from getCheckInLength
+     * @return List of the vehicles in the order they parked, each with its spot, level and reservation on its ticket
+     * @throws IOException If the check-in file cannot be read
+     */
+    public final List<Vehicle> readCheckIns(String garageName, int day, long offset) throws IOException {
+        List<Vehicle> vehicles = new ArrayList<Vehicle>();
+        File file = getCheckInFile(garageName, day);
+        if (!file.isFile() || file.length() <= offset) {
+            return vehicles;
+        }
+        byte[] bytes;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            bytes = new byte[(int) (in.length() - offset)];
+            in.seek(offset);
+            in.readFully(bytes);
+        }
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                String[] fields = new String(bytes, start, i - start, StandardCharsets.UTF_8).split("\\|");
+                start = i + 1;
+                if (fields.length != 6) {
+                    continue;
+                }
+                ParkingTicket ticket = new ParkingTicket(Double.parseDouble(fields[2]), Integer.parseInt(fields[0]));
+                if (Integer.parseInt(fields[3]) >= 0) {
+                    ticket.setSpot(Integer.parseInt(fields[3]));
+                }
+                if (Integer.parseInt(fields[4]) >= 0) {
+                    ticket.setLevel(Integer.parseInt(fields[4]));
+                }
+                if (Integer.parseInt(fields[5]) > 0) {
+                    ticket.setReservationID(Integer.parseInt(fields[5]));
+                }
+                vehicles.add(new Vehicle(ticket, fields[1]));
+            }
+        }
+        return vehicles;
+    }
+
+    /**
+     * getCheckInLength gets how many bytes of check-ins one garage's day holds.
+     * Every batch of check-ins is flushed, so this is where the next one will start.
+     *
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @return Long containing the length, zero when the day has no check-ins
+     */
+    public final synchronized long getCheckInLength(String garageName, int day) {
+        return getCheckInFile(garageName, day).length();
+    }
+
+    /**
+     * getCheckInFile gets the file a garage's check-ins for the day are journaled to
+     *
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @return The check-in file, which may not exist
+     */
+    public final File getCheckInFile(String garageName, int day) {
+        return new File(getFolder(garageName), day + ".in");
+    }
+
+    /**
+     * getLastCheckIn gets the highest ticket number in the garage's newest
+     * check-in file, reading it the first time the garage is asked about
+     */
+    private int getLastCheckIn(String garageName) throws IOException {
+        Integer last = lastCheckIns.get(garageName);
+        if (last != null) {
+            return last;
+        }
+        int newest = -1;
+        File[] files = getFolder(garageName).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.matches("\\d{8}\\.in")) {
+                    newest = Math.max(newest, Integer.parseInt(name.substring(0, 8)));
+                }
+            }
+        }
+        int ticket = 0;
+        if (newest >= 0) {
+            for (Vehicle vehicle : readCheckIns(garageName, newest, 0)) {
+                ticket = Math.max(ticket, vehicle.getTicket().getTicketNumber());
+            }
+        }
+        lastCheckIns.put(garageName, ticket);
+        return ticket;
+    }
+
+    /**
+     * trimTornLine cuts a file back to the end of its last whole line, dropping
+     * a line a crash left half written so the next one starts on a fresh line
+     */
+    static void trimTornLine(File file) throws IOException {
+        if (!file.isFile() || file.length() == 0) {
+            return;
+        }
+        try (RandomAccessFile data = new RandomAccessFile(file, "rw")) {
+            long end = data.length();
+            byte[] chunk = new byte[4096];
+            while (end > 0) {
+                int size = (int) Math.min(chunk.length, end);
+                data.seek(end - size);
+                data.readFully(chunk, 0, size);
+                for (int i = size - 1; i >= 0; i--) {
+                    if (chunk[i] == '\n') {
+                        if (end - size + i + 1 < data.length()) {
+                            data.setLength(end - size + i + 1);
+                        }
+                        return;
+                    }
+                }
+                end -= size;
+            }
+            data.setLength(0);
+        }
+    }
+
+    /**
+     * closeDay closes the garage's segment for the day, writes its index and
+     * records its final row count in the manifest
+     *
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @throws IOException If the segment or manifest cannot be written
+     */
+    public final synchronized void closeDay(String garageName, int day) throws IOException {
+        String key = key(garageName, day);
+        Writer writer = openWriters.remove(key);
+        if (writer != null) {
+            writer.close();
+        }
+        Writer checkIns = checkInWriters.remove(key);
+        if (checkIns != null) {
+            checkIns.close();
+        }
+        SegmentIndex index = hotIndexes.remove(key);
+        if (index != null) {
+            index.write();
+        }
+        Segment segment = segments.get(key);
+        if (segment != null && "HOT".equals(segment.state)) {
+            segment.state = "CLOSED";
+            writeManifest();
+        }
+    }
+
+    /**
+     * close closes every hot segment and check-in file
+     *
+     * @throws IOException If a segment or the manifest cannot be written
+     */
+    public final synchronized void close() throws IOException {
+        for (Segment segment : new ArrayList<Segment>(segments.values())) {
+            if ("HOT".equals(segment.state)) {
+                closeDay(segment.garageName, segment.day);
+            }
+        }
+        for (Writer checkIns : checkInWriters.values()) {
+            checkIns.close();
+        }
+        checkInWriters.clear();
+    }
+
+    /**
+     * archive rewrites a closed day in the compact block format and removes its
+     * plain text file
+     *
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @return A boolean whether the day was archived, false when it is hot, already archived or missing
+     * @throws IOException If the segment cannot be rewritten
+     */
+    public final synchronized boolean archive(String garageName, int day) throws IOException {
+        Segment segment = segments.get(key(garageName, day));
+        if (segment == null || !"CLOSED".equals(segment.state)) {
+            return false;
+        }
+        File plain = segment.getFile();
+        File archive = new File(segment.folder, day + ".blk");
+        try (BufferedReader in = openReader(segment);
+                ArchiveBlockWriter out = new ArchiveBlockWriter(new FileOutputStream(archive), garageName, day)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    out.add(TransactionFileFormat.parse(line));
+                }
+            }
+        }
+        segment.state = "ARCHIVED";
+        writeManifest();
+        Files.delete(plain.toPath());
+        return true;
+    }
+
+    /**
+     * archiveBefore archives every closed day of every garage before the given day
+     *
+     * @param day Integer containing the first day to keep as plain text
+     * @return Integer containing the number of segments archived
+     * @throws IOException If a segment cannot be rewritten
+     */
+    public final synchronized int archiveBefore(int day) throws IOException {
+        int archived = 0;
+        for (Segment segment : new ArrayList<Segment>(segments.values())) {
+            if (segment.day < day && archive(segment.garageName, segment.day)) {
+                archived++;
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * getSegments lists the segments in a range of days
+     *
+     * @param garageName String containing the garage name, or null for all garages
+     * @param fromDay First day in yyyyMMdd form
+     * @param toDay Last day in yyyyMMdd form
+     * @return List of the matching segments ordered by garage and day
+     */
+    public final synchronized List<Segment> getSegments(String garageName, int fromDay, int toDay) {
+        List<Segment> matches = new ArrayList<Segment>();
+        for (Segment segment : segments.values()) {
+            if (segment.day >= fromDay && segment.day <= toDay
+                    && (garageName == null || garageName.equals(segment.garageName))) {
+                matches.add(segment);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * getLastTicketNumber gets the highest ticket number the garage has issued,
+     * checked out or still parked
+     *
+     * @param garageName String containing the garage name
+     * @return Integer containing the ticket number, zero when the garage has no transactions or check-ins
+     * @throws IllegalStateException The newest check-in file cannot be read
+     */
+    public final synchronized int getLastTicketNumber(String garageName) throws IllegalStateException {
+        int last;
+        try {
+            last = getLastCheckIn(garageName);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not read the check-ins of " + garageName, ex);
+        }
+        for (Segment segment : segments.values()) {
+            if (segment.garageName.equals(garageName)) {
+                last = Math.max(last, segment.maxTicket);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * read loads every transaction of one garage's day
+     *
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @return List of transactions in the order they were appended, empty when there are none
+     * @throws IOException If the segment cannot be read
+     */
+    public final List<Transaction> read(String garageName, int day) throws IOException {
+        return read(garageName, day, 0);
+    }
+
+    /**
+     * read loads the transactions of one garage's day that were appended after
+     * the segment had the given length, which is how a journal tail is replayed
+     *
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @param offset Length of the segment in bytes to skip, from getLength
+     * @return List of transactions in the order they were appended, empty when there are none
+     * @throws IOException If the segment cannot be read
+     */
+    public final List<Transaction> read(String garageName, int day, long offset) throws IOException {
+        List<Transaction> transactions = new ArrayList<Transaction>();
+        Segment segment;
+        synchronized (this) {
+            segment = segments.get(key(garageName, day));
+        }
+        if (segment == null || !segment.getFile().isFile()) {
+            return transactions;
+        }
+        if (segment.isArchived()) {
+            try (ArchiveBlockReader in = new ArchiveBlockReader(new FileInputStream(segment.getFile()))) {
+                List<Transaction> block;
+                while ((block = in.nextBlock()) != null) {
+                    transactions.addAll(block);
+                }
+            }
+            return transactions;
+        }
+        try (BufferedReader in = openReader(segment, offset)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    transactions.add(TransactionFileFormat.parse(line));
+                }
+            }
+        }
+        return transactions;
+    }
+
+    /**
+     * findTicket finds a ticket without scanning, checking first the day whose
+     * highest ticket number is the closest one at or above it, since tickets are
+     * numbered in order, and then the other days
+     *
+     * @param garageName String containing the garage name
+     * @param ticketNumber Integer containing the ticket number
+     * @return Instance of the Transaction class, or null when the garage has no such ticket
+     * @throws IOException If an index or segment cannot be read
+     */
+    public final Transaction findTicket(String garageName, int ticketNumber) throws IOException {
+        Segment found = null;
+        long[] entry = null;
+        synchronized (this) {
+            List<Segment> days = getSegments(garageName, 0, Integer.MAX_VALUE);
+            int low = 0;
+            int high = days.size() - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (days.get(middle).maxTicket < ticketNumber) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            if (!days.isEmpty()) {
+                days.add(0, days.remove(low));
+            }
+            for (Segment segment : days) {
+                entry = getIndex(segment).findTicket(ticketNumber);
+                if (entry != null) {
+                    found = segment;
+                    break;
+                }
+            }
+        }
+        if (found == null) {
+            return null;
+        }
+        return readRows(found, Collections.singletonList(entry)).get(0);
+    }
+
+    /**
+     * findVisits finds every transaction of a vehicle in a range of days using
+     * each day's index
+     *
+     * @param garageName String containing the garage name, or null for all garages
+     * @param vehicleID String containing the vehicle ID
+     * @param fromDay First day in yyyyMMdd form
+     * @param toDay Last day in yyyyMMdd form
+     * @return List of the vehicle's transactions ordered by garage and day, empty when there are none
+     * @throws IOException If an index or segment cannot be read
+     */
+    public final List<Transaction> findVisits(String garageName, String vehicleID, int fromDay, int toDay)
+            throws IOException {
+        Map<Segment, List<long[]>> matches = new LinkedHashMap<Segment, List<long[]>>();
+        synchronized (this) {
+            for (Segment segment : getSegments(garageName, fromDay, toDay)) {
+                List<long[]> entries = getIndex(segment).findVehicle(vehicleID);
+                if (!entries.isEmpty()) {
+                    matches.put(segment, entries);
+                }
+            }
+        }
+        List<Transaction> visits = new ArrayList<Transaction>();
+        for (Map.Entry<Segment, List<long[]>> match : matches.entrySet()) {
+            visits.addAll(readRows(match.getKey(), match.getValue()));
+        }
+        return visits;
+    }
+
+    /**
+     * getIndex gets a segment's index, building and saving it first when the day
+     * was closed before it had one
+     */
+    private SegmentIndex getIndex(Segment segment) throws IOException {
+        if ("HOT".equals(segment.state)) {
+            return getHotIndex(segment);
+        }
+        SegmentIndex index = new SegmentIndex(new File(segment.folder, segment.day + ".idx"));
+        if (!index.getFile().isFile()) {
+            buildIndex(segment, index);
+            index.write();
+        }
+        return index;
+    }
+
+    /**
+     * getHotIndex gets the in-memory index of a hot segment, building it from the
+     * segment when the day already has rows from before a restart
+     */
+    private SegmentIndex getHotIndex(Segment segment) throws IOException {
+        String key = key(segment.garageName, segment.day);
+        SegmentIndex index = hotIndexes.get(key);
+        if (index == null) {
+            index = new SegmentIndex(new File(segment.folder, segment.day + ".idx"));
+            buildIndex(segment, index);
+            hotIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * buildIndex adds every row of a segment to an index
+     */
+    private void buildIndex(Segment segment, SegmentIndex index) throws IOException {
+        if (!segment.getFile().isFile()) {
+            return;
+        }
+        try (BufferedReader in = openReader(segment)) {
+            int row = 0;
+            long offset = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    Transaction transaction = TransactionFileFormat.parse(line);
+                    index.add(transaction.getTicketNumber(), transaction.getVehicleID(), row++, offset);
+                }
+                offset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        }
+    }
+
+    /**
+     * readRows reads the transactions an index points at, seeking to each line of
+     * a plain segment or decoding only the blocks holding them in an archive
+     */
+    private List<Transaction> readRows(Segment segment, List<long[]> entries) throws IOException {
+        List<Transaction> transactions = new ArrayList<Transaction>(entries.size());
+        if (!segment.isArchived()) {
+            try (RandomAccessFile in = new RandomAccessFile(segment.getFile(), "r")) {
+                ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+                for (long[] entry : entries) {
+                    in.seek(entry[1]);
+                    line.reset();
+                    int b;
+                    while ((b = in.read()) != -1 && b != '\n') {
+                        line.write(b);
+                    }
+                    transactions.add(TransactionFileFormat.parse(line.toString("UTF-8")));
+                }
+            }
+            return transactions;
+        }
+
+        List<long[]> byRow = new ArrayList<long[]>(entries);
+        Collections.sort(byRow, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return Long.compare(a[0], b[0]);
+            }
+        });
+        Map<Long, Transaction> found = new HashMap<Long, Transaction>();
+        try (ArchiveBlockReader in = new ArchiveBlockReader(new FileInputStream(segment.getFile()))) {
+            long blockStart = 0;
+            List<Transaction> block = null;
+            for (long[] entry : byRow) {
+                while (block == null || entry[0] >= blockStart + block.size()) {
+                    if (block != null) {
+                        blockStart += block.size();
+                        block = null;
+                    }
+                    if (entry[0] >= blockStart + ArchiveBlockWriter.BLOCK_ROWS) {
+                        int skipped = in.skipBlock();
+                        if (skipped == 0) {
+                            throw new IOException("Index points past the end of " + segment);
+                        }
+                        blockStart += skipped;
+                    } else {
+                        block = in.nextBlock();
+                        if (block == null) {
+                            throw new IOException("Index points past the end of " + segment);
+                        }
+                    }
+                }
+                found.put(entry[0], block.get((int) (entry[0] - blockStart)));
+            }
+        }
+        for (long[] entry : entries) {
+            transactions.add(found.get(entry[0]));
+        }
+        return transactions;
+    }
+
+    /**
+     * getLength gets how many bytes of transactions one garage's day holds. Every
+     * append is flushed, so this is where the next transaction will start.
+     *
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @return Long containing the length, zero when the day has no segment or is archived
+     */
+    public final synchronized long getLength(String garageName, int day) {
+        Segment segment = segments.get(key(garageName, day));
+        if (segment == null || segment.isArchived()) {
+            return 0;
+        }
+        return segment.getFile().length();
+    }
+
+    /**
+     * openReader opens a segment for reading as lines in the TransactionFileFormat
+     * whether it is plain text or archived. An archive is decoded one block at a
+     * time as the lines are read.
+     *
+     * @param segment Segment to be read
+     * @return A reader over the segment's lines
+     * @throws IOException If the segment cannot be opened
+     */
+    public final BufferedReader openReader(Segment segment) throws IOException {
+        if (segment.isArchived()) {
+            return new BufferedReader(new ArchiveTextReader(
+                    new ArchiveBlockReader(new FileInputStream(segment.getFile()))), 65536);
+        }
+        return openReader(segment, 0);
+    }
+
+    /**
+     * openReader opens a plain text segment for reading after skipping the given
+     * number of bytes
+     */
+    private BufferedReader openReader(Segment segment, long offset) throws IOException {
+        InputStream in = new FileInputStream(segment.getFile());
+        try {
+            long remaining = offset;
+            while (remaining > 0) {
+                long skipped = in.skip(remaining);
+                if (skipped <= 0) {
+                    break;
+                }
+                remaining -= skipped;
+            }
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 65536);
+    }
+
+    /**
+     * aggregate totals a range of days, scanning each segment on its own thread
+     *
+     * @param garageName String containing the garage name, or null for all garages
+     * @param fromDay First day in yyyyMMdd form
+     * @param toDay Last day in yyyyMMdd form
+     * @return Instance of the TransactionSummary with the totals
+     * @throws IOException If a segment cannot be read
+     */
+    public final TransactionSummary aggregate(String garageName, int fromDay, int toDay) throws IOException {
+        List<Future<TransactionSummary>> scans = new ArrayList<Future<TransactionSummary>>();
+        for (final Segment segment : getSegments(garageName, fromDay, toDay)) {
+            scans.add(POOL.submit(new Callable<TransactionSummary>() {
+                @Override
+                public TransactionSummary call() throws IOException {
+                    return scan(segment);
+                }
+            }));
+        }
+
+        TransactionSummary summary = new TransactionSummary();
+        try {
+            for (Future<TransactionSummary> scan : scans) {
+                summary.merge(scan.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning segments");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Cannot scan segment", ex.getCause());
+        }
+        return summary;
+    }
+
+    /**
+     * scan totals one segment reading only the fees, hours and calculator of each
+     * line, or of each block when it is archived. The rate written after the fee
+     * of a surcharged or discounted line is skipped.
+     */
+    private TransactionSummary scan(Segment segment) throws IOException {
+        if (segment.isArchived()) {
+            try (ArchiveBlockReader in = new ArchiveBlockReader(new FileInputStream(segment.getFile()))) {
+                return in.aggregate();
+            }
+        }
+        TransactionSummary summary = new TransactionSummary();
+        try (BufferedReader in = openReader(segment)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int hoursAt = line.indexOf('|', line.indexOf('|') + 1) + 1;
+                int feesAt = line.indexOf('|', hoursAt) + 1;
+                int calcAt = line.indexOf('|', feesAt) + 1;
+                int dayAt = line.indexOf('|', calcAt) + 1;
+                if (dayAt == 0) {
+                    continue;
+                }
+                int feesEnd = line.indexOf(';', feesAt);
+                if (feesEnd < 0 || feesEnd > calcAt - 1) {
+                    feesEnd = calcAt - 1;
+                }
+                summary.add(line.substring(calcAt, dayAt - 1),
+                        TransactionHistory.toCents(Double.parseDouble(line.substring(feesAt, feesEnd))),
+                        TransactionHistory.toHundredths(Double.parseDouble(line.substring(hoursAt, feesAt - 1))));
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Gets the root folder of the store
+     *
+     * @return The root folder
+     */
+    public final File getRoot() {
+        return root;
+    }
+
+    /**
+     * loadManifest reads the manifest and recounts any segment left HOT
+     */
+    private void loadManifest() throws IOException {
+        File manifest = new File(root, MANIFEST);
+        if (!manifest.isFile()) {
+            return;
+        }
+        for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\\|", 5);
+            if (fields.length != 5) {
+                continue;
+            }
+            int day = Integer.parseInt(fields[0]);
+            Segment segment = new Segment(fields[4], day, getFolder(fields[4]), Integer.parseInt(fields[1]),
+                    Integer.parseInt(fields[2]), fields[3]);
+            if ("HOT".equals(segment.state)) {
+                recount(segment);
+            }
+            segments.put(key(segment.garageName, day), segment);
+        }
+    }
+
+    /**
+     * recount scans a segment that was not closed cleanly for its rows and highest
+     * ticket, first cutting off a last line the crash left half written
+     */
+    private void recount(Segment segment) throws IOException {
+        segment.rows = 0;
+        segment.maxTicket = 0;
+        if (!segment.getFile().isFile()) {
+            return;
+        }
+        trimTornLine(segment.getFile());
+        try (BufferedReader in = openReader(segment)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int bar = line.indexOf('|');
+                if (bar > 0) {
+                    segment.rows++;
+                    segment.maxTicket = Math.max(segment.maxTicket, Integer.parseInt(line.substring(0, bar)));
+                }
+            }
+        }
+    }
+
+    /**
+     * writeManifest writes the manifest to a temporary file and moves it over the
+     * old one so a crash never leaves half a manifest
+     */
+    private void writeManifest() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (Segment segment : segments.values()) {
+            text.append(segment.day).append('|').append(segment.rows).append('|').append(segment.maxTicket)
+                    .append('|').append(segment.state).append('|').append(segment.garageName).append('\n');
+        }
+        Path temp = new File(root, MANIFEST + ".tmp").toPath();
+        Files.write(temp, text.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, new File(root, MANIFEST).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * getFolder gets the folder a garage's segments are kept in. Lower case
+     * letters and digits of the name are kept, an upper case letter is written
+     * as a plus and the letter in lower case, and anything else as an underscore
+     * and its four hex digits, so every name gets a folder of its own even on a
+     * file system that ignores case, and the name can be read back from it.
+     *
+     * @param garageName String containing the garage name
+     * @return The garage's folder under the root, which may not exist yet
+     */
+    public final File getFolder(String garageName) {
+        StringBuilder name = new StringBuilder(garageName.length() + 16);
+        for (int i = 0; i < garageName.length(); i++) {
+            char c = garageName.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                name.append(c);
+            } else if (c >= 'A' && c <= 'Z') {
+                name.append('+').append(Character.toLowerCase(c));
+            } else {
+                name.append('_').append(String.format("%04x", (int) c));
+            }
+        }
+        return new File(root, name.toString());
+    }
+
+    private static String key(String garageName, int day) {
+        return garageName + "\n" + day;
+    }
+
+    /**
+     * ArchiveTextReader class turns an archive back into TransactionFileFormat
+     * lines one block at a time
+     */
+    private static class ArchiveTextReader extends Reader {
+        private final ArchiveBlockReader archive;
+        private final StringBuilder text = new StringBuilder();
+        private int position;
+
+        private ArchiveTextReader(ArchiveBlockReader archive) {
+            this.archive = archive;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (position == text.length()) {
+                List<Transaction> block = archive.nextBlock();
+                if (block == null) {
+                    return -1;
+                }
+                text.setLength(0);
+                position = 0;
+                for (Transaction transaction : block) {
+                    text.append(TransactionFileFormat.format(transaction)).append('\n');
+                }
+            }
+            int count = Math.min(length, text.length() - position);
+            text.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            archive.close();
+        }
+    }
+
+    /**
+     * Writes a day of transactions at mixed rates to a new store under the given
+     * folder and checks that the day totals the same while hot, once closed and
+     * once archived, timing each total.
+     *
+     * Usage: DailySegmentStore folder [transactions]
+     *
+     * @param args Folder for the store, which must not exist yet, and optional number of transactions, 200,000 by default
+     * @throws IOException If the store cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        File root = new File(args[0]);
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        if (root.exists()) {
+            System.out.println(root + " already exists");
+            return;
+        }
+        String garageName = "Jims Parking Garage";
+        int day = 20260301;
+        double[] rates = {1, 1.25, .9, 1, 1.5};
+        DailySegmentStore store = new DailySegmentStore(root);
+        TransactionSummary expected = new TransactionSummary();
+        List<Transaction> batch = new ArrayList<Transaction>();
+        for (int i = 0; i < count; i++) {
+            double hours = 1 + i % 23 + (i % 4) * .25;
+            double rate = rates[i % rates.length];
+            double fees = Math.round(hours * 1.5 * rate * 100) / 100.0;
+            String calcID = i % 3 == 0 ? "B1234" : "A1234";
+            batch.add(new Transaction(i + 1, String.format("V%03d", i % 1000), hours, fees, calcID, garageName,
+                    day, rate));
+            expected.add(calcID, TransactionHistory.toCents(fees), TransactionHistory.toHundredths(hours));
+            if (batch.size() == 1000) {
+                store.appendAll(batch);
+                batch.clear();
+            }
+        }
+        store.appendAll(batch);
+
+        long start = System.nanoTime();
+        TransactionSummary hot = store.aggregate(garageName, day, day);
+        long hotNanos = System.nanoTime() - start;
+        store.closeDay(garageName, day);
+        start = System.nanoTime();
+        TransactionSummary closed = store.aggregate(garageName, day, day);
+        long closedNanos = System.nanoTime() - start;
+        store.archive(garageName, day);
+        start = System.nanoTime();
+        TransactionSummary archived = store.aggregate(garageName, day, day);
+        long archivedNanos = System.nanoTime() - start;
+
+        System.out.println(expected);
+        System.out.println(String.format("hot %.1fms %b, closed %.1fms %b, archived %.1fms %b", hotNanos / 1e6,
+                expected.equals(hot), closedNanos / 1e6, expected.equals(closed), archivedNanos / 1e6,
+                expected.equals(archived)));
+    }
+
+}
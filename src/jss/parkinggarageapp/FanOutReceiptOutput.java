@@ -0,0 +1,328 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * FanOutReceiptOutput class is used to send every receipt to several outputs at
+ * once, such as the screen, the printer spool and the audit log, without the
+ * checkout waiting for any of them. Each output, or sink, has its own bounded
+ * queue and its own thread, so a slow printer does not hold up the screen.
+ *
+ * A sink gets a snapshot of the receipt holding only the vehicle being shown,
+ * taken when the receipt is queued, so it can be output later while the
+ * teller's receipt goes on changing. What happens when a sink's queue is full
+ * is set by its OverflowPolicy: wait for room, which slows checkout down to the
+ * sink's pace, or drop a receipt and count it.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class FanOutReceiptOutput implements ReceiptOutputStrategy {
+    private final List<Sink> sinks = new CopyOnWriteArrayList<Sink>();
+    private volatile boolean closed;
+
+    /**
+     * OverflowPolicy enum sets what a sink does with a receipt when its queue is full
+     */
+    public enum OverflowPolicy {
+        /**
+         * Waits for room, slowing the checkout down to the sink's pace
+         */
+        BLOCK,
+        /**
+         * Drops the new receipt
+         */
+        DROP_NEWEST,
+        /**
+         * Drops the oldest queued receipt to make room for the new one
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * Job class holds one receipt or daily total waiting for a sink
+     */
+    private static class Job {
+        private final Receipt receipt;
+        private final String vehicleID;
+        private final List<LinkedHashMap<String, String>> input;
+
+        private Job(Receipt receipt, String vehicleID, List<LinkedHashMap<String, String>> input) {
+            this.receipt = receipt;
+            this.vehicleID = vehicleID;
+            this.input = input;
+        }
+    }
+
+    /**
+     * Sink class holds one output with its queue, thread and counts
+     */
+    public static final class Sink implements Runnable {
+        private static final Job STOP = new Job(null, null, null);
+
+        private final String name;
+        private final ReceiptOutputStrategy output;
+        private final BlockingQueue<Job> queue;
+        private final OverflowPolicy policy;
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile Exception lastError;
+        private final Thread thread;
+
+        private Sink(String name, ReceiptOutputStrategy output, int capacity, OverflowPolicy policy) {
+            this.name = name;
+            this.output = output;
+            this.queue = new ArrayBlockingQueue<Job>(capacity);
+            this.policy = policy;
+            this.thread = new Thread(this, "receipt-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        private void offer(Job job) {
+            switch (policy) {
+                case BLOCK:
+                    boolean interrupted = false;
+                    while (true) {
+                        try {
+                            queue.put(job);
+                            break;
+                        } catch (InterruptedException ex) {
+                            interrupted = true;
+                        }
+                    }
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                    break;
+                case DROP_NEWEST:
+                    if (!queue.offer(job)) {
+                        dropped.incrementAndGet();
+                    }
+                    break;
+                default:
+                    while (!queue.offer(job)) {
+                        if (queue.poll() != null) {
+                            dropped.incrementAndGet();
+                        }
+                    }
+            }
+        }
+
+        /**
+         * run outputs queued receipts until the sink is closed and its queue is empty
+         */
+        @Override
+        public void run() {
+            while (true) {
+                Job job;
+                try {
+                    job = queue.take();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                if (job == STOP) {
+                    return;
+                }
+                try {
+                    if (job.vehicleID != null) {
+                        output.displayCarFee(job.receipt, job.vehicleID);
+                    } else {
+                        output.displayDailyTotal(job.receipt, job.input);
+                    }
+                    delivered.incrementAndGet();
+                } catch (RuntimeException ex) {
+                    failed.incrementAndGet();
+                    lastError = ex;
+                }
+            }
+        }
+
+        /**
+         * Gets the name of the sink
+         *
+         * @return String containing the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the output the sink sends receipts to
+         *
+         * @return Instance of the ReceiptOutputStrategy
+         */
+        public ReceiptOutputStrategy getOutput() {
+            return output;
+        }
+
+        /**
+         * Gets the number of receipts output
+         *
+         * @return Long containing the receipts delivered
+         */
+        public long getDelivered() {
+            return delivered.get();
+        }
+
+        /**
+         * Gets the number of receipts dropped because the queue was full
+         *
+         * @return Long containing the receipts dropped
+         */
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        /**
+         * Gets the number of receipts the output failed on
+         *
+         * @return Long containing the failures
+         */
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * Gets the last exception the output threw
+         *
+         * @return Exception thrown, or null when the output has not failed
+         */
+        public Exception getLastError() {
+            return lastError;
+        }
+
+        /**
+         * Gets the number of receipts waiting
+         *
+         * @return Integer containing the queued receipts
+         */
+        public int getQueued() {
+            return queue.size();
+        }
+
+        /**
+         * Overrides the toString method, converts a Sink to a string
+         *
+         * @return A string containing the name and counts
+         */
+        @Override
+        public String toString() {
+            return name + " delivered: " + getDelivered() + " dropped: " + getDropped() + " failed: " + getFailed()
+                    + " queued: " + getQueued();
+        }
+    }
+
+    /**
+     * addSink adds an output with its own queue and starts its thread
+     *
+     * @param name String containing a name for the sink and its thread
+     * @param output Instance of the ReceiptOutputStrategy receipts are sent to
+     * @param capacity Integer containing the most receipts the queue holds
+     * @param policy OverflowPolicy used when the queue is full
+     * @return Instance of the Sink
+     * @throws IllegalArgumentException Name, output and policy cannot be null and capacity must be greater than zero
+     * @throws IllegalStateException Output has been closed
+     */
+    public final synchronized Sink addSink(String name, ReceiptOutputStrategy output, int capacity,
+            OverflowPolicy policy) throws IllegalArgumentException, IllegalStateException {
+        if (name == null || output == null || policy == null || capacity <= 0) {
+            throw new IllegalArgumentException("Name, output and policy cannot be null and capacity must be greater than zero");
+        }
+        if (closed) {
+            throw new IllegalStateException("Receipt output has been closed");
+        }
+        Sink sink = new Sink(name, output, capacity, policy);
+        sinks.add(sink);
+        sink.thread.start();
+        return sink;
+    }
+
+    /**
+     * displayCarFee queues a snapshot of the vehicle's receipt for every sink
+     *
+     * @param receipt An instance of the receipt object being passed in
+     * @param vehicleID A String containing a unique ID referencing a vehicle
+     * @throws IllegalArgumentException Receipt cannot be null, vehicleID has to be 4 characters long
+     * @throws IllegalStateException Output has been closed
+     */
+    @Override
+    public final void displayCarFee(Receipt receipt, String vehicleID) throws IllegalArgumentException, IllegalStateException {
+        if (receipt == null || vehicleID == null || vehicleID.length() != 4) {
+            throw new IllegalArgumentException("Receipt object cannot be null, vehicleID cannot be null, and must contain 4 characters");
+        }
+        send(new Job(receipt.snapshot(vehicleID), vehicleID, null));
+    }
+
+    /**
+     * displayDailyTotal queues a copy of the day's totals for every sink
+     *
+     * @param receipt An instance of the receipt object being passed in
+     * @param input A list of maps contain the total hours and fees for the day
+     * @throws IllegalArgumentException Receipt and input cannot be null
+     * @throws IllegalStateException Output has been closed
+     */
+    @Override
+    public final void displayDailyTotal(Receipt receipt, List<LinkedHashMap<String, String>> input) throws IllegalArgumentException, IllegalStateException {
+        if (receipt == null || input == null) {
+            throw new IllegalArgumentException("Receipt object cannot be null");
+        }
+        List<LinkedHashMap<String, String>> copy = new ArrayList<LinkedHashMap<String, String>>(input.size());
+        for (LinkedHashMap<String, String> row : input) {
+            copy.add(new LinkedHashMap<String, String>(row));
+        }
+        send(new Job(new Receipt(receipt.getGarage()), null, copy));
+    }
+
+    private synchronized void send(Job job) throws IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("Receipt output has been closed");
+        }
+        for (Sink sink : sinks) {
+            sink.offer(job);
+        }
+    }
+
+    /**
+     * close stops taking receipts, lets every sink output what it has queued and
+     * waits for the sinks to finish
+     *
+     * @param timeoutMillis Long containing the most time to wait for each sink
+     * @return A boolean whether every sink finished in time
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public final synchronized boolean close(long timeoutMillis) throws InterruptedException {
+        closed = true;
+        boolean finished = true;
+        for (Sink sink : sinks) {
+            sink.queue.put(Sink.STOP);
+        }
+        for (Sink sink : sinks) {
+            sink.thread.join(timeoutMillis);
+            finished &= !sink.thread.isAlive();
+        }
+        return finished;
+    }
+
+    /**
+     * Gets the sinks receipts are sent to
+     *
+     * @return List of the sinks in the order they were added
+     */
+    public final List<Sink> getSinks() {
+        return new ArrayList<Sink>(sinks);
+    }
+
+    /**
+     * Overrides the toString method, converts a FanOutReceiptOutput to a string
+     *
+     * @return A string containing every sink and its counts
+     */
+    @Override
+    public String toString() {
+        return "Fan-out receipt output " + sinks;
+    }
+
+}
@@ -17,5 +17,13 @@ public interface FeeCalculatorStrategy {
      * @return Double containing the total fee due for the vehicle
      */
     double calculateFee(double totalHours);
+
+    /**
+     * getCalcID must return the unique ID of the calculator so transactions can
+     * record which calculator priced them
+     * 
+     * @return A string containing a unique ID
+     */
+    String getCalcID();
     
 }
@@ -12,6 +12,10 @@ public class Garage {
     private AutomatedTeller atm;
     private String name;
     private String address;
+    private OccupancyTracker occupancy;
+    private SpotAllocator spotAllocator;
+    private ReservationCalendar reservations;
+    private SubscriberRegistry subscribers;
 
     /**
      * Overrides the default constructor requiring a FeeCalculatorStrategy, string 
@@ -119,6 +123,98 @@ public class Garage {
         }
     }
 
+    /**
+     * Gets the tracker counting the cars inside the Garage
+     * 
+     * @return Instance of the OccupancyTracker, or null when occupancy is not tracked
+     */
+    public final OccupancyTracker getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * Sets the tracker counting the cars inside the Garage
+     * 
+     * @param occupancy Instance of the OccupancyTracker
+     * @throws IllegalArgumentException Occupancy tracker cannot be null
+     */
+    public final void setOccupancy(OccupancyTracker occupancy) throws IllegalArgumentException{
+        if (occupancy == null) {
+            throw new IllegalArgumentException("Occupancy tracker cannot be null");
+        } else {
+            this.occupancy = occupancy;
+        }
+    }
+
+    /**
+     * Gets the allocator giving each vehicle its spot in the Garage
+     * 
+     * @return Instance of the SpotAllocator, or null when spots are not assigned
+     */
+    public final SpotAllocator getSpotAllocator() {
+        return spotAllocator;
+    }
+
+    /**
+     * Sets the allocator giving each vehicle its spot in the Garage
+     * 
+     * @param spotAllocator Instance of the SpotAllocator
+     * @throws IllegalArgumentException Spot allocator cannot be null
+     */
+    public final void setSpotAllocator(SpotAllocator spotAllocator) throws IllegalArgumentException{
+        if (spotAllocator == null) {
+            throw new IllegalArgumentException("Spot allocator cannot be null");
+        } else {
+            this.spotAllocator = spotAllocator;
+        }
+    }
+
+    /**
+     * Gets the calendar of spots booked ahead in the Garage
+     * 
+     * @return Instance of the ReservationCalendar, or null when spots are not booked ahead
+     */
+    public final ReservationCalendar getReservations() {
+        return reservations;
+    }
+
+    /**
+     * Sets the calendar of spots booked ahead in the Garage
+     * 
+     * @param reservations Instance of the ReservationCalendar
+     * @throws IllegalArgumentException Reservation calendar cannot be null
+     */
+    public final void setReservations(ReservationCalendar reservations) throws IllegalArgumentException{
+        if (reservations == null) {
+            throw new IllegalArgumentException("Reservation calendar cannot be null");
+        } else {
+            this.reservations = reservations;
+        }
+    }
+
+    /**
+     * Gets the vehicles with a monthly pass for the Garage
+     * 
+     * @return Instance of the SubscriberRegistry, or null when the Garage sells no passes
+     */
+    public final SubscriberRegistry getSubscribers() {
+        return subscribers;
+    }
+
+    /**
+     * Sets the vehicles with a monthly pass for the Garage
+     * 
+     * @param subscribers Instance of the SubscriberRegistry
+     * @throws IllegalArgumentException Subscriber registry cannot be null
+     */
+    public final void setSubscribers(SubscriberRegistry subscribers) throws IllegalArgumentException{
+        if (subscribers == null) {
+            throw new IllegalArgumentException("Subscriber registry cannot be null");
+        } else {
+            this.subscribers = subscribers;
+        }
+    }
+
     /**
      * Gets an AutomatedTeller object that the Garage uses
      * 
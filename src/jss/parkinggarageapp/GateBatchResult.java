@@ -0,0 +1,138 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+
+/**
+ * GateBatchResult class is used to report what happened to each event of a batch
+ * of check-ins or checkouts, in the order the events were given. Each event has a
+ * GateStatus code and, when it was handled, the ticket number it was given or
+ * checked out and the fee charged.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class GateBatchResult {
+    private final byte[] statuses;
+    private final int[] ticketNumbers;
+    private final double[] fees;
+    private int accepted;
+
+    /**
+     * Overrides the default constructor requiring the number of events to be passed in
+     *
+     * @param size Integer containing the number of events in the batch
+     * @throws IllegalArgumentException Size cannot be negative
+     */
+    GateBatchResult(int size) throws IllegalArgumentException {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size cannot be negative");
+        }
+        statuses = new byte[size];
+        ticketNumbers = new int[size];
+        fees = new double[size];
+    }
+
+    final void accept(int index, int ticketNumber, double fee) {
+        statuses[index] = GateStatus.OK;
+        ticketNumbers[index] = ticketNumber;
+        fees[index] = fee;
+        accepted++;
+    }
+
+    final void reject(int index, int status) {
+        statuses[index] = (byte) status;
+    }
+
+    /**
+     * Gets the number of events in the batch
+     *
+     * @return Integer containing the number of events
+     */
+    public final int size() {
+        return statuses.length;
+    }
+
+    /**
+     * Gets the status of an event
+     *
+     * @param index Integer containing the position of the event in the batch
+     * @return Integer containing the GateStatus code
+     */
+    public final int getStatus(int index) {
+        return statuses[index];
+    }
+
+    /**
+     * Gets whether an event was handled
+     *
+     * @param index Integer containing the position of the event in the batch
+     * @return A boolean whether the status is OK
+     */
+    public final boolean isOk(int index) {
+        return statuses[index] == GateStatus.OK;
+    }
+
+    /**
+     * Gets the ticket number of an event that was handled
+     *
+     * @param index Integer containing the position of the event in the batch
+     * @return Integer containing the ticket number, zero when the event was rejected
+     */
+    public final int getTicketNumber(int index) {
+        return ticketNumbers[index];
+    }
+
+    /**
+     * Gets the fee charged for a checkout that was handled
+     *
+     * @param index Integer containing the position of the event in the batch
+     * @return Double containing the fee, zero for check-ins and rejected events
+     */
+    public final double getFee(int index) {
+        return fees[index];
+    }
+
+    /**
+     * Gets the number of events handled
+     *
+     * @return Integer containing the accepted events
+     */
+    public final int getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * Gets the number of events rejected
+     *
+     * @return Integer containing the rejected events
+     */
+    public final int getRejected() {
+        return statuses.length - accepted;
+    }
+
+    /**
+     * Gets the positions of the events rejected
+     *
+     * @return List of the positions in the batch
+     */
+    public final List<Integer> getRejectedIndexes() {
+        List<Integer> rejected = new ArrayList<Integer>();
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] != GateStatus.OK) {
+                rejected.add(i);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Overrides the toString method, converts a GateBatchResult to a string
+     *
+     * @return A string containing the events accepted and rejected
+     */
+    @Override
+    public String toString() {
+        return "Batch of " + size() + " accepted: " + accepted + " rejected: " + getRejected();
+    }
+
+}
@@ -0,0 +1,322 @@
+package jss.parkinggarageapp;
+
+/**
+ * GateEvent class is used to carry one thing that happened at a gate through the
+ * GateEventRing. Events are made once when the ring is built and filled in again
+ * for every event, so the fields are plain and changed with set and reset instead
+ * of through validating setters. A consumer must copy anything it keeps after
+ * onEvent returns, since the same event is reused once the ring wraps around.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class GateEvent {
+
+    /**
+     * Type enum names what happened at the gate
+     */
+    public enum Type {
+        /**
+         * A vehicle parked and was given its ticket, spot and level
+         */
+        CHECK_IN,
+        /**
+         * A fee was worked out for a vehicle still parked, such as a quote at the pay station
+         */
+        FEE_COMPUTED,
+        /**
+         * A vehicle paid and left, to be saved, totalled and given its receipt
+         */
+        CHECKOUT,
+        /**
+         * A receipt was asked for again after checkout, to be output as it was first priced
+         */
+        RECEIPT_PRINTED
+    }
+
+    private Type type;
+    private int ticketNumber;
+    private String vehicleID;
+    private double hours;
+    private int spot;
+    private int level;
+    private int reservationID;
+    private double fees;
+    private String calcID;
+    private double rate;
+    private String garageName;
+    private int day;
+    private long timeNanos;
+
+    /**
+     * setCheckIn fills the event in for a vehicle that parked
+     *
+     * @param ticketNumber Integer containing the ticket number
+     * @param vehicleID String containing the vehicle ID
+     * @param hours Double containing the hours on the ticket
+     * @param spot Integer containing the spot the vehicle was given, -1 when spots are not assigned
+     * @param level Integer containing the level the vehicle was counted on, -1 when levels are not tracked
+     * @param reservationID Integer containing the booking the vehicle was matched to, 0 for none
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     */
+    public final void setCheckIn(int ticketNumber, String vehicleID, double hours, int spot, int level,
+            int reservationID, String garageName, int day) {
+        fill(Type.CHECK_IN, ticketNumber, vehicleID, hours, garageName, day);
+        this.spot = spot;
+        this.level = level;
+        this.reservationID = reservationID;
+    }
+
+    /**
+     * setCheckout fills the event in for a vehicle that paid and left
+     *
+     * @param ticketNumber Integer containing the ticket number
+     * @param vehicleID String containing the vehicle ID
+     * @param hours Double containing the hours parked
+     * @param fees Double containing the fee charged
+     * @param calcID String containing the ID of the calculator that priced the fee
+     * @param rate Double containing the rate the calculator applied
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     */
+    public final void setCheckout(int ticketNumber, String vehicleID, double hours, double fees, String calcID,
+            double rate, String garageName, int day) {
+        setPriced(Type.CHECKOUT, ticketNumber, vehicleID, hours, fees, calcID, rate, garageName, day);
+    }
+
+    /**
+     * setPriced fills the event in for anything that carries a fee: a fee worked
+     * out, a checkout or a receipt printed again
+     *
+     * @param type Type of the event, FEE_COMPUTED, CHECKOUT or RECEIPT_PRINTED
+     * @param ticketNumber Integer containing the ticket number
+     * @param vehicleID String containing the vehicle ID
+     * @param hours Double containing the hours parked
+     * @param fees Double containing the fee
+     * @param calcID String containing the ID of the calculator that priced the fee
+     * @param rate Double containing the rate the calculator applied
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @throws IllegalArgumentException Type must carry a fee
+     */
+    public final void setPriced(Type type, int ticketNumber, String vehicleID, double hours, double fees,
+            String calcID, double rate, String garageName, int day) throws IllegalArgumentException {
+        if (type == null || type == Type.CHECK_IN) {
+            throw new IllegalArgumentException("Type must carry a fee");
+        }
+        fill(type, ticketNumber, vehicleID, hours, garageName, day);
+        this.fees = fees;
+        this.calcID = calcID;
+        this.rate = rate;
+    }
+
+    private void fill(Type type, int ticketNumber, String vehicleID, double hours, String garageName, int day) {
+        reset();
+        this.type = type;
+        this.ticketNumber = ticketNumber;
+        this.vehicleID = vehicleID;
+        this.hours = hours;
+        this.garageName = garageName;
+        this.day = day;
+    }
+
+    /**
+     * reset clears every field so nothing of the previous event is left behind
+     */
+    public final void reset() {
+        type = null;
+        ticketNumber = 0;
+        vehicleID = null;
+        hours = 0;
+        spot = -1;
+        level = -1;
+        reservationID = 0;
+        fees = 0;
+        calcID = null;
+        rate = 1;
+        garageName = null;
+        day = 0;
+        timeNanos = System.nanoTime();
+    }
+
+    /**
+     * toTransaction copies a checkout event into a Transaction that can be kept
+     *
+     * @return Instance of the Transaction class
+     * @throws IllegalStateException Event is not a checkout
+     */
+    public final Transaction toTransaction() throws IllegalStateException {
+        if (type != Type.CHECKOUT) {
+            throw new IllegalStateException("Only a checkout event is a transaction");
+        }
+        return new Transaction(ticketNumber, vehicleID, hours, fees, calcID, garageName, day, rate);
+    }
+
+    /**
+     * toVehicle copies a check-in event into a Vehicle that can be kept, holding a
+     * ticket with the spot, level and booking the vehicle was given
+     *
+     * @return Instance of the Vehicle class
+     * @throws IllegalStateException Event is not a check-in
+     */
+    public final Vehicle toVehicle() throws IllegalStateException {
+        if (type != Type.CHECK_IN) {
+            throw new IllegalStateException("Only a check-in event is a vehicle");
+        }
+        ParkingTicket ticket = new ParkingTicket(hours, ticketNumber);
+        if (spot >= 0) {
+            ticket.setSpot(spot);
+        }
+        if (level >= 0) {
+            ticket.setLevel(level);
+        }
+        if (reservationID > 0) {
+            ticket.setReservationID(reservationID);
+        }
+        return new Vehicle(ticket, vehicleID);
+    }
+
+    /**
+     * toRecord copies an event carrying a fee into the ReceiptRecord it is printed from
+     *
+     * @param address String containing the address of the garage
+     * @return Instance of the ReceiptRecord class
+     * @throws IllegalStateException Event does not carry a fee
+     */
+    public final ReceiptRecord toRecord(String address) throws IllegalStateException {
+        if (type == null || type == Type.CHECK_IN) {
+            throw new IllegalStateException("Only an event with a fee has a receipt");
+        }
+        return new ReceiptRecord(garageName, address, vehicleID, ticketNumber, hours, fees, calcID, rate);
+    }
+
+    /**
+     * Gets what happened at the gate
+     *
+     * @return Type of the event, null before it is first filled in
+     */
+    public final Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the ticket number
+     *
+     * @return Integer containing the ticket number
+     */
+    public final int getTicketNumber() {
+        return ticketNumber;
+    }
+
+    /**
+     * Gets the vehicle ID
+     *
+     * @return String containing the vehicle ID
+     */
+    public final String getVehicleID() {
+        return vehicleID;
+    }
+
+    /**
+     * Gets the hours on the ticket
+     *
+     * @return Double containing the hours
+     */
+    public final double getHours() {
+        return hours;
+    }
+
+    /**
+     * Gets the spot the vehicle was given
+     *
+     * @return Integer containing the spot, -1 when not assigned or not a check-in
+     */
+    public final int getSpot() {
+        return spot;
+    }
+
+    /**
+     * Gets the level the vehicle was counted on
+     *
+     * @return Integer containing the level, -1 when not tracked or not a check-in
+     */
+    public final int getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the booking the vehicle was matched to
+     *
+     * @return Integer containing the reservation ID, 0 when it had none
+     */
+    public final int getReservationID() {
+        return reservationID;
+    }
+
+    /**
+     * Gets the fee charged, zero for a check-in
+     *
+     * @return Double containing the fee
+     */
+    public final double getFees() {
+        return fees;
+    }
+
+    /**
+     * Gets the ID of the calculator that priced the fee
+     *
+     * @return String containing the calculator ID, null for a check-in
+     */
+    public final String getCalcID() {
+        return calcID;
+    }
+
+    /**
+     * Gets the rate the calculator applied
+     *
+     * @return Double containing the rate
+     */
+    public final double getRate() {
+        return rate;
+    }
+
+    /**
+     * Gets the name of the garage
+     *
+     * @return String containing the garage name
+     */
+    public final String getGarageName() {
+        return garageName;
+    }
+
+    /**
+     * Gets the day of the event
+     *
+     * @return Integer containing the day in yyyyMMdd form
+     */
+    public final int getDay() {
+        return day;
+    }
+
+    /**
+     * Gets when the event was filled in, from System.nanoTime
+     *
+     * @return Long containing the time in nanoseconds
+     */
+    public final long getTimeNanos() {
+        return timeNanos;
+    }
+
+    /**
+     * Overrides the toString method, converts a GateEvent to a string
+     *
+     * @return A string containing the type, ticket number, vehicle and fee
+     */
+    @Override
+    public String toString() {
+        return type + " Ticket Number: " + ticketNumber + " Vehicle ID: " + vehicleID + " Hours: " + hours
+                + (type == Type.CHECK_IN ? "" : " Fees: " + fees);
+    }
+
+}
@@ -0,0 +1,200 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * GateEventHandlers class is used to make the usual consumers of a GateEventRing:
+ * saving check-ins and checkouts to the segment store, keeping the running
+ * totals, timing how long events wait in the ring and outputting receipts. Each
+ * runs on the consumer's own thread, so anything the handler shares with other
+ * threads is locked on the object itself and readers should lock on it too.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class GateEventHandlers {
+
+    private GateEventHandlers() {
+    }
+
+    /**
+     * persistTo journals every check-in and appends every checkout to a segment
+     * store, keeping the events of a batch until its last one and then writing
+     * the check-ins and the checkouts in one write each, the check-ins first. The
+     * check-ins of one garage and day go in one write, so a batch spanning days
+     * writes the check-ins of each day as the day changes. The consumer should be
+     * added to stop on errors, so a failed write stops the ring's writer instead
+     * of the batch being counted and skipped.
+     *
+     * @param store Instance of the DailySegmentStore
+     * @return Handler saving check-ins and checkouts
+     * @throws IllegalArgumentException Store cannot be null
+     */
+    public static GateEventRing.Handler persistTo(final DailySegmentStore store) throws IllegalArgumentException {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        return new GateEventRing.Handler() {
+            private final List<Vehicle> checkIns = new ArrayList<Vehicle>();
+            private final List<Transaction> checkouts = new ArrayList<Transaction>();
+            private String checkInGarage;
+            private int checkInDay;
+
+            @Override
+            public void onEvent(GateEvent event, long sequence, boolean endOfBatch) throws IOException {
+                try {
+                    if (event.getType() == GateEvent.Type.CHECK_IN) {
+                        if (!checkIns.isEmpty() && (checkInDay != event.getDay()
+                                || !checkInGarage.equals(event.getGarageName()))) {
+                            writeCheckIns();
+                        }
+                        checkInGarage = event.getGarageName();
+                        checkInDay = event.getDay();
+                        checkIns.add(event.toVehicle());
+                    } else if (event.getType() == GateEvent.Type.CHECKOUT) {
+                        checkouts.add(event.toTransaction());
+                    }
+                    if (endOfBatch) {
+                        writeCheckIns();
+                        if (!checkouts.isEmpty()) {
+                            store.appendAll(checkouts);
+                        }
+                    }
+                } finally {
+                    if (endOfBatch) {
+                        checkIns.clear();
+                        checkouts.clear();
+                    }
+                }
+            }
+
+            private void writeCheckIns() throws IOException {
+                if (!checkIns.isEmpty()) {
+                    try {
+                        store.appendCheckIns(checkInGarage, checkInDay, checkIns);
+                    } finally {
+                        checkIns.clear();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * totalInto adds every checkout to a summary, locking the summary while it does
+     *
+     * @param summary Instance of the TransactionSummary
+     * @return Handler keeping the totals
+     * @throws IllegalArgumentException Summary cannot be null
+     */
+    public static GateEventRing.Handler totalInto(final TransactionSummary summary) throws IllegalArgumentException {
+        if (summary == null) {
+            throw new IllegalArgumentException("Summary cannot be null");
+        }
+        return new GateEventRing.Handler() {
+            @Override
+            public void onEvent(GateEvent event, long sequence, boolean endOfBatch) {
+                if (event.getType() == GateEvent.Type.CHECKOUT) {
+                    synchronized (summary) {
+                        summary.add(event.getCalcID(), TransactionHistory.toCents(event.getFees()),
+                                TransactionHistory.toHundredths(event.getHours()));
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * recordLatency records how long each event waited between being filled in
+     * and being handled, locking the recorder while it does
+     *
+     * @param recorder Instance of the LatencyRecorder
+     * @return Handler timing the events
+     * @throws IllegalArgumentException Recorder cannot be null
+     */
+    public static GateEventRing.Handler recordLatency(final LatencyRecorder recorder) throws IllegalArgumentException {
+        if (recorder == null) {
+            throw new IllegalArgumentException("Recorder cannot be null");
+        }
+        return new GateEventRing.Handler() {
+            @Override
+            public void onEvent(GateEvent event, long sequence, boolean endOfBatch) {
+                long waited = System.nanoTime() - event.getTimeNanos();
+                synchronized (recorder) {
+                    recorder.record(waited);
+                }
+            }
+        };
+    }
+
+    /**
+     * outputTo outputs the receipt of every checkout and every receipt printed
+     * again through a ReceiptOutputStrategy. Each receipt is given its own
+     * Receipt holding only its record, so the output never reads the teller's
+     * receipt from the consumer's thread. Added after the consumer saving the
+     * checkouts, no receipt is output for a checkout that was not saved.
+     *
+     * @param ros Instance of the ReceiptOutputStrategy
+     * @param garage Instance of the Garage the receipts are for
+     * @return Handler outputting receipts
+     * @throws IllegalArgumentException Output and garage cannot be null
+     */
+    public static GateEventRing.Handler outputTo(final ReceiptOutputStrategy ros, final Garage garage)
+            throws IllegalArgumentException {
+        if (ros == null || garage == null) {
+            throw new IllegalArgumentException("Output and garage cannot be null");
+        }
+        return new GateEventRing.Handler() {
+            @Override
+            public void onEvent(GateEvent event, long sequence, boolean endOfBatch) {
+                if (event.getType() == GateEvent.Type.CHECKOUT || event.getType() == GateEvent.Type.RECEIPT_PRINTED) {
+                    Receipt receipt = new Receipt(garage);
+                    receipt.setRecord(event.toRecord(garage.getAddress()));
+                    ros.displayCarFee(receipt, event.getVehicleID());
+                }
+            }
+        };
+    }
+
+    /**
+     * printReceipts writes a receipt line for every checkout and every receipt
+     * printed again, flushing at the end
+     * of each batch instead of after every line. The line is built in one builder
+     * and copied to the writer through one array, so no string is made per event.
+     *
+     * @param out Writer the receipts are written to
+     * @return Handler writing receipts
+     * @throws IllegalArgumentException Writer cannot be null
+     */
+    public static GateEventRing.Handler printReceipts(final Writer out) throws IllegalArgumentException {
+        if (out == null) {
+            throw new IllegalArgumentException("Writer cannot be null");
+        }
+        return new GateEventRing.Handler() {
+            private final StringBuilder line = new StringBuilder(128);
+            private char[] chars = new char[128];
+
+            @Override
+            public void onEvent(GateEvent event, long sequence, boolean endOfBatch) throws IOException {
+                if (event.getType() == GateEvent.Type.CHECKOUT || event.getType() == GateEvent.Type.RECEIPT_PRINTED) {
+                    line.setLength(0);
+                    line.append("Receipt for Vehicle #").append(event.getVehicleID()).append(" is: $");
+                    ReceiptTemplate.appendNumber(line, event.getFees());
+                    line.append(" Ticket Number: ").append(event.getTicketNumber()).append(" Hours: ");
+                    ReceiptTemplate.appendNumber(line, event.getHours());
+                    line.append('\n');
+                    if (chars.length < line.length()) {
+                        chars = new char[line.length() * 2];
+                    }
+                    line.getChars(0, line.length(), chars, 0);
+                    out.write(chars, 0, line.length());
+                }
+                if (endOfBatch) {
+                    out.flush();
+                }
+            }
+        };
+    }
+
+}
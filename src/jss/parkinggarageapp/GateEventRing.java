@@ -0,0 +1,692 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * GateEventRing class is used to hand gate events from the teller to the work
+ * that follows them, such as saving the transaction, keeping totals, timing and
+ * printing receipts, with each of those running on its own thread as a consumer.
+ *
+ * The ring is an array of GateEvents made once up front, so publishing an event
+ * fills in an existing object and allocates nothing. There is one writer, which
+ * claims the next slot with next, fills it in and makes it visible with publish.
+ * Each consumer follows the writer's cursor with a sequence of its own and
+ * handles every event that has been published since it last looked, up to its
+ * batch size, before saying how far it got, so a consumer that falls behind
+ * catches up in large batches. The writer waits only when it is a full lap
+ * ahead of the slowest consumer. How a consumer waits for new events is set by
+ * its WaitStrategy, from spinning for the lowest delay to blocking for the
+ * least CPU.
+ *
+ * A consumer whose work must not be skipped, such as saving checkouts, can be
+ * added to stop on its first error. The writer's next call to next then throws
+ * with that error instead of carrying on without it, and once the ring is
+ * halted next throws too, so a writer is never left waiting on consumers that
+ * are gone. A consumer can also be added after another, such as printing
+ * receipts after saving, and then only handles events the one before it has
+ * handled, so nothing is printed for a checkout that was never saved.
+ *
+ * The writer methods are not synchronized; only one thread may publish at a
+ * time, which the synchronized methods of the AutomatedTeller already ensure.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class GateEventRing {
+    private final GateEvent[] entries;
+    private final int mask;
+    private final Sequence cursor = new Sequence();
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<Consumer>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private volatile boolean blockingConsumers;
+    private volatile boolean halted;
+    private volatile Consumer failed;
+    private long nextSequence;
+    private long cachedGate = -1;
+
+    /**
+     * WaitStrategy enum sets what a consumer does while there is nothing to handle
+     */
+    public enum WaitStrategy {
+        /**
+         * Checks the cursor again straight away, the lowest delay but keeps a CPU busy
+         */
+        BUSY_SPIN,
+        /**
+         * Spins for a while and then yields the CPU to other threads between checks
+         */
+        YIELDING,
+        /**
+         * Spins, then yields, then sleeps for a microsecond at a time between checks
+         */
+        SLEEPING,
+        /**
+         * Waits on a lock until the writer publishes, the most delay and least CPU
+         */
+        BLOCKING
+    }
+
+    /**
+     * Handler interface is the work a consumer does with each event
+     */
+    public interface Handler {
+
+        /**
+         * onEvent handles one event. The event is reused once this returns, so
+         * anything kept must be copied.
+         *
+         * @param event Instance of the GateEvent
+         * @param sequence Long containing the position of the event in the ring
+         * @param endOfBatch A boolean whether this is the last event available for now, a good time to flush
+         * @throws Exception If the event cannot be handled, which is counted and only stops a consumer added to stop on errors
+         */
+        void onEvent(GateEvent event, long sequence, boolean endOfBatch) throws Exception;
+    }
+
+    /**
+     * Sequence class holds a position in the ring on a cache line of its own, so
+     * the writer and the consumers moving their positions do not slow each other
+     */
+    private static class Sequence {
+        private static final int VALUE = 7;
+        private final AtomicLongArray padded = new AtomicLongArray(15);
+
+        private Sequence() {
+            padded.set(VALUE, -1);
+        }
+
+        private long get() {
+            return padded.get(VALUE);
+        }
+
+        private void set(long value) {
+            padded.lazySet(VALUE, value);
+        }
+    }
+
+    /**
+     * Consumer class runs one Handler over the events on a thread of its own
+     */
+    public final class Consumer implements Runnable {
+        private final String name;
+        private final Handler handler;
+        private final WaitStrategy waitStrategy;
+        private final int maxBatch;
+        private final boolean stopOnError;
+        private final Consumer after;
+        private final Sequence sequence = new Sequence();
+        private volatile boolean running = true;
+        private volatile Exception lastError;
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private Thread thread;
+
+        private Consumer(String name, Handler handler, WaitStrategy waitStrategy, int maxBatch, boolean stopOnError,
+                Consumer after) {
+            this.name = name;
+            this.handler = handler;
+            this.waitStrategy = waitStrategy;
+            this.maxBatch = maxBatch;
+            this.stopOnError = stopOnError;
+            this.after = after;
+        }
+
+        /**
+         * run handles events until the ring is halted and every published event
+         * has been handled. A consumer that stops on errors stops at the batch
+         * that failed, leaving its sequence at the end of the last batch it
+         * handled in full.
+         */
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            while (true) {
+                long available = waitFor(next);
+                if (available < next) {
+                    return;
+                }
+                long end = Math.min(available, next + maxBatch - 1);
+                for (long s = next; s <= end; s++) {
+                    try {
+                        handler.onEvent(entries[(int) s & mask], s, s == end);
+                    } catch (Exception ex) {
+                        errors.incrementAndGet();
+                        lastError = ex;
+                        if (stopOnError) {
+                            running = false;
+                            failed = this;
+                            return;
+                        }
+                    }
+                }
+                batches.incrementAndGet();
+                sequence.set(end);
+                if (blockingConsumers) {
+                    signalConsumers();
+                }
+                next = end + 1;
+            }
+        }
+
+        /**
+         * getAvailable gets the last event this consumer may handle: the last one
+         * published, or the last one handled by the consumer it follows
+         */
+        private long getAvailable() {
+            long available = cursor.get();
+            return after == null ? available : Math.min(available, after.sequence.get());
+        }
+
+        /**
+         * waitFor waits until the event at next is published and handled by the
+         * consumer this one follows, or the ring is halted
+         *
+         * @return Long containing the last sequence that may be handled
+         */
+        private long waitFor(long next) {
+            int spins = 0;
+            while (true) {
+                boolean stopping = !running;
+                long available = getAvailable();
+                if (available >= next || stopping) {
+                    return available;
+                }
+                switch (waitStrategy) {
+                    case BUSY_SPIN:
+                        break;
+                    case YIELDING:
+                        if (++spins > 100) {
+                            Thread.yield();
+                        }
+                        break;
+                    case SLEEPING:
+                        if (++spins > 200) {
+                            LockSupport.parkNanos(1000);
+                        } else if (spins > 100) {
+                            Thread.yield();
+                        }
+                        break;
+                    default:
+                        lock.lock();
+                        try {
+                            while (getAvailable() < next && running) {
+                                published.awaitUninterruptibly();
+                            }
+                        } finally {
+                            lock.unlock();
+                        }
+                }
+            }
+        }
+
+        /**
+         * Gets the name of the consumer
+         *
+         * @return String containing the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the sequence of the last event the consumer has handled
+         *
+         * @return Long containing the sequence, -1 before the first event
+         */
+        public long getSequence() {
+            return sequence.get();
+        }
+
+        /**
+         * Gets the number of events the handler failed on
+         *
+         * @return Long containing the failures
+         */
+        public long getErrors() {
+            return errors.get();
+        }
+
+        /**
+         * Gets the last exception the handler threw
+         *
+         * @return Exception thrown, or null when the handler has not failed
+         */
+        public Exception getLastError() {
+            return lastError;
+        }
+
+        /**
+         * Gets the consumer this one follows
+         *
+         * @return Instance of the Consumer, or null when it follows only the writer
+         */
+        public Consumer getAfter() {
+            return after;
+        }
+
+        /**
+         * Gets whether the consumer stops on the first event its handler fails on
+         *
+         * @return A boolean whether errors stop the consumer
+         */
+        public boolean isStopOnError() {
+            return stopOnError;
+        }
+
+        /**
+         * Gets the number of batches handled, fewer than the events when the consumer catches up in bulk
+         *
+         * @return Long containing the batches
+         */
+        public long getBatches() {
+            return batches.get();
+        }
+
+        /**
+         * Overrides the toString method, converts a Consumer to a string
+         *
+         * @return A string containing the name, position and failures
+         */
+        @Override
+        public String toString() {
+            return name + " at " + getSequence() + " in " + getBatches() + " batches, " + getErrors() + " errors";
+        }
+    }
+
+    /**
+     * Overrides the default constructor requiring the number of events the ring
+     * holds to be passed in
+     *
+     * @param size Integer containing the number of events, a power of two
+     * @throws IllegalArgumentException Size must be a power of two greater than zero
+     */
+    public GateEventRing(int size) throws IllegalArgumentException {
+        if (size <= 0 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Size must be a power of two greater than zero");
+        }
+        this.entries = new GateEvent[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = new GateEvent();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * addConsumer adds a handler that will see every event published after the
+     * ring starts, counting the events it fails on and carrying on.
+     * Consumers must be added before the first event is published.
+     *
+     * @param name String containing a name for the consumer and its thread
+     * @param handler Instance of the Handler doing the work
+     * @param waitStrategy WaitStrategy used while there is nothing to handle
+     * @param maxBatch Integer containing the most events handled before the consumer reports its position
+     * @return Instance of the Consumer
+     * @throws IllegalArgumentException Name, handler and strategy cannot be null and batch must be greater than zero
+     * @throws IllegalStateException Events have already been published
+     */
+    public final Consumer addConsumer(String name, Handler handler, WaitStrategy waitStrategy, int maxBatch)
+            throws IllegalArgumentException, IllegalStateException {
+        return addConsumer(name, handler, waitStrategy, maxBatch, false);
+    }
+
+    /**
+     * addConsumer adds a handler that will see every event published after the
+     * ring starts. Consumers must be added before the first event is published.
+     *
+     * @param name String containing a name for the consumer and its thread
+     * @param handler Instance of the Handler doing the work
+     * @param waitStrategy WaitStrategy used while there is nothing to handle
+     * @param maxBatch Integer containing the most events handled before the consumer reports its position
+     * @param stopOnError A boolean whether the first failed event stops the consumer and makes the writer's next publish throw
+     * @return Instance of the Consumer
+     * @throws IllegalArgumentException Name, handler and strategy cannot be null and batch must be greater than zero
+     * @throws IllegalStateException Events have already been published
+     */
+    public final Consumer addConsumer(String name, Handler handler, WaitStrategy waitStrategy,
+            int maxBatch, boolean stopOnError) throws IllegalArgumentException, IllegalStateException {
+        return addConsumer(name, handler, waitStrategy, maxBatch, stopOnError, null);
+    }
+
+    /**
+     * addConsumer adds a handler that will see every event after another
+     * consumer of this ring has handled it, such as printing a receipt only once
+     * the checkout is saved. When the consumer it follows stops on an error this
+     * one stops at the same event. Consumers must be added before the first
+     * event is published.
+     *
+     * @param name String containing a name for the consumer and its thread
+     * @param handler Instance of the Handler doing the work
+     * @param waitStrategy WaitStrategy used while there is nothing to handle
+     * @param maxBatch Integer containing the most events handled before the consumer reports its position
+     * @param stopOnError A boolean whether the first failed event stops the consumer and makes the writer's next publish throw
+     * @param after Instance of the Consumer of this ring to follow, or null to follow only the writer
+     * @return Instance of the Consumer
+     * @throws IllegalArgumentException Name, handler and strategy cannot be null, batch must be greater than zero and after must be a consumer of this ring
+     * @throws IllegalStateException Events have already been published
+     */
+    public final synchronized Consumer addConsumer(String name, Handler handler, WaitStrategy waitStrategy,
+            int maxBatch, boolean stopOnError, Consumer after) throws IllegalArgumentException, IllegalStateException {
+        if (name == null || handler == null || waitStrategy == null || maxBatch <= 0
+                || (after != null && !consumers.contains(after))) {
+            throw new IllegalArgumentException("Name, handler and strategy cannot be null, batch must be greater than zero"
+                    + " and after must be a consumer of this ring");
+        }
+        if (cursor.get() >= 0) {
+            throw new IllegalStateException("Consumers must be added before events are published");
+        }
+        Consumer consumer = new Consumer(name, handler, waitStrategy, maxBatch, stopOnError, after);
+        consumers.add(consumer);
+        if (waitStrategy == WaitStrategy.BLOCKING) {
+            blockingConsumers = true;
+        }
+        return consumer;
+    }
+
+    /**
+     * start starts a daemon thread for every consumer not yet running
+     */
+    public final synchronized void start() {
+        for (Consumer consumer : consumers) {
+            if (consumer.thread == null) {
+                consumer.thread = new Thread(consumer, "gate-" + consumer.name);
+                consumer.thread.setDaemon(true);
+                consumer.thread.start();
+            }
+        }
+    }
+
+    /**
+     * halt lets every consumer finish the events already published and then stops
+     * them, in the order they were added so a consumer finishes after the one it
+     * follows. A writer waiting in next is let go with an IllegalStateException,
+     * as is every call to next after this.
+     *
+     * @throws InterruptedException If interrupted while waiting for a consumer to finish
+     */
+    public final synchronized void halt() throws InterruptedException {
+        halted = true;
+        for (Consumer consumer : consumers) {
+            consumer.running = false;
+            signalConsumers();
+            if (consumer.thread != null) {
+                consumer.thread.join();
+            }
+        }
+    }
+
+    /**
+     * drain waits until every consumer has handled every event published so far,
+     * such as before the teller takes a snapshot or closes a day, so what the
+     * consumers saved matches the teller. The ring must have been started.
+     *
+     * @throws IllegalStateException A consumer that stops on errors has stopped
+     */
+    public final void drain() throws IllegalStateException {
+        long published = cursor.get();
+        int spins = 0;
+        while (getMinimumSequence() < published) {
+            checkFailed();
+            if (halted) {
+                return;
+            }
+            if (++spins > 100) {
+                LockSupport.parkNanos(1000);
+            }
+        }
+        checkFailed();
+    }
+
+    /**
+     * next claims the next slot for the writer, waiting while the slot still holds
+     * an event a consumer has not handled
+     *
+     * @return Long containing the sequence of the slot
+     * @throws IllegalStateException The ring has been halted or a consumer that stops on errors has stopped
+     */
+    public final long next() throws IllegalStateException {
+        return next(1);
+    }
+
+    /**
+     * next claims the next slots for the writer in one go, so a batch can be
+     * claimed before anything is changed for it and then published together.
+     * Either every slot is claimed or, when this throws, none is.
+     *
+     * @param count Integer containing the number of slots, at most the size of the ring
+     * @return Long containing the sequence of the last slot, the first being count - 1 before it
+     * @throws IllegalArgumentException Count must be greater than zero and no more than the size of the ring
+     * @throws IllegalStateException The ring has been halted or a consumer that stops on errors has stopped
+     */
+    public final long next(int count) throws IllegalArgumentException, IllegalStateException {
+        if (count <= 0 || count > entries.length) {
+            throw new IllegalArgumentException("Count must be greater than zero and no more than " + entries.length);
+        }
+        checkOpen();
+        long sequence = nextSequence + count - 1;
+        long wrapPoint = sequence - entries.length;
+        if (wrapPoint > cachedGate) {
+            long gate;
+            while (wrapPoint > (gate = getMinimumSequence())) {
+                LockSupport.parkNanos(1000);
+                checkOpen();
+            }
+            cachedGate = gate;
+        }
+        nextSequence += count;
+        return sequence;
+    }
+
+    private void checkFailed() throws IllegalStateException {
+        Consumer stopped = failed;
+        if (stopped != null) {
+            throw new IllegalStateException("Consumer " + stopped.name + " stopped on an error", stopped.lastError);
+        }
+    }
+
+    private void checkOpen() throws IllegalStateException {
+        checkFailed();
+        if (halted) {
+            throw new IllegalStateException("Ring has been halted");
+        }
+    }
+
+    /**
+     * get gets the event in a slot, to be filled in between next and publish
+     *
+     * @param sequence Long containing the sequence from next
+     * @return Instance of the GateEvent in the slot
+     */
+    public final GateEvent get(long sequence) {
+        return entries[(int) sequence & mask];
+    }
+
+    /**
+     * publish makes a filled in slot, and every slot claimed before it, visible
+     * to the consumers
+     *
+     * @param sequence Long containing the sequence from next
+     */
+    public final void publish(long sequence) {
+        cursor.set(sequence);
+        if (blockingConsumers) {
+            signalConsumers();
+        }
+    }
+
+    /**
+     * publishCheckIn claims, fills in and publishes a check-in event
+     *
+     * @param ticketNumber Integer containing the ticket number
+     * @param vehicleID String containing the vehicle ID
+     * @param hours Double containing the hours on the ticket
+     * @param spot Integer containing the spot the vehicle was given, -1 when spots are not assigned
+     * @param level Integer containing the level the vehicle was counted on, -1 when levels are not tracked
+     * @param reservationID Integer containing the booking the vehicle was matched to, 0 for none
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @throws IllegalStateException The ring has been halted or a consumer that stops on errors has stopped
+     */
+    public final void publishCheckIn(int ticketNumber, String vehicleID, double hours, int spot, int level,
+            int reservationID, String garageName, int day) {
+        long sequence = next();
+        get(sequence).setCheckIn(ticketNumber, vehicleID, hours, spot, level, reservationID, garageName, day);
+        publish(sequence);
+    }
+
+    /**
+     * publishCheckout claims, fills in and publishes a checkout event
+     *
+     * @param ticketNumber Integer containing the ticket number
+     * @param vehicleID String containing the vehicle ID
+     * @param hours Double containing the hours parked
+     * @param fees Double containing the fee charged
+     * @param calcID String containing the ID of the calculator that priced the fee
+     * @param rate Double containing the rate the calculator applied
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @throws IllegalStateException The ring has been halted or a consumer that stops on errors has stopped
+     */
+    public final void publishCheckout(int ticketNumber, String vehicleID, double hours, double fees, String calcID,
+            double rate, String garageName, int day) {
+        publishPriced(GateEvent.Type.CHECKOUT, ticketNumber, vehicleID, hours, fees, calcID, rate, garageName, day);
+    }
+
+    /**
+     * publishPriced claims, fills in and publishes an event carrying a fee
+     *
+     * @param type Type of the event, FEE_COMPUTED, CHECKOUT or RECEIPT_PRINTED
+     * @param ticketNumber Integer containing the ticket number
+     * @param vehicleID String containing the vehicle ID
+     * @param hours Double containing the hours parked
+     * @param fees Double containing the fee
+     * @param calcID String containing the ID of the calculator that priced the fee
+     * @param rate Double containing the rate the calculator applied
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @throws IllegalArgumentException Type must carry a fee
+     * @throws IllegalStateException The ring has been halted or a consumer that stops on errors has stopped
+     */
+    public final void publishPriced(GateEvent.Type type, int ticketNumber, String vehicleID, double hours,
+            double fees, String calcID, double rate, String garageName, int day) {
+        if (type == null || type == GateEvent.Type.CHECK_IN) {
+            throw new IllegalArgumentException("Type must carry a fee");
+        }
+        long sequence = next();
+        get(sequence).setPriced(type, ticketNumber, vehicleID, hours, fees, calcID, rate, garageName, day);
+        publish(sequence);
+    }
+
+    private void signalConsumers() {
+        lock.lock();
+        try {
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long getMinimumSequence() {
+        long minimum = cursor.get();
+        for (Consumer consumer : consumers) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Gets the sequence of the last event published
+     *
+     * @return Long containing the sequence, -1 before the first event
+     */
+    public final long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Gets the number of events the ring holds
+     *
+     * @return Integer containing the size
+     */
+    public final int getBufferSize() {
+        return entries.length;
+    }
+
+    /**
+     * Gets the number of events that can be published before the writer waits
+     *
+     * @return Long containing the free slots
+     */
+    public final long getRemainingCapacity() {
+        return entries.length - (cursor.get() - getMinimumSequence());
+    }
+
+    /**
+     * Gets the consumers of the ring
+     *
+     * @return List of the consumers in the order they were added
+     */
+    public final List<Consumer> getConsumers() {
+        return new ArrayList<Consumer>(consumers);
+    }
+
+    /**
+     * Measures checkout events through a ring with a totals, timing, receipt and
+     * counting consumer, once for each wait strategy.
+     *
+     * Usage: GateEventRing [events]
+     *
+     * @param args Optional number of events per strategy, 2,000,000 by default
+     * @throws InterruptedException If interrupted while waiting for the consumers
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            GateEventRing ring = new GateEventRing(4096);
+            TransactionSummary totals = new TransactionSummary();
+            LatencyRecorder latency = new LatencyRecorder();
+            final AtomicLong counted = new AtomicLong();
+            ring.addConsumer("totals", GateEventHandlers.totalInto(totals), strategy, 256);
+            ring.addConsumer("latency", GateEventHandlers.recordLatency(latency), strategy, 256);
+            ring.addConsumer("receipts", GateEventHandlers.printReceipts(new java.io.Writer() {
+                @Override
+                public void write(char[] text, int offset, int length) {
+                    // discards the receipts, only the formatting is measured
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            }), strategy, 256);
+            ring.addConsumer("count", new Handler() {
+                @Override
+                public void onEvent(GateEvent event, long sequence, boolean endOfBatch) {
+                    counted.incrementAndGet();
+                }
+            }, strategy, 256);
+            ring.start();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < events; i++) {
+                ring.publishCheckout(i + 1, "V" + (char) ('A' + i % 26) + "00", 1 + (i & 7), 3.75, "A1234", 1,
+                        "Benchmark", 20240101);
+            }
+            ring.halt();
+            long nanos = System.nanoTime() - start;
+            System.out.println(String.format("%s: %.0f events/s, %d counted, revenue %.2f, latency p50 %d ns p99 %d ns",
+                    strategy, events * 1e9 / nanos, counted.get(), totals.getRevenue(),
+                    latency.getPercentile(50), latency.getPercentile(99)));
+            for (Consumer consumer : ring.getConsumers()) {
+                System.out.println("  " + consumer);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package jss.parkinggarageapp;
+
+/**
+ * GateStatus class is used to name what happened to one check-in or checkout
+ * handled in a batch, or what is wrong with one before it is handled. Batches
+ * and the validate methods of Vehicle, ParkingTicket, Receipt and
+ * AutomatedTeller report a status code instead of throwing, so one bad event
+ * does not stop the rest and a burst of bad events costs no more than a burst
+ * of good ones.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public final class GateStatus {
+
+    /**
+     * The event was handled
+     */
+    public static final int OK = 0;
+
+    /**
+     * The vehicle ID was missing or not 4 characters long
+     */
+    public static final int BAD_VEHICLE_ID = 1;
+
+    /**
+     * The hours were not greater than zero and at most 24
+     */
+    public static final int BAD_HOURS = 2;
+
+    /**
+     * There was no spot or level free for the vehicle
+     */
+    public static final int GARAGE_FULL = 3;
+
+    /**
+     * The vehicle had no open visit to check out
+     */
+    public static final int NOT_PARKED = 4;
+
+    /**
+     * The command was not one that is understood or had the wrong arguments
+     */
+    public static final int BAD_COMMAND = 5;
+
+    /**
+     * The vehicle came up more than once in a batch that handles each vehicle once
+     */
+    public static final int DUPLICATE = 6;
+
+    private static final String[] DESCRIPTIONS = {
+        "OK",
+        "vehicleID cannot be null and must be 4 characters long",
+        "hours has to be greater than zero and at most 24",
+        "garage is full",
+        "vehicle is not parked",
+        "command is not understood",
+        "vehicle comes up more than once in the batch"
+    };
+
+    private GateStatus() {
+    }
+
+    /**
+     * describe gets the meaning of a status code
+     *
+     * @param status Integer containing the status code
+     * @return String describing the status
+     */
+    public static String describe(int status) {
+        return status >= 0 && status < DESCRIPTIONS.length ? DESCRIPTIONS[status] : "unknown status " + status;
+    }
+
+}
@@ -0,0 +1,141 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * GateValidator class is used to check a whole batch of vehicle IDs, and the
+ * hours they were parked, before any of them is handled. Each entry gets the
+ * GateStatus code Receipt.validateVehicle would give it, kept in a byte so a
+ * large batch needs only one small array and no exceptions. The parallel path
+ * splits the batch in half until each piece is small and checks the pieces on
+ * a fork-join pool; the checks only read the arrays, so it gives the same codes
+ * as the sequential path.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class GateValidator extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private static final int THRESHOLD = 1 << 12;
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    private final String[] vehicleIDs;
+    private final double[] hours;
+    private final byte[] statuses;
+    private final int lo;
+    private final int hi;
+
+    /**
+     * Creates a task that checks entries lo up to but not including hi
+     */
+    private GateValidator(String[] vehicleIDs, double[] hours, byte[] statuses, int lo, int hi) {
+        this.vehicleIDs = vehicleIDs;
+        this.hours = hours;
+        this.statuses = statuses;
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    /**
+     * validateAll checks the batch in parallel using every core. A batch no
+     * bigger than one piece is checked on the calling thread.
+     *
+     * @param vehicleIDs Array of Strings containing the ID of each vehicle
+     * @param hours Array of Doubles containing the hours of each vehicle, or null to check only the IDs
+     * @return Array of Bytes with the GateStatus of each vehicle, OK, BAD_VEHICLE_ID or BAD_HOURS
+     * @throws IllegalArgumentException IDs cannot be null and hours must be the same length
+     */
+    public static byte[] validateAll(String[] vehicleIDs, double[] hours) throws IllegalArgumentException {
+        GateValidator task = create(vehicleIDs, hours);
+        if (vehicleIDs.length <= THRESHOLD) {
+            task.computeDirectly();
+        } else {
+            POOL.invoke(task);
+        }
+        return task.statuses;
+    }
+
+    /**
+     * validateAllSequential checks the batch on the calling thread
+     *
+     * @param vehicleIDs Array of Strings containing the ID of each vehicle
+     * @param hours Array of Doubles containing the hours of each vehicle, or null to check only the IDs
+     * @return Array of Bytes with the GateStatus of each vehicle, OK, BAD_VEHICLE_ID or BAD_HOURS
+     * @throws IllegalArgumentException IDs cannot be null and hours must be the same length
+     */
+    public static byte[] validateAllSequential(String[] vehicleIDs, double[] hours) throws IllegalArgumentException {
+        GateValidator task = create(vehicleIDs, hours);
+        task.computeDirectly();
+        return task.statuses;
+    }
+
+    /**
+     * create checks the arguments and builds the task for every entry
+     */
+    private static GateValidator create(String[] vehicleIDs, double[] hours) throws IllegalArgumentException {
+        if (vehicleIDs == null || (hours != null && hours.length != vehicleIDs.length)) {
+            throw new IllegalArgumentException("IDs cannot be null and hours must be the same length");
+        }
+        return new GateValidator(vehicleIDs, hours, new byte[vehicleIDs.length], 0, vehicleIDs.length);
+    }
+
+    /**
+     * compute splits the entries in half until the piece is below the threshold
+     */
+    @Override
+    protected void compute() {
+        if (hi - lo <= THRESHOLD) {
+            computeDirectly();
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        invokeAll(new GateValidator(vehicleIDs, hours, statuses, lo, mid),
+                new GateValidator(vehicleIDs, hours, statuses, mid, hi));
+    }
+
+    /**
+     * computeDirectly checks each entry of this piece in turn
+     */
+    private void computeDirectly() {
+        for (int i = lo; i < hi; i++) {
+            statuses[i] = (byte) (hours == null ? Vehicle.validateVehicleID(vehicleIDs[i])
+                    : Receipt.validateVehicle(vehicleIDs[i], hours[i]));
+        }
+    }
+
+    /**
+     * Fills a batch with random IDs and hours, about a third of them bad, and
+     * times the sequential and parallel paths, checking that both give the same
+     * codes.
+     *
+     * Usage: GateValidator [entries]
+     *
+     * @param args Optional number of entries
+     */
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        Random random = new Random(42);
+        String[] vehicleIDs = new String[entries];
+        double[] hours = new double[entries];
+        for (int i = 0; i < entries; i++) {
+            vehicleIDs[i] = random.nextInt(6) == 0 ? "V" + i : "V" + (char) ('A' + i % 26) + (i % 10) + (i / 10 % 10);
+            hours[i] = random.nextInt(6) == 0 ? -1 : 1 + random.nextInt(24 * 4 - 4) / 4.0;
+        }
+
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            byte[] sequential = validateAllSequential(vehicleIDs, hours);
+            long sequentialNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            byte[] parallel = validateAll(vehicleIDs, hours);
+            long parallelNanos = System.nanoTime() - start;
+
+            System.out.println(String.format("sequential=%.1fms parallel=%.1fms cores=%d identical=%b",
+                    sequentialNanos / 1e6, parallelNanos / 1e6, POOL.getParallelism(),
+                    Arrays.equals(sequential, parallel)));
+        }
+    }
+
+}
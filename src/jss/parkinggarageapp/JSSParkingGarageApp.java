@@ -8,8 +8,16 @@ package jss.parkinggarageapp;
  */
 public class JSSParkingGarageApp {
 
-    public static void main(String[] args){
-   
+    public static void main(String[] args) throws java.io.IOException {
+
+        /**
+         * Runs the headless batch engine instead of the GUI when asked for
+         */
+        if (args.length > 0 && args[0].equals("-batch")) {
+            BatchCheckoutEngine.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         /**
          * Starts up the GUI
          */
@@ -0,0 +1,92 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+
+/**
+ * LatencyRecorder class is used to collect timings in nanoseconds and report
+ * percentiles for the load tools. Each thread should use its own recorder and
+ * merge them when it is done since the class is not synchronized.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int count;
+    private boolean sorted;
+
+    /**
+     * record adds one timing to the recorder
+     *
+     * @param nanos Long containing the elapsed time in nanoseconds
+     */
+    public final void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = nanos;
+        sorted = false;
+    }
+
+    /**
+     * merge adds every timing from another recorder to this one
+     *
+     * @param other Instance of the LatencyRecorder class to be merged
+     * @throws IllegalArgumentException Recorder cannot be null
+     */
+    public final void merge(LatencyRecorder other) throws IllegalArgumentException {
+        if (other == null) {
+            throw new IllegalArgumentException("Recorder cannot be null");
+        }
+        if (count + other.count > samples.length) {
+            samples = Arrays.copyOf(samples, Math.max(samples.length * 2, count + other.count));
+        }
+        System.arraycopy(other.samples, 0, samples, count, other.count);
+        count += other.count;
+        sorted = false;
+    }
+
+    /**
+     * getPercentile gets the timing below which the given percent of samples fall
+     *
+     * @param percent Double between 0 and 100
+     * @return Long containing the timing in nanoseconds, zero when nothing was recorded
+     * @throws IllegalArgumentException Percent must be between 0 and 100
+     */
+    public final long getPercentile(double percent) throws IllegalArgumentException {
+        if (percent < 0 || percent > 100) {
+            throw new IllegalArgumentException("Percent must be between 0 and 100");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+        int index = (int) Math.ceil(percent / 100 * count) - 1;
+        return samples[Math.max(index, 0)];
+    }
+
+    /**
+     * Gets the number of timings recorded
+     *
+     * @return Integer containing the number of timings
+     */
+    public final int getCount() {
+        return count;
+    }
+
+    /**
+     * Overrides the toString method, shows the common percentiles in milliseconds
+     *
+     * @return A string containing the count, p50, p99 and p99.9 timings
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d p50=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms", count,
+                getPercentile(50) / 1e6, getPercentile(99) / 1e6, getPercentile(99.9) / 1e6,
+                getPercentile(100) / 1e6);
+    }
+
+}
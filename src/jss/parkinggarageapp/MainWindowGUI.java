@@ -1,6 +1,5 @@
 package jss.parkinggarageapp;
 
-import filemanager.*;
 import java.io.*;
 import java.util.*;
 
@@ -8,20 +7,22 @@ import java.util.*;
 
 /**
  * This class is used to create the graphical user interface for the Garage Point
- * of Sale system. 
+ * of Sale system. Check-ins and checkouts go through a GateEventRing, where one
+ * consumer persists them to one segment per garage per day under src/history
+ * and a second one, following it, shows the receipts, so the buttons never wait
+ * on the disk or the receipt window. The day is restored at startup from its
+ * latest snapshot plus the check-ins and checkouts made after it.
  * @author Jamie Studzinski
  * @version 1.0
  */
 
 public class MainWindowGUI extends javax.swing.JFrame {
-    private String filePath = "src" + File.separatorChar + "file.txt";
+    private String historyPath = "src" + File.separatorChar + "history";
     private Vector<FeeCalculatorStrategy> feeCalc = new Vector<FeeCalculatorStrategy>();
-    private List<LinkedHashMap<String, String>> carFees = new ArrayList<LinkedHashMap<String, String>>();
     private AutomatedTeller atm;
-    
-    private FileReaderStrategy reader = new TextFileReader(new CustomGarageFileFormat(),filePath);
-    private FileWriterStrategy writer = new TextFileWriter(new CustomGarageFileFormat(), filePath);
-    private FileService fs = new FileService(writer, reader);
+    private DailySegmentStore store;
+    private RecoveryManager recovery;
+    private GateEventRing ring = new GateEventRing(1024);
 
     /**
      * Creates new form ParkingGarageGUI
@@ -35,13 +36,27 @@ public class MainWindowGUI extends javax.swing.JFrame {
         initComponents();
 
         Garage garage = new Garage((FeeCalculatorStrategy) comboBoxFeeCalc.getSelectedItem(), "Jims Parking Garage", "1234 West Ave, Pewaukee, WI");
-        atm = new AutomatedTeller(new Receipt(garage), new ReceiptGUIOutput(), garage);
+        ReceiptOutputStrategy receipts = new ReceiptGUIOutput();
+        atm = new AutomatedTeller(new Receipt(garage), receipts, garage);
+        GateEventRing.Consumer persisted = null;
         
         try {
-            carFees = fs.getAllData();
+            store = new DailySegmentStore(new File(historyPath));
+            atm.setSegmentStore(store);
+            recovery = new RecoveryManager(store);
+            recovery.recover(atm);
+            persisted = ring.addConsumer("persist", GateEventHandlers.persistTo(store),
+                    GateEventRing.WaitStrategy.BLOCKING, 256, true);
         } catch (IOException ex) {
             System.out.println("Error reading in file");
         }
+        ring.addConsumer("receipts", GateEventHandlers.outputTo(receipts, garage),
+                GateEventRing.WaitStrategy.BLOCKING, 64, false, persisted);
+        ring.start();
+        atm.setEventRing(ring);
+        if (recovery != null) {
+            recovery.startPeriodicSnapshots(atm, 60);
+        }
     }
 
     /**
@@ -157,25 +172,17 @@ public class MainWindowGUI extends javax.swing.JFrame {
      */
     private void btnCalcFeeActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnCalcFeeActionPerformed
         FeeCalculatorStrategy calculateFee = (FeeCalculatorStrategy) comboBoxFeeCalc.getSelectedItem();
-        LinkedHashMap<String, String> parkedCar = new LinkedHashMap<String, String>();
-
         String vehicleID = txtVehicleID.getText();
-        double fees = calculateFee.calculateFee(Double.parseDouble(txtHours.getText()));
-
-        parkedCar.put("Hours", txtHours.getText());
-        parkedCar.put("Fees", Double.toString(fees));
-                
-
-        atm.parkNewVehicle(vehicleID, Double.parseDouble(txtHours.getText()), carFees.size() + 1);
-        atm.outputFee(vehicleID);
 
-        carFees.add(carFees.size(), parkedCar);
+        atm.getGarage().setFeeCalculator(calculateFee);
 
-        
         try {
-            fs.getWriter().writeToFile(carFees);
+            atm.parkNewVehicle(vehicleID, Double.parseDouble(txtHours.getText()));
+            atm.checkoutVehicle(vehicleID);
         } catch (IOException ex) {
-            System.out.println("Empty File");
+            System.out.println("Error writing file");
+        } catch (IllegalStateException ex) {
+            System.out.println(ex.getMessage());
         }
 
     }//GEN-LAST:event_btnCalcFeeActionPerformed
@@ -186,16 +193,24 @@ public class MainWindowGUI extends javax.swing.JFrame {
      */
     private void btnDailyTotalActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnDailyTotalActionPerformed
 
-        try {
-            carFees = fs.getAllData();
-        } catch (IOException ex) {
-            System.out.println("Error reading in file");
-        }
-
-        atm.outputDailyTotal(carFees);
+        atm.outputDailyTotal();
     }//GEN-LAST:event_btnDailyTotalActionPerformed
 
     private void btnExitActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnExitActionPerformed
+        try {
+            if (store != null) {
+                recovery.stop();
+                recovery.snapshot(atm);
+            }
+            ring.halt();
+            if (store != null) {
+                store.close();
+            }
+        } catch (IOException | IllegalStateException ex) {
+            System.out.println("Error closing file");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
         System.exit(0);
     }//GEN-LAST:event_btnExitActionPerformed
 
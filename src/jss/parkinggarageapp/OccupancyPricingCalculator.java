@@ -0,0 +1,247 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * OccupancyPricingCalculator class implements the FeeCalculatorStrategy class. It
+ * prices a stay with another calculator and then applies the rate of the band
+ * the garage's occupancy is in, for example 1.25 once the garage is over 90%
+ * full. Occupancy is read from the garage's OccupancyTracker, which is one
+ * atomic counter read without a lock, and the bands are fixed when the
+ * calculator is made, so a quote costs the same however busy the gates are.
+ *
+ * A fee and the rate it used should be taken together with getRate and
+ * calculateFee(hours, rate), so the rate stamped on the transaction is the one
+ * that priced it even if occupancy changes in between.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class OccupancyPricingCalculator implements FeeCalculatorStrategy {
+    private final FeeCalculatorStrategy baseCalculator;
+    private final OccupancyTracker occupancy;
+    private final double[] thresholds;
+    private final double[] rates;
+    private String calcID;
+
+    /**
+     * Overrides the default constructor requiring the calculator giving the normal
+     * fee, the garage's occupancy, the bands and calcID to be passed through
+     *
+     * @param baseCalculator FeeCalculatorStrategy giving the fee at a rate of 1
+     * @param occupancy Instance of the OccupancyTracker of the garage
+     * @param thresholds Array of occupancies from 0 to 1 in increasing order where each band starts
+     * @param rates Array of the rate for each band, below the first band the rate is 1
+     * @param calcID Unique string identify the particular calculator
+     * @throws IllegalArgumentException Calculator and tracker cannot be null, there must be a rate greater than zero for every threshold and thresholds must increase from 0 to 1
+     */
+    public OccupancyPricingCalculator(FeeCalculatorStrategy baseCalculator, OccupancyTracker occupancy,
+            double[] thresholds, double[] rates, String calcID) throws IllegalArgumentException {
+        if (baseCalculator == null || occupancy == null || thresholds == null || rates == null
+                || thresholds.length != rates.length) {
+            throw new IllegalArgumentException("Calculator and tracker cannot be null and there must be a rate for every threshold");
+        }
+        for (int i = 0; i < thresholds.length; i++) {
+            if (thresholds[i] < 0 || thresholds[i] > 1 || (i > 0 && thresholds[i] <= thresholds[i - 1])
+                    || !(rates[i] > 0) || Double.isInfinite(rates[i])) {
+                throw new IllegalArgumentException("Thresholds must increase from 0 to 1 and rates must be greater than zero");
+            }
+        }
+        this.baseCalculator = baseCalculator;
+        this.occupancy = occupancy;
+        this.thresholds = thresholds.clone();
+        this.rates = rates.clone();
+        setCalcID(calcID);
+    }
+
+    /**
+     * calculateFee gets the fee for the stay at the rate of the current occupancy band
+     *
+     * @param totalHours Total amount of hours the car was parked
+     * @return The total fee for the car
+     */
+    @Override
+    public final double calculateFee(double totalHours) {
+        return calculateFee(totalHours, getRate());
+    }
+
+    /**
+     * calculateFee gets the fee for the stay at a given rate, rounded to the cent
+     *
+     * @param totalHours Total amount of hours the car was parked
+     * @param rate Double containing the rate, normally from getRate
+     * @return The total fee for the car
+     */
+    public final double calculateFee(double totalHours, double rate) {
+        return Math.round(baseCalculator.calculateFee(totalHours) * rate * 100) / 100.0;
+    }
+
+    /**
+     * getRate gets the rate of the band the garage's occupancy is in now
+     *
+     * @return Double containing the rate, 1 below the first band
+     */
+    public final double getRate() {
+        return getRate(occupancy.getOccupancy());
+    }
+
+    /**
+     * getRate gets the rate of the band an occupancy is in
+     *
+     * @param occupied Double from 0 to 1 of the share of spots taken
+     * @return Double containing the rate, 1 below the first band
+     */
+    public final double getRate(double occupied) {
+        double rate = 1;
+        for (int i = 0; i < thresholds.length && occupied >= thresholds[i]; i++) {
+            rate = rates[i];
+        }
+        return rate;
+    }
+
+    /**
+     * Gets the calculator giving the fee at a rate of 1
+     *
+     * @return FeeCalculatorStrategy used for the normal fee
+     */
+    public final FeeCalculatorStrategy getBaseCalculator() {
+        return baseCalculator;
+    }
+
+    /**
+     * Gets the occupancy the bands are chosen by
+     *
+     * @return Instance of the OccupancyTracker
+     */
+    public final OccupancyTracker getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * Gets the unique ID for the Calculator class
+     *
+     * @return A string containing a unique ID
+     */
+    @Override
+    public String getCalcID() {
+        return calcID;
+    }
+
+    /**
+     * Sets the unique ID for the Calculator class
+     *
+     * @param calcID A string containing a unique ID
+     * @throws IllegalArgumentException String must be 5 characters long
+     */
+    public void setCalcID(String calcID) throws IllegalArgumentException {
+        if (calcID == null || calcID.length() != 5) {
+            throw new IllegalArgumentException("Calcuator ID cannot be null and must be 5 characters long");
+        } else {
+            this.calcID = calcID;
+        }
+    }
+
+    /**
+     * Overrides the toString method
+     *
+     * @return "Occupancy Pricing Calculator" designating which Calculator is being used
+     */
+    @Override
+    public String toString() {
+        return "Occupancy Pricing Calculator";
+    }
+
+    /**
+     * Overrides the equals method and compares the calcID for the two objects to see
+     * if they are equal
+     *
+     * @param obj Instance of an object to be used as a comparison
+     * @return A boolean whether they are equal or not
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final OccupancyPricingCalculator other = (OccupancyPricingCalculator) obj;
+        return this.calcID.equals(other.getCalcID());
+    }
+
+    /**
+     * Overrides the hashCode method and uses the calcID hash code to find equality
+     *
+     * @return Returns the hash code to be used
+     */
+    @Override
+    public int hashCode() {
+        int hash = 3;
+        hash = 53 * hash + (this.calcID.hashCode());
+        return hash;
+    }
+
+    /**
+     * Measures quotes while other threads keep cars entering and leaving, to show
+     * the quote does not wait on the gates.
+     *
+     * Usage: OccupancyPricingCalculator [quotes [gate threads]]
+     *
+     * @param args Optional number of quotes, 20,000,000 by default, and gate threads, 2 by default
+     * @throws InterruptedException If the main thread is interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int quotes = args.length > 0 ? Integer.parseInt(args[0]) : 20000000;
+        int gates = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        final OccupancyTracker tracker = new OccupancyTracker("Benchmark", new int[]{500, 500});
+        OccupancyPricingCalculator calculator = new OccupancyPricingCalculator(
+                new ThriftyFeeCalculator(1.5, 2, .75, "A1234"), tracker,
+                new double[]{.75, .9}, new double[]{1.1, 1.25}, "OCC01");
+        for (int i = 0; i < 850; i++) {
+            tracker.enter();
+        }
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int g = 0; g < gates; g++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random();
+                    while (running.get()) {
+                        int level = tracker.enter();
+                        if (level >= 0 && random.nextBoolean()) {
+                            tracker.exit(level);
+                        } else if (tracker.getOccupied(0) > 0) {
+                            try {
+                                tracker.exit(0);
+                            } catch (IllegalStateException ex) {
+                                // another gate emptied the level first
+                            }
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        double total = 0;
+        for (int round = 1; round <= 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < quotes; i++) {
+                total += calculator.calculateFee(1 + (i & 15));
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.println(String.format("round %d: %.1f ns per quote, %s", round, (double) nanos / quotes, tracker));
+        }
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.println("checksum " + total);
+    }
+
+}
@@ -0,0 +1,277 @@
+package jss.parkinggarageapp;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * OccupancyTracker class is used to count the cars inside a garage as they enter
+ * and leave, per level and for the whole garage. The counters are atomics
+ * changed with compare-and-set, so several gates can update them at once without
+ * a lock, and each counter sits on its own cache line so gates working different
+ * levels do not slow each other down. A level never goes over its capacity.
+ *
+ * When the garage becomes full or stops being full the FullSignal, if one is
+ * set, is told once, which is what drives the entrance sign.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class OccupancyTracker {
+    private static final int PAD = 16;
+
+    private final String garageName;
+    private final int[] capacities;
+    private final int capacity;
+    private final AtomicIntegerArray counts;
+    private final int totalSlot;
+    private final AtomicBoolean full = new AtomicBoolean();
+    private volatile FullSignal fullSignal;
+
+    /**
+     * FullSignal interface is told when the garage fills up or has room again
+     */
+    public interface FullSignal {
+
+        /**
+         * fullChanged is called once each time the garage's full state changes
+         *
+         * @param tracker Instance of the OccupancyTracker that changed
+         * @param full A boolean whether the garage is now full
+         */
+        void fullChanged(OccupancyTracker tracker, boolean full);
+    }
+
+    /**
+     * Overrides the default constructor requiring the garage name and the number
+     * of spots on each level to be passed in
+     *
+     * @param garageName String containing the garage name
+     * @param levelCapacities Array containing the spots on each level, starting with the level nearest the exit
+     * @throws IllegalArgumentException Name cannot be null and there must be at least one level, none below zero spots
+     */
+    public OccupancyTracker(String garageName, int[] levelCapacities) throws IllegalArgumentException {
+        if (garageName == null || levelCapacities == null || levelCapacities.length == 0) {
+            throw new IllegalArgumentException("Name cannot be null and there must be at least one level");
+        }
+        int total = 0;
+        for (int levelCapacity : levelCapacities) {
+            if (levelCapacity < 0) {
+                throw new IllegalArgumentException("Level capacity cannot be less than zero");
+            }
+            total += levelCapacity;
+        }
+        this.garageName = garageName;
+        this.capacities = levelCapacities.clone();
+        this.capacity = total;
+        this.totalSlot = levelCapacities.length * PAD;
+        this.counts = new AtomicIntegerArray((levelCapacities.length + 1) * PAD);
+        full.set(total == 0);
+    }
+
+    /**
+     * enter counts a car in on the first level, nearest the exit, that has room
+     *
+     * @return Integer containing the level the car was counted on, or -1 when the garage is full
+     */
+    public final int enter() {
+        for (int level = 0; level < capacities.length; level++) {
+            if (enter(level)) {
+                return level;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * enter counts a car in on a level
+     *
+     * @param level Integer containing the level
+     * @return A boolean whether the car was counted, false when the level is full
+     * @throws IllegalArgumentException Level must exist
+     */
+    public final boolean enter(int level) throws IllegalArgumentException {
+        checkLevel(level);
+        int slot = level * PAD;
+        while (true) {
+            int count = counts.get(slot);
+            if (count >= capacities[level]) {
+                return false;
+            }
+            if (counts.compareAndSet(slot, count, count + 1)) {
+                counts.incrementAndGet(totalSlot);
+                updateFull();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * exit counts a car out of a level
+     *
+     * @param level Integer containing the level
+     * @throws IllegalArgumentException Level must exist
+     * @throws IllegalStateException Level has no cars on it
+     */
+    public final void exit(int level) throws IllegalArgumentException, IllegalStateException {
+        checkLevel(level);
+        int slot = level * PAD;
+        while (true) {
+            int count = counts.get(slot);
+            if (count == 0) {
+                throw new IllegalStateException("Level " + level + " of " + garageName + " is already empty");
+            }
+            if (counts.compareAndSet(slot, count, count - 1)) {
+                counts.decrementAndGet(totalSlot);
+                updateFull();
+                return;
+            }
+        }
+    }
+
+    /**
+     * reset counts every car out
+     */
+    public final void reset() {
+        for (int level = 0; level <= capacities.length; level++) {
+            counts.set(level * PAD, 0);
+        }
+        updateFull();
+    }
+
+    /**
+     * updateFull flips the full state to match the count, telling the signal once
+     * per change even when several gates finish at the same moment
+     */
+    private void updateFull() {
+        while (true) {
+            boolean now = counts.get(totalSlot) >= capacity;
+            boolean was = full.get();
+            if (now == was) {
+                return;
+            }
+            if (full.compareAndSet(was, now)) {
+                FullSignal signal = fullSignal;
+                if (signal != null) {
+                    signal.fullChanged(this, now);
+                }
+            }
+        }
+    }
+
+    private void checkLevel(int level) throws IllegalArgumentException {
+        if (level < 0 || level >= capacities.length) {
+            throw new IllegalArgumentException("Garage " + garageName + " has no level " + level);
+        }
+    }
+
+    /**
+     * Checks if every spot in the garage is taken
+     *
+     * @return A boolean whether the garage is full
+     */
+    public final boolean isFull() {
+        return full.get();
+    }
+
+    /**
+     * Gets the number of cars in the garage
+     *
+     * @return Integer containing the cars inside
+     */
+    public final int getOccupied() {
+        return counts.get(totalSlot);
+    }
+
+    /**
+     * Gets the number of cars on a level
+     *
+     * @param level Integer containing the level
+     * @return Integer containing the cars on the level
+     * @throws IllegalArgumentException Level must exist
+     */
+    public final int getOccupied(int level) throws IllegalArgumentException {
+        checkLevel(level);
+        return counts.get(level * PAD);
+    }
+
+    /**
+     * Gets the share of the garage's spots that are taken, read from one counter
+     * so it is safe and cheap to call on every fee quote
+     *
+     * @return Double from 0 to 1, 1 when the garage has no spots
+     */
+    public final double getOccupancy() {
+        return capacity == 0 ? 1 : (double) counts.get(totalSlot) / capacity;
+    }
+
+    /**
+     * Gets the number of spots in the garage
+     *
+     * @return Integer containing the capacity
+     */
+    public final int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of spots on a level
+     *
+     * @param level Integer containing the level
+     * @return Integer containing the level's capacity
+     * @throws IllegalArgumentException Level must exist
+     */
+    public final int getCapacity(int level) throws IllegalArgumentException {
+        checkLevel(level);
+        return capacities[level];
+    }
+
+    /**
+     * Gets the number of levels
+     *
+     * @return Integer containing the level count
+     */
+    public final int getLevelCount() {
+        return capacities.length;
+    }
+
+    /**
+     * Gets the name of the garage
+     *
+     * @return String containing the garage name
+     */
+    public final String getGarageName() {
+        return garageName;
+    }
+
+    /**
+     * Gets the signal told when the garage fills up or has room again
+     *
+     * @return Instance of the FullSignal, or null when none is set
+     */
+    public final FullSignal getFullSignal() {
+        return fullSignal;
+    }
+
+    /**
+     * Sets the signal told when the garage fills up or has room again
+     *
+     * @param fullSignal Instance of the FullSignal
+     * @throws IllegalArgumentException Signal cannot be null
+     */
+    public final void setFullSignal(FullSignal fullSignal) throws IllegalArgumentException {
+        if (fullSignal == null) {
+            throw new IllegalArgumentException("Signal cannot be null");
+        }
+        this.fullSignal = fullSignal;
+    }
+
+    /**
+     * Overrides the toString method, converts an OccupancyTracker to a string
+     *
+     * @return A string containing the garage name and cars inside out of its capacity
+     */
+    @Override
+    public String toString() {
+        return garageName + " occupancy: " + getOccupied() + "/" + capacity + (isFull() ? " FULL" : "");
+    }
+
+}
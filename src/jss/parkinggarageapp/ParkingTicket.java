@@ -10,6 +10,13 @@ package jss.parkinggarageapp;
 public class ParkingTicket {
     private int ticketNumber;
     private double hours;
+    private boolean paid;
+    private double feePaid;
+    private String calcID;
+    private double rate = 1;
+    private int level = -1;
+    private int spot = -1;
+    private int reservationID;
 
     /**
      * Overrides the default constructor requiring for the hours and ticket number
@@ -63,13 +70,167 @@ public class ParkingTicket {
      */
     public final void setHours(double hours) throws IllegalArgumentException
     {
-        if (hours <=0 || hours >24) {
+        if (validateHours(hours) != GateStatus.OK) {
             throw new IllegalArgumentException("Hours cannot be null, less than 1 or greater than 24");
         }else {
             this.hours = hours;
         }
     }
 
+    /**
+     * Checks hours the way setHours does without throwing, for checking many
+     * tickets where most bad ones are expected
+     * 
+     * @param hours A double containing the hours for the Ticket object
+     * @return GateStatus.OK, or GateStatus.BAD_HOURS if hours are not greater than zero and at most 24
+     */
+    public static int validateHours(double hours) {
+        return hours > 0 && hours <= 24 ? GateStatus.OK : GateStatus.BAD_HOURS;
+    }
+
+    /**
+     * Gets the level the vehicle parked on
+     * 
+     * @return An integer containing the level, -1 when occupancy is not tracked
+     */
+    public final int getLevel() {
+        return level;
+    }
+
+    /**
+     * Sets the level the vehicle parked on
+     * 
+     * @param level An integer containing the level
+     * @throws IllegalArgumentException Level cannot be less than 0
+     */
+    public final void setLevel(int level) throws IllegalArgumentException{
+        if (level < 0) {
+            throw new IllegalArgumentException("Level cannot be less than 0");
+        } else {
+            this.level = level;
+        }
+    }
+
+    /**
+     * Gets the spot the vehicle was given
+     * 
+     * @return An integer containing the spot, -1 when spots are not assigned
+     */
+    public final int getSpot() {
+        return spot;
+    }
+
+    /**
+     * Sets the spot the vehicle was given
+     * 
+     * @param spot An integer containing the spot
+     * @throws IllegalArgumentException Spot cannot be less than 0
+     */
+    public final void setSpot(int spot) throws IllegalArgumentException{
+        if (spot < 0) {
+            throw new IllegalArgumentException("Spot cannot be less than 0");
+        } else {
+            this.spot = spot;
+        }
+    }
+
+    /**
+     * Gets the booking the vehicle was matched to at the gate
+     * 
+     * @return An integer containing the reservation ID, 0 when the vehicle had no booking
+     */
+    public final int getReservationID() {
+        return reservationID;
+    }
+
+    /**
+     * Sets the booking the vehicle was matched to at the gate
+     * 
+     * @param reservationID An integer containing the reservation ID
+     * @throws IllegalArgumentException Reservation ID has to be greater than 0
+     */
+    public final void setReservationID(int reservationID) throws IllegalArgumentException{
+        if (reservationID <= 0) {
+            throw new IllegalArgumentException("Reservation ID has to be greater than 0");
+        } else {
+            this.reservationID = reservationID;
+        }
+    }
+
+    /**
+     * pay marks the ticket as paid when the vehicle checks out, without
+     * recording the calculator the fee came from
+     * 
+     * @param fee Double containing the fee paid
+     * @throws IllegalArgumentException Fee cannot be less than zero
+     * @throws IllegalStateException Ticket has already been paid
+     */
+    public final void pay(double fee) throws IllegalArgumentException, IllegalStateException
+    {
+        pay(fee, null, 1);
+    }
+
+    /**
+     * pay marks the ticket as paid when the vehicle checks out, keeping the
+     * calculator and rate the fee was worked out with so the visit can be
+     * reported the way it was priced after the garage's calculator changes
+     * 
+     * @param fee Double containing the fee paid
+     * @param calcID String containing the ID of the calculator, or null when it is not known
+     * @param rate Double containing the rate the fee was multiplied by
+     * @throws IllegalArgumentException Fee and rate cannot be less than zero
+     * @throws IllegalStateException Ticket has already been paid
+     */
+    public final void pay(double fee, String calcID, double rate) throws IllegalArgumentException, IllegalStateException
+    {
+        if (fee < 0 || rate < 0) {
+            throw new IllegalArgumentException("Fee and rate cannot be less than zero");
+        } else if (paid) {
+            throw new IllegalStateException("Ticket " + ticketNumber + " has already been paid");
+        } else {
+            this.feePaid = fee;
+            this.calcID = calcID;
+            this.rate = rate;
+            this.paid = true;
+        }
+    }
+
+    /**
+     * Checks if the ticket has been paid
+     * 
+     * @return A boolean whether the vehicle has checked out
+     */
+    public final boolean isPaid() {
+        return paid;
+    }
+
+    /**
+     * Gets the fee paid for the ticket
+     * 
+     * @return A double containing the fee, zero until the ticket is paid
+     */
+    public final double getFeePaid() {
+        return feePaid;
+    }
+
+    /**
+     * Gets the ID of the calculator the fee was worked out with
+     * 
+     * @return A String containing the calculator ID, null until the ticket is paid or when it was not recorded
+     */
+    public final String getCalcID() {
+        return calcID;
+    }
+
+    /**
+     * Gets the rate the fee was multiplied by
+     * 
+     * @return A double containing the rate, 1 until the ticket is paid
+     */
+    public final double getRate() {
+        return rate;
+    }
+
     /**
      * Overrides the toString method, converts a Ticket object to a string
      * 
@@ -77,7 +238,9 @@ public class ParkingTicket {
      */
     @Override
     public String toString() {
-        return "Ticket Number: " + this.ticketNumber + " Hours: " + this.hours;
+        return "Ticket Number: " + this.ticketNumber + " Hours: " + this.hours
+                + (spot >= 0 ? " Spot: " + spot : "")
+                + (reservationID > 0 ? " Reservation: " + reservationID : "");
     }
 
     /**
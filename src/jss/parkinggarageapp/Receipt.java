@@ -1,5 +1,6 @@
 package jss.parkinggarageapp;
 
+import java.io.*;
 import java.util.*;
 
 /**
@@ -8,16 +9,81 @@ import java.util.*;
  * garage has in it for each given day. It will also run a method to calculate
  * the total for each car as far as hours and their total fee.
  *
+ * Each vehicle ID also has its own list of visits for the day, so the open
+ * ticket of a returning vehicle is found without searching the array and its
+ * visit count and fees paid are kept as it checks out.
+ *
+ * The receipt record of each vehicle's latest visit is kept as well, so the
+ * fee is worked out once and outputs and reprints read it from the record.
+ *
+ * When a ClosedTicketSpill is set only open visits and the most recent closed
+ * ones stay in memory. Older closed visits are written to the spill, a quarter
+ * of the limit at a time, and visit counts, fees, visits and reprints look in
+ * the spill for them, so memory stays the same however many cars pass through.
+ *
  * @author Jamie Studzinski
  */
 public class Receipt {
 
     private Vehicle[] vehicles = new Vehicle[0];
+    private int vehicleCount;
+    private VehicleIDTrie vehicleIDIndex = new VehicleIDTrie();
+    private Map<String, VehicleVisits> visitsByID = new HashMap<String, VehicleVisits>();
+    private Map<String, ReceiptRecord> records = new HashMap<String, ReceiptRecord>();
+    private ClosedTicketSpill spill;
+    private int maxClosed;
+    private ArrayDeque<Vehicle> closed = new ArrayDeque<Vehicle>();
     private Garage garage;
+    private int day = Transaction.today();
     private double dailyTotal;
     private double totalHours;
     private int transactionNum;
 
+    /**
+     * VehicleVisits class holds every visit of one vehicle in the order it parked.
+     * Visits check out oldest first, so the open visit is the first one not yet paid.
+     */
+    private static class VehicleVisits {
+        private Vehicle[] visits = new Vehicle[1];
+        private int count;
+        private int nextOpen;
+        private long feeCents;
+
+        private void add(Vehicle vehicle) {
+            if (count == visits.length) {
+                visits = Arrays.copyOf(visits, count * 2);
+            }
+            visits[count++] = vehicle;
+            if (vehicle.getTicket().isPaid()) {
+                feeCents += TransactionHistory.toCents(vehicle.getTicket().getFeePaid());
+                skipPaid();
+            }
+        }
+
+        private void remove(Vehicle vehicle) {
+            int index = 0;
+            while (visits[index] != vehicle) {
+                index++;
+            }
+            System.arraycopy(visits, index + 1, visits, index, count - index - 1);
+            visits[--count] = null;
+            if (index < nextOpen) {
+                nextOpen--;
+            }
+            feeCents -= TransactionHistory.toCents(vehicle.getTicket().getFeePaid());
+        }
+
+        private Vehicle getOpen() {
+            return nextOpen < count ? visits[nextOpen] : null;
+        }
+
+        private void skipPaid() {
+            while (nextOpen < count && visits[nextOpen].getTicket().isPaid()) {
+                nextOpen++;
+            }
+        }
+    }
+
    /**
     * Overrides the default constructor requiring a Garage object to be passed in
     * @param garage An instance of the Garage class
@@ -30,7 +96,19 @@ public class Receipt {
      * restForNewDay sets all values to zero
      */
     public final void resetForNewDay() {
-        Vehicle[] vehicles = new Vehicle[0];
+        vehicles = new Vehicle[0];
+        vehicleCount = 0;
+        vehicleIDIndex.clear();
+        visitsByID.clear();
+        records.clear();
+        closed.clear();
+        if (spill != null) {
+            try {
+                spill.clear();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Could not clear " + spill.getFile(), ex);
+            }
+        }
         dailyTotal = 0;
     }
 
@@ -41,33 +119,89 @@ public class Receipt {
      * @param vehicleID A string containing a unique ID for the Vehicle
      * @param hours Double containing the total hours the vehicle was parked
      * @param ticketNum A unique integer referencing the ticket number
+     * @return The Vehicle added, holding its new ParkingTicket
      * @throws IllegalArgumentException VehicleID cannot be null, VehicleID must be 4 characters long, hours must be between 1 and 24
      */
-    public final void addVehicleToArray(String vehicleID, double hours, int ticketNum) throws IllegalArgumentException {
-        if (vehicleID == null || vehicleID.length() <= 3 || vehicleID.length() >= 5 || hours <= 0 || hours > 24) {
+    public final Vehicle addVehicleToArray(String vehicleID, double hours, int ticketNum) throws IllegalArgumentException {
+        if (validateVehicle(vehicleID, hours) != GateStatus.OK) {
             throw new IllegalArgumentException("vehicleID cannot be null and must be 4 characters long. Hours cannot be less"
                     + " than or equal to zero and must be less than 24.");
         } else {
 
             Vehicle veh = new Vehicle(new ParkingTicket(hours, ticketNum), vehicleID);
 
-            Vehicle[] tempVehList = new Vehicle[1 + vehicles.length];
+            // Grow the array by half again when full so a long day of check-ins
+            // does not copy the whole array on every vehicle
+            if (vehicleCount == vehicles.length) {
+                Vehicle[] tempVehList = new Vehicle[vehicles.length + (vehicles.length >> 1) + 1];
+
+                System.arraycopy(vehicles, 0, tempVehList, 0, vehicleCount);
+
+                vehicles = tempVehList;
+            }
+            vehicles[vehicleCount++] = veh;
+            vehicleIDIndex.add(vehicleID);
+            addVisit(veh);
+            return veh;
+        }
+
+    }
 
-            System.arraycopy(vehicles, 0, tempVehList, 0, vehicles.length);
+    /**
+     * validateVehicle checks a vehicle the way addVehicleToArray does without
+     * throwing, for checking many vehicles where most bad ones are expected
+     * 
+     * @param vehicleID A string containing a unique ID for the Vehicle
+     * @param hours Double containing the total hours the vehicle was parked
+     * @return GateStatus.OK, GateStatus.BAD_VEHICLE_ID or GateStatus.BAD_HOURS
+     */
+    public static int validateVehicle(String vehicleID, double hours) {
+        int status = Vehicle.validateVehicleID(vehicleID);
+        return status != GateStatus.OK ? status : ParkingTicket.validateHours(hours);
+    }
 
-            tempVehList[vehicles.length] = veh;
-            vehicles = tempVehList;
+    /**
+     * ensureCapacity grows the vehicle array once to hold a batch of vehicles
+     * about to be added, instead of growing it as they come in
+     * 
+     * @param additional Integer containing the number of vehicles about to be added
+     */
+    public final void ensureCapacity(int additional) {
+        if (additional > 0 && vehicleCount + additional > vehicles.length) {
+            vehicles = Arrays.copyOf(vehicles, vehicleCount + additional);
         }
+    }
+
+    /**
+     * isSubscriber checks if the vehicle has a pass for the garage good for the
+     * business day the receipt is for
+     * 
+     * @param vehicleID A String containing a unique ID for the Vehicle
+     * @return A boolean whether the vehicle leaves without paying
+     */
+    public final boolean isSubscriber(String vehicleID) {
+        return isSubscriber(vehicleID, day);
+    }
 
+    /**
+     * isSubscriber checks if the vehicle has a pass for the garage good for the given day
+     * 
+     * @param vehicleID A String containing a unique ID for the Vehicle
+     * @param day Integer containing the day in yyyyMMdd form
+     * @return A boolean whether the vehicle leaves without paying
+     */
+    public final boolean isSubscriber(String vehicleID, int day) {
+        SubscriberRegistry subscribers = garage.getSubscribers();
+        return subscribers != null && subscribers.isSubscriber(vehicleID, day);
     }
 
     /**
      * calculateTotalFee is used to calculate the total amount due by the vehicle
-     * based off the vehicleID passed in
+     * based off the vehicleID passed in. Vehicles with a pass owe nothing.
      * 
      * @param vehicleID A String containing a unique ID for the Vehicle
      * @return A double containing the fee due by the vehicle
-     * @throws IllegalArgumentException VehicleID cannot be null and must 4 characters long
+     * @throws IllegalArgumentException VehicleID cannot be null and must 4 characters long, vehicle must be parked
      */
     public final double calculateTotalFee(String vehicleID) throws IllegalArgumentException {
         if (vehicleID == null || vehicleID.length() <= 3 || vehicleID.length() >= 5) {
@@ -75,16 +209,15 @@ public class Receipt {
         } else {
             double totalFee = 0;
 
-            Vehicle vehicle = null;
-
-            for (Vehicle v : vehicles) {
-                if (vehicleID.equals(v.getVehicleID())) {
-                    vehicle = v;
-                    break;
-                }
+            Vehicle vehicle = findVehicle(vehicleID);
 
+            if (vehicle == null) {
+                throw new IllegalArgumentException("No vehicle is parked with vehicleID " + vehicleID);
             }
 
+            if (isSubscriber(vehicleID)) {
+                return 0;
+            }
             totalFee = garage.getFeeCalculator().calculateFee(vehicle.getTicket().getHours());
 
             if (vehicle.getTicket().getHours() > 24) {
@@ -96,6 +229,280 @@ public class Receipt {
 
     }
 
+    /**
+     * findVehicle gets the open visit of the vehicle, the oldest one that has not
+     * checked out
+     * 
+     * @param vehicleID A String containing a unique ID for the Vehicle
+     * @return The matching Vehicle, or null when the vehicle has no open visit
+     */
+    public final Vehicle findVehicle(String vehicleID) {
+        VehicleVisits visits = visitsByID.get(vehicleID);
+        return visits == null ? null : visits.getOpen();
+    }
+
+    /**
+     * checkOutVehicle marks a visit of the vehicle as paid so the next visit
+     * becomes the open one
+     * 
+     * @param vehicleID A String containing a unique ID for the Vehicle
+     * @param ticketNum An integer referencing the ticket number of the visit
+     * @param fee A double containing the fee paid
+     * @return The Vehicle that checked out
+     * @throws IllegalArgumentException The vehicle must have an unpaid visit with the ticket number
+     */
+    public final Vehicle checkOutVehicle(String vehicleID, int ticketNum, double fee) throws IllegalArgumentException {
+        return checkOutVehicle(vehicleID, ticketNum, fee, null, 1);
+    }
+
+    /**
+     * checkOutVehicle marks a visit of the vehicle as paid, keeping the
+     * calculator and rate it was priced with on its ticket so the visit is
+     * spilled with them
+     * 
+     * @param vehicleID A String containing a unique ID for the Vehicle
+     * @param ticketNum An integer referencing the ticket number of the visit
+     * @param fee A double containing the fee paid
+     * @param calcID A String containing the ID of the calculator the fee came from
+     * @param rate A double containing the rate the fee was multiplied by
+     * @return The Vehicle that checked out
+     * @throws IllegalArgumentException The vehicle must have an unpaid visit with the ticket number
+     */
+    public final Vehicle checkOutVehicle(String vehicleID, int ticketNum, double fee, String calcID, double rate)
+            throws IllegalArgumentException {
+        VehicleVisits visits = visitsByID.get(vehicleID);
+        Vehicle visit = null;
+        if (visits != null) {
+            for (int i = visits.nextOpen; i < visits.count && visit == null; i++) {
+                ParkingTicket ticket = visits.visits[i].getTicket();
+                if (ticket.getTicketNumber() == ticketNum && !ticket.isPaid()) {
+                    visit = visits.visits[i];
+                }
+            }
+        }
+        if (visit == null) {
+            throw new IllegalArgumentException("No open visit for vehicleID " + vehicleID + " with ticket " + ticketNum);
+        }
+        visit.getTicket().pay(fee, calcID, rate);
+        visits.feeCents += TransactionHistory.toCents(fee);
+        visits.skipPaid();
+        if (spill != null) {
+            closed.add(visit);
+            if (closed.size() > maxClosed) {
+                spillClosed();
+            }
+        }
+        return visit;
+    }
+
+    /**
+     * spillClosed writes the oldest closed visits to the spill until a quarter
+     * of the limit is free again, and takes them out of memory. Each visit is
+     * written with the calculator and rate kept on its own ticket; one paid
+     * without them is written with the garage's calculator at a rate of 1.
+     */
+    private void spillClosed() throws IllegalStateException {
+        int keep = maxClosed - maxClosed / 4;
+        Set<Vehicle> spilled = Collections.newSetFromMap(new IdentityHashMap<Vehicle, Boolean>());
+        try {
+            while (closed.size() > keep) {
+                Vehicle vehicle = closed.poll();
+                String vehicleID = vehicle.getVehicleID();
+                ParkingTicket ticket = vehicle.getTicket();
+                if (ticket.getCalcID() != null) {
+                    spill.spill(vehicle, ticket.getCalcID(), ticket.getRate());
+                } else {
+                    spill.spill(vehicle, garage.getFeeCalculator().getCalcID(), 1);
+                }
+                spilled.add(vehicle);
+
+                VehicleVisits visits = visitsByID.get(vehicleID);
+                visits.remove(vehicle);
+                vehicleIDIndex.remove(vehicleID);
+                if (visits.count == 0) {
+                    visitsByID.remove(vehicleID);
+                    records.remove(vehicleID);
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not spill closed tickets to " + spill.getFile(), ex);
+        } finally {
+            int kept = 0;
+            for (int i = 0; i < vehicleCount; i++) {
+                if (!spilled.contains(vehicles[i])) {
+                    vehicles[kept++] = vehicles[i];
+                }
+            }
+            Arrays.fill(vehicles, kept, vehicleCount, null);
+            vehicleCount = kept;
+        }
+    }
+
+    /**
+     * snapshot copies the vehicle's open visit into a new receipt for the same
+     * garage, so it can be output on another thread while this receipt changes
+     * 
+     * @param vehicleID A String containing a unique ID for the Vehicle
+     * @return A new Receipt holding only a copy of the open visit, or no vehicle when it has none
+     */
+    public final Receipt snapshot(String vehicleID) {
+        Receipt copy = new Receipt(garage);
+        Vehicle vehicle = findVehicle(vehicleID);
+        if (vehicle != null) {
+            copy.addVehicleToArray(vehicleID, vehicle.getTicket().getHours(), vehicle.getTicket().getTicketNumber());
+        }
+        ReceiptRecord record = records.get(vehicleID);
+        if (record != null) {
+            copy.records.put(vehicleID, record);
+        }
+        return copy;
+    }
+
+    /**
+     * getRecord gets the receipt record of the vehicle's open visit, pricing the
+     * visit and keeping the record the first time it is asked for. When the
+     * vehicle has no open visit the record of its last visit is given, so a
+     * receipt can be reprinted after checkout.
+     * 
+     * @param vehicleID A String containing a unique ID for the Vehicle
+     * @return Instance of the ReceiptRecord
+     * @throws IllegalArgumentException VehicleID cannot be null and must be 4 characters long, vehicle must have a visit
+     */
+    public final ReceiptRecord getRecord(String vehicleID) throws IllegalArgumentException {
+        ReceiptRecord record = records.get(vehicleID);
+        Vehicle vehicle = findVehicle(vehicleID);
+        if (vehicle == null) {
+            if (record == null && spill != null) {
+                try {
+                    record = spill.findLastRecord(vehicleID, garage);
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Could not read " + spill.getFile(), ex);
+                }
+            }
+            if (record == null) {
+                throw new IllegalArgumentException("No receipt for vehicleID " + vehicleID);
+            }
+            return record;
+        }
+        if (record == null || record.getTicketNumber() != vehicle.getTicket().getTicketNumber()) {
+            record = new ReceiptRecord(garage.getName(), garage.getAddress(), vehicleID,
+                    vehicle.getTicket().getTicketNumber(), vehicle.getTicket().getHours(), calculateTotalFee(vehicleID),
+                    garage.getFeeCalculator().getCalcID(), 1);
+            records.put(vehicleID, record);
+        }
+        return record;
+    }
+
+    /**
+     * setRecord keeps a record already priced elsewhere, such as at checkout, as
+     * the receipt of the vehicle's latest visit
+     * 
+     * @param record Instance of the ReceiptRecord
+     * @throws IllegalArgumentException Record cannot be null
+     */
+    public final void setRecord(ReceiptRecord record) throws IllegalArgumentException {
+        if (record == null) {
+            throw new IllegalArgumentException("Record cannot be null");
+        } else {
+            records.put(record.getVehicleID(), record);
+        }
+    }
+
+    /**
+     * getVisits gets every visit of the vehicle today, the spilled ones first in
+     * the order they closed and then the ones in memory in the order they parked
+     * 
+     * @param vehicleID A String containing a unique ID for the Vehicle
+     * @return An array of the vehicle's visits, empty when it has none
+     * @throws IllegalStateException The spill could not be read
+     */
+    public final Vehicle[] getVisits(String vehicleID) throws IllegalStateException {
+        VehicleVisits visits = visitsByID.get(vehicleID);
+        Vehicle[] inMemory = visits == null ? new Vehicle[0] : Arrays.copyOf(visits.visits, visits.count);
+        if (spill == null) {
+            return inMemory;
+        }
+        try {
+            Vehicle[] spilled = spill.getVisits(vehicleID);
+            Vehicle[] all = Arrays.copyOf(spilled, spilled.length + inMemory.length);
+            System.arraycopy(inMemory, 0, all, spilled.length, inMemory.length);
+            return all;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not read " + spill.getFile(), ex);
+        }
+    }
+
+    /**
+     * getVisitCount gets how many times the vehicle has parked today
+     * 
+     * @param vehicleID A String containing a unique ID for the Vehicle
+     * @return An integer containing the number of visits
+     * @throws IllegalStateException The spill could not be read
+     */
+    public final int getVisitCount(String vehicleID) throws IllegalStateException {
+        VehicleVisits visits = visitsByID.get(vehicleID);
+        int count = visits == null ? 0 : visits.count;
+        try {
+            return spill == null ? count : count + spill.getVisitCount(vehicleID);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not read " + spill.getFile(), ex);
+        }
+    }
+
+    /**
+     * getCumulativeFees gets the fees the vehicle has paid across its visits today
+     * 
+     * @param vehicleID A String containing a unique ID for the Vehicle
+     * @return A double containing the fees paid
+     * @throws IllegalStateException The spill could not be read
+     */
+    public final double getCumulativeFees(String vehicleID) throws IllegalStateException {
+        VehicleVisits visits = visitsByID.get(vehicleID);
+        long cents = visits == null ? 0 : visits.feeCents;
+        try {
+            return (spill == null ? cents : cents + spill.getFeeCents(vehicleID)) / 100.0;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not read " + spill.getFile(), ex);
+        }
+    }
+
+    /**
+     * addVisit adds the vehicle to its ID's list of visits
+     */
+    private void addVisit(Vehicle vehicle) {
+        VehicleVisits visits = visitsByID.get(vehicle.getVehicleID());
+        if (visits == null) {
+            visits = new VehicleVisits();
+            visitsByID.put(vehicle.getVehicleID(), visits);
+        }
+        visits.add(vehicle);
+    }
+
+    /**
+     * findVehicleIDsByPrefix gets the IDs of the vehicles on the receipt that
+     * start with part of a plate
+     *
+     * @param prefix String containing the start of the vehicle ID
+     * @param limit Most IDs to return
+     * @return List of matching vehicle IDs in sorted order
+     * @throws IllegalArgumentException Prefix cannot be null and limit must be greater than zero
+     */
+    public final List<String> findVehicleIDsByPrefix(String prefix, int limit) throws IllegalArgumentException {
+        return vehicleIDIndex.findByPrefix(prefix, limit);
+    }
+
+    /**
+     * findSimilarVehicleIDs gets the IDs of the vehicles on the receipt that match
+     * a plate exactly or with one character read wrong
+     *
+     * @param vehicleID A String containing the vehicle ID as read
+     * @return List of matching vehicle IDs in sorted order
+     * @throws IllegalArgumentException VehicleID cannot be null
+     */
+    public final List<String> findSimilarVehicleIDs(String vehicleID) throws IllegalArgumentException {
+        return vehicleIDIndex.findSimilar(vehicleID);
+    }
+
     /**
      * getDailyTotal runs through the list and adds up the total Fees and returns
      * the daily total
@@ -131,31 +538,25 @@ public class Receipt {
     }
 
      /**
-     * getVehiclesParkedHours uses the array of vehicles to get the hours the vehicle
-     * was parked for the day
+     * getVehiclesParkedHours gets the hours on the vehicle's open visit, the same
+     * visit calculateTotalFee charges for
      * 
-     * @param vehicleID
-     * @return 
+     * @param vehicleID A String containing a unique ID for the Vehicle
+     * @return A double containing the hours, zero when the vehicle has no open visit
      */
     public final double getVehiclesParkedHours(String vehicleID) {
-        double vehicleHours = 0;
-
-        for (Vehicle v : vehicles) {
-            if (vehicleID.equals(v.getVehicleID())) {
-                vehicleHours = v.getTicket().getHours();
-            }
-        }
-
-        return vehicleHours;
+        Vehicle vehicle = findVehicle(vehicleID);
+        return vehicle == null ? 0 : vehicle.getTicket().getHours();
     }
     
     /**
-     * Gets the array of the vehicles parked at the garage
+     * Gets the array of the vehicles parked at the garage. When a spill is set
+     * these are the open visits and the recent closed ones still in memory.
      * 
      * @return An array of the vehicles
      */
     public final Vehicle[] getVehicles() {
-        return vehicles;
+        return Arrays.copyOf(vehicles, vehicleCount);
     }
 
     /**
@@ -169,6 +570,97 @@ public class Receipt {
             throw new IllegalArgumentException("Vehicle array cannot be null");
         } else {
             this.vehicles = vehicles;
+            this.vehicleCount = vehicles.length;
+            vehicleIDIndex.clear();
+            visitsByID.clear();
+            records.clear();
+            for (Vehicle vehicle : vehicles) {
+                vehicleIDIndex.add(vehicle.getVehicleID());
+                addVisit(vehicle);
+            }
+            queueClosed();
+        }
+    }
+
+    /**
+     * queueClosed lines up the closed visits in memory to be spilled, oldest
+     * first, and spills any over the limit
+     */
+    private void queueClosed() throws IllegalStateException {
+        closed.clear();
+        if (spill == null) {
+            return;
+        }
+        for (int i = 0; i < vehicleCount; i++) {
+            if (vehicles[i].getTicket().isPaid()) {
+                closed.add(vehicles[i]);
+            }
+        }
+        if (closed.size() > maxClosed) {
+            spillClosed();
+        }
+    }
+
+    /**
+     * Gets the spill closed visits are written to
+     * 
+     * @return Instance of the ClosedTicketSpill, or null when every visit is kept in memory
+     */
+    public final ClosedTicketSpill getSpill() {
+        return spill;
+    }
+
+    /**
+     * Gets the most closed visits kept in memory when a spill is set
+     * 
+     * @return Integer containing the limit
+     */
+    public final int getMaxClosed() {
+        return maxClosed;
+    }
+
+    /**
+     * Sets the spill closed visits are written to once more than maxClosed of
+     * them are in memory. Closed visits already over the limit are spilled now.
+     * 
+     * @param spill Instance of the ClosedTicketSpill
+     * @param maxClosed Integer containing the most closed visits kept in memory
+     * @throws IllegalArgumentException Spill cannot be null and maxClosed cannot be negative
+     * @throws IllegalStateException Closed visits could not be spilled
+     */
+    public final void setSpill(ClosedTicketSpill spill, int maxClosed) throws IllegalArgumentException, IllegalStateException {
+        if (spill == null || maxClosed < 0) {
+            throw new IllegalArgumentException("Spill cannot be null and maxClosed cannot be negative");
+        } else {
+            this.spill = spill;
+            this.maxClosed = maxClosed;
+            queueClosed();
+        }
+    }
+
+    /**
+     * Gets the business day the receipt is for, which decides whose passes are
+     * still good
+     * 
+     * @return Integer containing the day in yyyyMMdd form
+     */
+    public final int getDay() {
+        return day;
+    }
+
+    /**
+     * Sets the business day the receipt is for. The AutomatedTeller keeps this
+     * the same as its own day, which can differ from the calendar day around
+     * midnight or when a day is restored.
+     * 
+     * @param day Integer containing the day in yyyyMMdd form
+     * @throws IllegalArgumentException Day must be greater than zero
+     */
+    public final void setDay(int day) throws IllegalArgumentException {
+        if (day <= 0) {
+            throw new IllegalArgumentException("Day must be greater than zero");
+        } else {
+            this.day = day;
         }
     }
 
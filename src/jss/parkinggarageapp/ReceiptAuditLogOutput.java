@@ -0,0 +1,105 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.text.*;
+import java.util.*;
+
+/**
+ * ReceiptAuditLogOutput class is used to keep a record of every receipt given out
+ * by adding one line per receipt to the end of an audit log file:
+ * <pre>
+ *   time|garage|vehicleID|ticket|hours|fee
+ *   time|garage|TOTAL|hours|fees
+ * </pre>
+ * Each line is flushed as it is written so the log holds every receipt even if
+ * the program stops.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class ReceiptAuditLogOutput implements ReceiptOutputStrategy, Closeable {
+    private final File logFile;
+    private final Writer out;
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+    /**
+     * Overrides the default constructor requiring the log file to be passed in.
+     * Lines are added to the end of the file when it already exists.
+     *
+     * @param logFile File of the audit log
+     * @throws IOException If the file cannot be opened
+     * @throws IllegalArgumentException File cannot be null
+     */
+    public ReceiptAuditLogOutput(File logFile) throws IOException, IllegalArgumentException {
+        if (logFile == null) {
+            throw new IllegalArgumentException("Log file cannot be null");
+        }
+        this.logFile = logFile;
+        this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile, true), "UTF-8"));
+    }
+
+    /**
+     * displayCarFee adds the vehicle's receipt to the log
+     *
+     * @param receipt An instance of the receipt object being passed in
+     * @param vehicleID A String containing a unique ID referencing a vehicle
+     * @throws IllegalArgumentException Receipt cannot be null, vehicleID has to be 4 characters long
+     * @throws IllegalStateException The line could not be written
+     */
+    @Override
+    public final void displayCarFee(Receipt receipt, String vehicleID) throws IllegalArgumentException, IllegalStateException {
+        if (receipt == null || vehicleID == null || vehicleID.length() != 4) {
+            throw new IllegalArgumentException("Receipt object cannot be null, vehicleID cannot be null, and must contain 4 characters");
+        }
+        write(receipt.getRecord(vehicleID).render(ReceiptTemplate.AUDIT));
+    }
+
+    /**
+     * displayDailyTotal adds the day's totals to the log
+     *
+     * @param receipt An instance of the receipt object being passed in
+     * @param input A list of maps contain the total hours and fees for the day
+     * @throws IllegalArgumentException Receipt and input cannot be null
+     * @throws IllegalStateException The line could not be written
+     */
+    @Override
+    public final void displayDailyTotal(Receipt receipt, List<LinkedHashMap<String, String>> input) throws IllegalArgumentException, IllegalStateException {
+        if (receipt == null || input == null) {
+            throw new IllegalArgumentException("Receipt object cannot be null");
+        }
+        write(receipt.getGarage().getName() + "|TOTAL|" + receipt.getTotalHours(input) + "|"
+                + receipt.getDailyTotal(input));
+    }
+
+    private synchronized void write(String line) throws IllegalStateException {
+        try {
+            out.write(timeFormat.format(new Date()));
+            out.write('|');
+            out.write(line);
+            out.write('\n');
+            out.flush();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not write to " + logFile, ex);
+        }
+    }
+
+    /**
+     * close closes the log file
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    @Override
+    public final synchronized void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Gets the audit log file
+     *
+     * @return File of the log
+     */
+    public final File getLogFile() {
+        return logFile;
+    }
+
+}
@@ -4,12 +4,16 @@ import java.util.*;
 
 /**
  * ReceiptConsoleOutput class is used to display the fee for a car as well as the
- * total dailies for the garage on the console log.
+ * total dailies for the garage on the console log. The lines of a receipt
+ * are ended with the platform line separator, the way println ends the last
+ * one, and the receipt goes out in one print so receipts from tellers on
+ * different threads do not mix.
  * 
  * @author Jamie Studzinski
  * @version 1.2
  */
 public class ReceiptConsoleOutput implements ReceiptOutputStrategy {
+    private static final String LINE_SEPARATOR = System.lineSeparator();
     
     /**
      * displayCarFee is used to display the total fees and hours for a particular car
@@ -24,11 +28,8 @@ public class ReceiptConsoleOutput implements ReceiptOutputStrategy {
         if(receipt == null || vehicleID == null || vehicleID.length() <= 3 || vehicleID.length() >= 5) {
             throw new IllegalArgumentException("Receipt object cannot be null, vehicleID cannot be null, and must contain 4 characters");
         } else {
-            System.out.println("Thanks for using " + receipt.getGarage().getName());
-            System.out.println(receipt.getGarage().getAddress());
-            System.out.println("Receipt for Vehicle #" + vehicleID + " is: $" + receipt.calculateTotalFee(vehicleID) + 
-                    " Hours Parked: " + receipt.getVehiclesParkedHours(vehicleID));
-            System.out.println();
+            String text = receipt.getRecord(vehicleID).render(ReceiptTemplate.TEXT);
+            System.out.print(text.replace("\n", LINE_SEPARATOR) + LINE_SEPARATOR + LINE_SEPARATOR);
         }
         
     }
@@ -2,15 +2,40 @@ package jss.parkinggarageapp;
 
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Queue;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 /**
  * ReceiptGUIOutput class is used to display the fee for a car as well as
  * the total dailies for the garage using a GUI.
  *
+ * One window is made and reused for every receipt, so a receipt costs three
+ * label updates instead of building a new frame. The text is worked out on
+ * the calling thread and queued for the Swing event thread. A receipt that
+ * arrives while the window is idle is shown straight away; one that arrives
+ * while another is on the window waits in the queue, and a Swing timer puts
+ * the next one up every DWELL_MS, so a burst of checkouts is shown one receipt
+ * at a time in the order it arrived instead of only the last one being
+ * painted. Closing the window hides it until the next receipt.
+ *
  * @author Jamie Studzinski
  * @version 1.2
  */
 public class ReceiptGUIOutput extends javax.swing.JFrame implements ReceiptOutputStrategy {
+    private final Queue<String[]> pending = new ConcurrentLinkedQueue<String[]>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Timer dwell;
+
+    /**
+     * How long each receipt stays on the window before the next queued one
+     * replaces it, in milliseconds
+     */
+    public static final int DWELL_MS = 1500;
 
     /**
      * Creates new form OutputWindowGUI
@@ -18,6 +43,14 @@ public class ReceiptGUIOutput extends javax.swing.JFrame implements ReceiptOutpu
     public ReceiptGUIOutput() {
 
         initComponents();
+        dwell = new Timer(DWELL_MS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!showNext()) {
+                    dwell.stop();
+                }
+            }
+        });
     }
 
     /**
@@ -33,7 +66,7 @@ public class ReceiptGUIOutput extends javax.swing.JFrame implements ReceiptOutpu
         lblOutput2 = new javax.swing.JLabel();
         lblOutput3 = new javax.swing.JLabel();
 
-        setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
+        setDefaultCloseOperation(javax.swing.WindowConstants.HIDE_ON_CLOSE);
 
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(getContentPane());
         getContentPane().setLayout(layout);
@@ -81,17 +114,7 @@ public class ReceiptGUIOutput extends javax.swing.JFrame implements ReceiptOutpu
         if (receipt == null || vehicleID == null || vehicleID.length() <= 3 || vehicleID.length() >= 5) {
             throw new IllegalArgumentException("Receipt object cannot be null, vehicleID cannot be null, and must contain 4 characters");
         } else {
-            ReceiptGUIOutput output = new ReceiptGUIOutput();
-
-            output.lblOutput1.setText("Thanks for using " + receipt.getGarage().getName());
-            output.lblOutput2.setText(receipt.getGarage().getAddress());
-            output.lblOutput3.setText("Receipt for Vehicle #" + vehicleID + " is: $"
-                    + receipt.calculateTotalFee(vehicleID)
-                    + " Hours Parked: " + receipt.getVehiclesParkedHours(vehicleID));
-
-            output.setVisible(true);
-
-            output.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+            show(receipt.getRecord(vehicleID).render(ReceiptTemplate.TEXT).split("\n", 3));
         }
     }
 
@@ -108,16 +131,52 @@ public class ReceiptGUIOutput extends javax.swing.JFrame implements ReceiptOutpu
         if (receipt == null) {
             throw new IllegalArgumentException("Receipt object cannot be null");
         } else {
-            ReceiptGUIOutput output = new ReceiptGUIOutput();
-
-            output.lblOutput1.setText("Total amount earned for " + receipt.getGarage().getName());
-            output.lblOutput2.setText("Today is: $" + receipt.getDailyTotal(input));
-            output.lblOutput3.setText("With a total of " + receipt.getTotalHours(input) + " hours.");
+            show("Total amount earned for " + receipt.getGarage().getName(),
+                    "Today is: $" + receipt.getDailyTotal(input),
+                    "With a total of " + receipt.getTotalHours(input) + " hours.");
+        }
+    }
 
-            output.setVisible(true);
+    /**
+     * show queues the three lines for the window. Only the first of several
+     * receipts queued before the event thread runs schedules a task, and that
+     * task shows the oldest receipt and starts the dwell timer if the window
+     * is idle; while the timer runs it shows the rest in turn.
+     */
+    private void show(String... lines) {
+        pending.add(lines);
+        if (drainScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    drainScheduled.set(false);
+                    if (!dwell.isRunning() && showNext()) {
+                        dwell.start();
+                    }
+                }
+            });
+        }
+    }
 
-            output.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    /**
+     * showNext puts the oldest queued receipt on the labels, on the event
+     * thread
+     *
+     * @return A boolean whether there was a receipt to show
+     */
+    private boolean showNext() {
+        String[] lines = pending.poll();
+        if (lines == null) {
+            return false;
+        }
+        lblOutput1.setText(lines[0]);
+        lblOutput2.setText(lines[1]);
+        lblOutput3.setText(lines[2]);
+        if (!isVisible()) {
+            setVisible(true);
         }
+        toFront();
+        return true;
     }
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
@@ -26,10 +26,7 @@ public class ReceiptJOptionOutput implements ReceiptOutputStrategy {
         if (receipt == null || vehicleID == null || vehicleID.length() <= 3 || vehicleID.length() >= 5) {
             throw new IllegalArgumentException("Receipt object cannot be null, vehicleID cannot be null, and must contain 4 characters");
         } else {
-            JOptionPane.showMessageDialog(null, "Thanks for using " + receipt.getGarage().getName()
-                    + "\n" + receipt.getGarage().getAddress() + "\n" + "Receipt for Vehicle #"
-                    + vehicleID + " is: $" + receipt.calculateTotalFee(vehicleID)
-                + " Hours Parked: " + receipt.getVehiclesParkedHours(vehicleID));
+            JOptionPane.showMessageDialog(null, receipt.getRecord(vehicleID).render(ReceiptTemplate.TEXT));
         }
     }
 
@@ -0,0 +1,34 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+
+/**
+ * ReceiptNoOutput class is used when receipts should not be shown at all, such
+ * as when the load tools measure the teller and not the console or screen.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class ReceiptNoOutput implements ReceiptOutputStrategy {
+
+    /**
+     * displayCarFee does nothing
+     *
+     * @param receipt An instance of the receipt object being passed in
+     * @param vehicleID A String containing a unique ID referencing a vehicle
+     */
+    @Override
+    public final void displayCarFee(Receipt receipt, String vehicleID) {
+    }
+
+    /**
+     * displayDailyTotal does nothing
+     *
+     * @param receipt An instance of the receipt object being passed in
+     * @param input A list of maps contain the total hours and fees for the day
+     */
+    @Override
+    public final void displayDailyTotal(Receipt receipt, List<LinkedHashMap<String, String>> input) {
+    }
+
+}
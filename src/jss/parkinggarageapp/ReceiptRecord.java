@@ -0,0 +1,201 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+
+/**
+ * ReceiptRecord class is used to hold what goes on one vehicle's receipt: the
+ * garage, the vehicle and ticket, the hours and the fee as it was charged. The
+ * fee is worked out once at checkout and every output reads it from here
+ * instead of pricing the visit again.
+ *
+ * The receipt is only laid out as text when an output asks for it with a
+ * ReceiptTemplate, and each layout is kept once made, so reprinting a receipt
+ * or sending it to several outputs lays it out once per template.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public final class ReceiptRecord {
+    private final String garageName;
+    private final String address;
+    private final String vehicleID;
+    private final int ticketNumber;
+    private final double hours;
+    private final double fee;
+    private final String calcID;
+    private final double rate;
+    private ReceiptTemplate[] templates = new ReceiptTemplate[0];
+    private String[] rendered = new String[0];
+
+    /**
+     * Overrides the default constructor requiring every part of the receipt to be passed in
+     *
+     * @param garageName String containing the name of the garage
+     * @param address String containing the address of the garage
+     * @param vehicleID String containing a unique ID for the vehicle
+     * @param ticketNumber Integer containing the ticket number
+     * @param hours Double containing the hours parked
+     * @param fee Double containing the fee charged
+     * @param calcID String containing the ID of the fee calculator used
+     * @param rate Double containing the rate the fee was multiplied by, 1 for the standard price
+     * @throws IllegalArgumentException Strings cannot be null, hours and fee cannot be negative and rate must be greater than zero
+     */
+    public ReceiptRecord(String garageName, String address, String vehicleID, int ticketNumber, double hours,
+            double fee, String calcID, double rate) throws IllegalArgumentException {
+        if (garageName == null || address == null || vehicleID == null || calcID == null || hours < 0 || fee < 0
+                || rate <= 0) {
+            throw new IllegalArgumentException("Strings cannot be null, hours and fee cannot be negative and rate must be greater than zero");
+        }
+        this.garageName = garageName;
+        this.address = address;
+        this.vehicleID = vehicleID;
+        this.ticketNumber = ticketNumber;
+        this.hours = hours;
+        this.fee = fee;
+        this.calcID = calcID;
+        this.rate = rate;
+    }
+
+    /**
+     * render gets the receipt laid out with a template, laying it out the first
+     * time the template is asked for
+     *
+     * @param template Instance of the ReceiptTemplate
+     * @return String containing the receipt
+     * @throws IllegalArgumentException Template cannot be null
+     */
+    public final synchronized String render(ReceiptTemplate template) throws IllegalArgumentException {
+        if (template == null) {
+            throw new IllegalArgumentException("Template cannot be null");
+        }
+        for (int i = 0; i < templates.length; i++) {
+            if (templates[i] == template) {
+                return rendered[i];
+            }
+        }
+        String text = template.render(this);
+        int count = templates.length;
+        templates = Arrays.copyOf(templates, count + 1);
+        rendered = Arrays.copyOf(rendered, count + 1);
+        templates[count] = template;
+        rendered[count] = text;
+        return text;
+    }
+
+    /**
+     * Gets the name of the garage
+     *
+     * @return String containing the garage name
+     */
+    public final String getGarageName() {
+        return garageName;
+    }
+
+    /**
+     * Gets the address of the garage
+     *
+     * @return String containing the address
+     */
+    public final String getAddress() {
+        return address;
+    }
+
+    /**
+     * Gets the ID of the vehicle
+     *
+     * @return String containing the vehicle ID
+     */
+    public final String getVehicleID() {
+        return vehicleID;
+    }
+
+    /**
+     * Gets the ticket number of the visit
+     *
+     * @return Integer containing the ticket number
+     */
+    public final int getTicketNumber() {
+        return ticketNumber;
+    }
+
+    /**
+     * Gets the hours the vehicle was parked
+     *
+     * @return Double containing the hours
+     */
+    public final double getHours() {
+        return hours;
+    }
+
+    /**
+     * Gets the fee charged
+     *
+     * @return Double containing the fee
+     */
+    public final double getFee() {
+        return fee;
+    }
+
+    /**
+     * Gets the ID of the fee calculator used
+     *
+     * @return String containing the calculator ID
+     */
+    public final String getCalcID() {
+        return calcID;
+    }
+
+    /**
+     * Gets the rate the fee was multiplied by
+     *
+     * @return Double containing the rate, 1 for the standard price
+     */
+    public final double getRate() {
+        return rate;
+    }
+
+    /**
+     * Overrides the toString method, converts a ReceiptRecord to a string
+     *
+     * @return A string containing the receipt in the text layout
+     */
+    @Override
+    public String toString() {
+        return render(ReceiptTemplate.TEXT);
+    }
+
+    /**
+     * Overrides the equals method, compares two ReceiptRecords based on the
+     * garage, vehicle and ticket number
+     *
+     * @param obj A reference to a ReceiptRecord being passed in to be compared
+     * @return A boolean on whether the objects are equal or not
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final ReceiptRecord other = (ReceiptRecord) obj;
+        return ticketNumber == other.ticketNumber && vehicleID.equals(other.vehicleID)
+                && garageName.equals(other.garageName);
+    }
+
+    /**
+     * Computes a hash code for the garage, vehicle and ticket number
+     *
+     * @return hash for the record
+     */
+    @Override
+    public int hashCode() {
+        int hash = 3;
+        hash = 53 * hash + garageName.hashCode();
+        hash = 53 * hash + vehicleID.hashCode();
+        hash = 53 * hash + ticketNumber;
+        return hash;
+    }
+
+}
@@ -0,0 +1,121 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * ReceiptSpoolOutput class is used to hand receipts to the printer by writing
+ * each one as its own file in the printer's spool folder. A receipt is written
+ * under a temporary name and then renamed, so the printer never picks up a
+ * receipt that is only half written. Receipts are laid out with the text
+ * template unless another, such as the print layout, is given.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class ReceiptSpoolOutput implements ReceiptOutputStrategy {
+    private final File spoolFolder;
+    private final ReceiptTemplate template;
+    private long sequence;
+
+    /**
+     * Overrides the default constructor requiring the spool folder to be passed in.
+     * The folder is made when it does not exist.
+     *
+     * @param spoolFolder File of the folder the printer takes receipts from
+     * @throws IOException If the folder cannot be made
+     * @throws IllegalArgumentException Folder cannot be null
+     */
+    public ReceiptSpoolOutput(File spoolFolder) throws IOException, IllegalArgumentException {
+        this(spoolFolder, ReceiptTemplate.TEXT);
+    }
+
+    /**
+     * Overrides the default constructor requiring the spool folder and the
+     * layout of the receipts to be passed in. The folder is made when it does
+     * not exist.
+     *
+     * @param spoolFolder File of the folder the printer takes receipts from
+     * @param template Instance of the ReceiptTemplate receipts are laid out with
+     * @throws IOException If the folder cannot be made
+     * @throws IllegalArgumentException Folder and template cannot be null
+     */
+    public ReceiptSpoolOutput(File spoolFolder, ReceiptTemplate template) throws IOException, IllegalArgumentException {
+        if (spoolFolder == null || template == null) {
+            throw new IllegalArgumentException("Spool folder and template cannot be null");
+        }
+        if (!spoolFolder.isDirectory() && !spoolFolder.mkdirs()) {
+            throw new IOException("Could not make spool folder " + spoolFolder);
+        }
+        this.spoolFolder = spoolFolder;
+        this.template = template;
+    }
+
+    /**
+     * displayCarFee writes the vehicle's receipt to a new file in the spool folder
+     *
+     * @param receipt An instance of the receipt object being passed in
+     * @param vehicleID A String containing a unique ID referencing a vehicle
+     * @throws IllegalArgumentException Receipt cannot be null, vehicleID has to be 4 characters long
+     * @throws IllegalStateException The receipt could not be written
+     */
+    @Override
+    public final void displayCarFee(Receipt receipt, String vehicleID) throws IllegalArgumentException, IllegalStateException {
+        if (receipt == null || vehicleID == null || vehicleID.length() != 4) {
+            throw new IllegalArgumentException("Receipt object cannot be null, vehicleID cannot be null, and must contain 4 characters");
+        }
+        spool("receipt-" + vehicleID, receipt.getRecord(vehicleID).render(template) + "\n");
+    }
+
+    /**
+     * displayDailyTotal writes the day's totals to a new file in the spool folder
+     *
+     * @param receipt An instance of the receipt object being passed in
+     * @param input A list of maps contain the total hours and fees for the day
+     * @throws IllegalArgumentException Receipt and input cannot be null
+     * @throws IllegalStateException The totals could not be written
+     */
+    @Override
+    public final void displayDailyTotal(Receipt receipt, List<LinkedHashMap<String, String>> input) throws IllegalArgumentException, IllegalStateException {
+        if (receipt == null || input == null) {
+            throw new IllegalArgumentException("Receipt object cannot be null");
+        }
+        spool("total", "Total amount earned for " + receipt.getGarage().getName() + " today is: $"
+                + receipt.getDailyTotal(input) + ", with a total of " + receipt.getTotalHours(input) + " hours.\n");
+    }
+
+    private synchronized void spool(String name, String text) throws IllegalStateException {
+        String fileName = String.format("%d-%06d-%s", System.currentTimeMillis(), ++sequence, name);
+        File temp = new File(spoolFolder, fileName + ".tmp");
+        try {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8")) {
+                out.write(text);
+            }
+            if (!temp.renameTo(new File(spoolFolder, fileName + ".txt"))) {
+                throw new IOException("Could not rename " + temp);
+            }
+        } catch (IOException ex) {
+            temp.delete();
+            throw new IllegalStateException("Could not spool " + fileName, ex);
+        }
+    }
+
+    /**
+     * Gets the folder the printer takes receipts from
+     *
+     * @return File of the spool folder
+     */
+    public final File getSpoolFolder() {
+        return spoolFolder;
+    }
+
+    /**
+     * Gets the layout receipts are written with
+     *
+     * @return Instance of the ReceiptTemplate
+     */
+    public final ReceiptTemplate getTemplate() {
+        return template;
+    }
+
+}
@@ -0,0 +1,250 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+
+/**
+ * ReceiptTemplate class is used to lay out a ReceiptRecord as text. A template
+ * is written once with fields in braces, such as
+ * <pre>
+ *   Receipt for Vehicle #{vehicle} is: ${fee} Hours Parked: {hours}
+ * </pre>
+ * and is split into its fixed text and fields when it is made, so rendering a
+ * receipt only appends the pieces in order. Fees, hours and rates are written
+ * the way Double.toString writes them, without making a string for each.
+ *
+ * The fields are garage, address, vehicle, ticket, hours, fee, calc and rate.
+ * An HTML template escapes the fields it fills in.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public final class ReceiptTemplate {
+    private static final String[] FIELD_NAMES = {"garage", "address", "vehicle", "ticket", "hours", "fee", "calc", "rate"};
+    private static final int GARAGE = 0;
+    private static final int ADDRESS = 1;
+    private static final int VEHICLE = 2;
+    private static final int TICKET = 3;
+    private static final int HOURS = 4;
+    private static final int FEE = 5;
+    private static final int CALC = 6;
+
+    /**
+     * Layout shown on the console, the screen and in message boxes
+     */
+    public static final ReceiptTemplate TEXT = new ReceiptTemplate("text",
+            "Thanks for using {garage}\n{address}\nReceipt for Vehicle #{vehicle} is: ${fee} Hours Parked: {hours}", false);
+
+    /**
+     * Layout for showing a receipt in a web page or an HTML label
+     */
+    public static final ReceiptTemplate HTML = new ReceiptTemplate("html",
+            "<html><body><p>Thanks for using {garage}<br>{address}</p>"
+            + "<p>Receipt for Vehicle #{vehicle} is: ${fee} Hours Parked: {hours}</p></body></html>", true);
+
+    /**
+     * Layout for the receipt printer, one item to a line
+     */
+    public static final ReceiptTemplate PRINT = new ReceiptTemplate("print",
+            "{garage}\n{address}\n\nTicket: {ticket}\nVehicle: {vehicle}\nHours Parked: {hours}\nAmount Paid: ${fee}\n", false);
+
+    /**
+     * Layout of a line in the audit log
+     */
+    public static final ReceiptTemplate AUDIT = new ReceiptTemplate("audit",
+            "{garage}|{vehicle}|{ticket}|{hours}|{fee}", false);
+
+    private final String name;
+    private final String pattern;
+    private final boolean html;
+    private final String[] text;
+    private final int[] fields;
+    private final int sizeHint;
+
+    /**
+     * Overrides the default constructor requiring the name, pattern and whether
+     * the template is HTML to be passed in
+     *
+     * @param name String containing the name of the template
+     * @param pattern String containing the layout with fields in braces
+     * @param html A boolean whether the fields are escaped for HTML
+     * @throws IllegalArgumentException Name and pattern cannot be null, braces must be closed and name a field
+     */
+    public ReceiptTemplate(String name, String pattern, boolean html) throws IllegalArgumentException {
+        if (name == null || pattern == null) {
+            throw new IllegalArgumentException("Name and pattern cannot be null");
+        }
+        List<String> textList = new ArrayList<String>();
+        List<Integer> fieldList = new ArrayList<Integer>();
+        int start = 0;
+        int open = pattern.indexOf('{');
+        while (open >= 0) {
+            int close = pattern.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Field is not closed at " + open + " in " + name);
+            }
+            int field = Arrays.asList(FIELD_NAMES).indexOf(pattern.substring(open + 1, close));
+            if (field < 0) {
+                throw new IllegalArgumentException("Unknown field " + pattern.substring(open, close + 1) + " in " + name);
+            }
+            textList.add(pattern.substring(start, open));
+            fieldList.add(field);
+            start = close + 1;
+            open = pattern.indexOf('{', start);
+        }
+        textList.add(pattern.substring(start));
+
+        this.name = name;
+        this.pattern = pattern;
+        this.html = html;
+        this.text = textList.toArray(new String[textList.size()]);
+        this.fields = new int[fieldList.size()];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = fieldList.get(i);
+        }
+        this.sizeHint = pattern.length() + fields.length * 12;
+    }
+
+    /**
+     * render lays out the record with this template
+     *
+     * @param record Instance of the ReceiptRecord
+     * @return String containing the receipt
+     * @throws IllegalArgumentException Record cannot be null
+     */
+    public final String render(ReceiptRecord record) throws IllegalArgumentException {
+        StringBuilder out = new StringBuilder(sizeHint);
+        appendTo(out, record);
+        return out.toString();
+    }
+
+    /**
+     * appendTo lays out the record with this template at the end of a builder,
+     * for outputs that keep one builder for every receipt
+     *
+     * @param out StringBuilder the receipt is added to
+     * @param record Instance of the ReceiptRecord
+     * @throws IllegalArgumentException Builder and record cannot be null
+     */
+    public final void appendTo(StringBuilder out, ReceiptRecord record) throws IllegalArgumentException {
+        if (out == null || record == null) {
+            throw new IllegalArgumentException("Builder and record cannot be null");
+        }
+        for (int i = 0; i < fields.length; i++) {
+            out.append(text[i]);
+            switch (fields[i]) {
+                case GARAGE:
+                    appendText(out, record.getGarageName());
+                    break;
+                case ADDRESS:
+                    appendText(out, record.getAddress());
+                    break;
+                case VEHICLE:
+                    appendText(out, record.getVehicleID());
+                    break;
+                case TICKET:
+                    out.append(record.getTicketNumber());
+                    break;
+                case HOURS:
+                    appendNumber(out, record.getHours());
+                    break;
+                case FEE:
+                    appendNumber(out, record.getFee());
+                    break;
+                case CALC:
+                    appendText(out, record.getCalcID());
+                    break;
+                default:
+                    appendNumber(out, record.getRate());
+            }
+        }
+        out.append(text[fields.length]);
+    }
+
+    private void appendText(StringBuilder out, String value) {
+        if (!html) {
+            out.append(value);
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '"':
+                    out.append("&quot;");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+
+    /**
+     * appendNumber writes a number the way Double.toString writes it. Numbers that
+     * are a whole count of hundredths, which is nearly every fee and hour, are
+     * written from that count without making a string; anything else goes through
+     * Double.toString.
+     */
+    static void appendNumber(StringBuilder text, double value) {
+        long hundredths = Math.round(value * 100);
+        if (value < .001 || value >= 1e7 || hundredths / 100.0 != value) {
+            text.append(value);
+            return;
+        }
+        text.append(hundredths / 100).append('.');
+        int fraction = (int) (hundredths % 100);
+        if (fraction == 0) {
+            text.append('0');
+        } else {
+            text.append((char) ('0' + fraction / 10));
+            if (fraction % 10 != 0) {
+                text.append((char) ('0' + fraction % 10));
+            }
+        }
+    }
+
+    /**
+     * Gets the name of the template
+     *
+     * @return String containing the name
+     */
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the layout the template was made from
+     *
+     * @return String containing the layout with fields in braces
+     */
+    public final String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Gets whether the fields are escaped for HTML
+     *
+     * @return A boolean whether the template is HTML
+     */
+    public final boolean isHtml() {
+        return html;
+    }
+
+    /**
+     * Overrides the toString method, converts a ReceiptTemplate to a string
+     *
+     * @return A string containing the name of the template
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
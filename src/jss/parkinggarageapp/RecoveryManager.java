@@ -0,0 +1,140 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * RecoveryManager class is used to restart a garage quickly after a crash. It
+ * saves a RecoverySnapshot of the teller next to the day's segment every so often,
+ * and on startup loads the latest snapshot and replays only the transactions
+ * appended to the segment after it, so restart time depends on the snapshot
+ * period and not on how much history there is.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class RecoveryManager {
+    private DailySegmentStore store;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Overrides the default constructor requiring the segment store holding the
+     * day's journal to be passed in
+     *
+     * @param store Instance of the DailySegmentStore
+     * @throws IllegalArgumentException Store cannot be null
+     */
+    public RecoveryManager(DailySegmentStore store) throws IllegalArgumentException {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        this.store = store;
+    }
+
+    /**
+     * snapshot saves the teller's running state, writing a temporary file first and
+     * moving it over the old snapshot so a crash never leaves half a snapshot
+     *
+     * @param atm Instance of the AutomatedTeller to save
+     * @throws IOException If the snapshot cannot be written
+     */
+    public final void snapshot(AutomatedTeller atm) throws IOException {
+        RecoverySnapshot snapshot = atm.createSnapshot();
+        File file = getSnapshotFile(snapshot.getGarageName(), snapshot.getDay());
+        File folder = file.getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Cannot create folder " + folder);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            snapshot.write(out);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * recover restores the teller's day from its latest snapshot and the check-ins
+     * and segment after it, or from the whole day when there is no snapshot yet
+     *
+     * @param atm Instance of the AutomatedTeller to restore
+     * @return Integer containing the number of check-ins and transactions replayed from the journal
+     * @throws IOException If the snapshot or segment cannot be read
+     */
+    public final int recover(AutomatedTeller atm) throws IOException {
+        String garageName = atm.getGarage().getName();
+        int day = atm.getDay();
+        RecoverySnapshot snapshot = null;
+
+        File file = getSnapshotFile(garageName, day);
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                snapshot = RecoverySnapshot.read(in);
+            }
+        }
+        long offset = snapshot == null ? 0 : snapshot.getJournalOffset();
+        List<Vehicle> checkIns = store.readCheckIns(garageName, day, snapshot == null ? 0 : snapshot.getCheckInOffset());
+        List<Transaction> tail = store.read(garageName, day, offset);
+        atm.restore(snapshot, checkIns, tail);
+        return checkIns.size() + tail.size();
+    }
+
+    /**
+     * startPeriodicSnapshots saves a snapshot of the teller on a background thread
+     * every period until stop is called. A failed snapshot is reported and the
+     * next one is still taken.
+     *
+     * @param atm Instance of the AutomatedTeller to save
+     * @param periodSeconds Seconds between snapshots
+     * @throws IllegalArgumentException ATM cannot be null and period must be greater than zero
+     */
+    public final synchronized void startPeriodicSnapshots(final AutomatedTeller atm, long periodSeconds)
+            throws IllegalArgumentException {
+        if (atm == null || periodSeconds <= 0) {
+            throw new IllegalArgumentException("ATM cannot be null and period must be greater than zero");
+        }
+        stop();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "recovery-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    snapshot(atm);
+                } catch (IOException | IllegalStateException ex) {
+                    System.out.println("Error writing snapshot");
+                }
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * stop ends the periodic snapshots
+     */
+    public final synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * getSnapshotFile gets the file a garage's snapshot for the day is kept in,
+     * next to the day's segment
+     *
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @return The snapshot file, which may not exist
+     */
+    public final File getSnapshotFile(String garageName, int day) {
+        return new File(store.getFolder(garageName), day + ".snap");
+    }
+
+}
@@ -0,0 +1,262 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * RecoverySnapshot class is used to hold the running state of a garage's day at
+ * one moment: the day's totals, the vehicles on the receipt, the last ticket
+ * number issued, how many closed visits had been spilled and how far into the
+ * day's segment and check-in file the state reaches. Loading a snapshot and
+ * replaying only the check-ins and segment after those points gives the same
+ * state as replaying the whole day.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class RecoverySnapshot {
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 7;
+
+    private String garageName;
+    private int day;
+    private int lastTicketNum;
+    private long journalOffset;
+    private long checkInOffset;
+    private int spilledVisits;
+    private TransactionSummary summary;
+    private Vehicle[] vehicles;
+
+    /**
+     * Overrides the default constructor requiring every part of the state to be passed in
+     *
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @param lastTicketNum Integer containing the last ticket number issued
+     * @param journalOffset Long containing the length of the day's segment the state covers
+     * @param summary Instance of the TransactionSummary with the day's totals
+     * @param vehicles Array of the vehicles on the receipt
+     * @throws IllegalArgumentException Garage name, summary and vehicles cannot be null
+     */
+    public RecoverySnapshot(String garageName, int day, int lastTicketNum, long journalOffset,
+            TransactionSummary summary, Vehicle[] vehicles) throws IllegalArgumentException {
+        this(garageName, day, lastTicketNum, journalOffset, 0, 0, summary, vehicles);
+    }
+
+    /**
+     * Overrides the default constructor requiring every part of the state, along
+     * with the length of the check-in file and the number of closed visits
+     * spilled, to be passed in
+     *
+     * @param garageName String containing the garage name
+     * @param day Integer containing the day in yyyyMMdd form
+     * @param lastTicketNum Integer containing the last ticket number issued
+     * @param journalOffset Long containing the length of the day's segment the state covers
+     * @param checkInOffset Long containing the length of the day's check-in file the state covers
+     * @param spilledVisits Integer containing the number of closed visits in the receipt's spill
+     * @param summary Instance of the TransactionSummary with the day's totals
+     * @param vehicles Array of the vehicles on the receipt
+     * @throws IllegalArgumentException Garage name, summary and vehicles cannot be null
+     */
+    public RecoverySnapshot(String garageName, int day, int lastTicketNum, long journalOffset, long checkInOffset,
+            int spilledVisits, TransactionSummary summary, Vehicle[] vehicles) throws IllegalArgumentException {
+        if (garageName == null || summary == null || vehicles == null || journalOffset < 0 || checkInOffset < 0
+                || spilledVisits < 0) {
+            throw new IllegalArgumentException("Garage name, summary and vehicles cannot be null");
+        }
+        this.checkInOffset = checkInOffset;
+        this.spilledVisits = spilledVisits;
+        this.garageName = garageName;
+        this.day = day;
+        this.lastTicketNum = lastTicketNum;
+        this.journalOffset = journalOffset;
+        this.summary = summary;
+        this.vehicles = vehicles;
+    }
+
+    /**
+     * write saves the snapshot in a compact binary form
+     *
+     * @param out Stream the snapshot is written to
+     * @throws IOException If the stream cannot be written
+     */
+    public final void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(garageName);
+        out.writeInt(day);
+        out.writeInt(lastTicketNum);
+        out.writeLong(journalOffset);
+        out.writeInt(spilledVisits);
+        out.writeLong(checkInOffset);
+
+        Set<String> calcIDs = summary.getCalcIDs();
+        out.writeInt(calcIDs.size());
+        for (String calcID : calcIDs) {
+            out.writeUTF(calcID);
+            out.writeLong(summary.getCount(calcID));
+            out.writeLong(TransactionHistory.toCents(summary.getRevenue(calcID)));
+            out.writeLong(TransactionHistory.toHundredths(summary.getTotalHours(calcID)));
+        }
+
+        out.writeInt(vehicles.length);
+        for (Vehicle vehicle : vehicles) {
+            out.writeUTF(vehicle.getVehicleID());
+            out.writeInt(vehicle.getTicket().getTicketNumber());
+            out.writeDouble(vehicle.getTicket().getHours());
+            out.writeBoolean(vehicle.getTicket().isPaid());
+            out.writeDouble(vehicle.getTicket().getFeePaid());
+            out.writeUTF(vehicle.getTicket().getCalcID() == null ? "" : vehicle.getTicket().getCalcID());
+            out.writeDouble(vehicle.getTicket().getRate());
+            out.writeInt(vehicle.getTicket().getSpot());
+            out.writeInt(vehicle.getTicket().getLevel());
+            out.writeInt(vehicle.getTicket().getReservationID());
+        }
+    }
+
+    /**
+     * read loads a snapshot saved by write. Only the current version is read:
+     * an older snapshot has no check-in offset, and replaying the check-in file
+     * from the start on top of its vehicles would park them twice, so it is
+     * refused and the day has to be recovered without it.
+     *
+     * @param in Stream the snapshot is read from
+     * @return Instance of the RecoverySnapshot
+     * @throws IOException If the stream cannot be read, is not a snapshot or is
+     * from another version
+     */
+    public static RecoverySnapshot read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a recovery snapshot");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported recovery snapshot version " + version + ", expected " + VERSION);
+        }
+        String garageName = in.readUTF();
+        int day = in.readInt();
+        int lastTicketNum = in.readInt();
+        long journalOffset = in.readLong();
+        int spilledVisits = in.readInt();
+        long checkInOffset = in.readLong();
+
+        TransactionSummary summary = new TransactionSummary();
+        int calcs = in.readInt();
+        for (int i = 0; i < calcs; i++) {
+            summary.add(in.readUTF(), in.readLong(), in.readLong(), in.readLong());
+        }
+
+        Vehicle[] vehicles = new Vehicle[in.readInt()];
+        for (int i = 0; i < vehicles.length; i++) {
+            String vehicleID = in.readUTF();
+            int ticketNum = in.readInt();
+            ParkingTicket ticket = new ParkingTicket(in.readDouble(), ticketNum);
+            boolean paid = in.readBoolean();
+            double feePaid = in.readDouble();
+            String calcID = in.readUTF();
+            double rate = in.readDouble();
+            if (paid) {
+                ticket.pay(feePaid, calcID.isEmpty() ? null : calcID, rate);
+            }
+            int spot = in.readInt();
+            int level = in.readInt();
+            if (spot >= 0) {
+                ticket.setSpot(spot);
+            }
+            if (level >= 0) {
+                ticket.setLevel(level);
+            }
+            int reservationID = in.readInt();
+            if (reservationID > 0) {
+                ticket.setReservationID(reservationID);
+            }
+            vehicles[i] = new Vehicle(ticket, vehicleID);
+        }
+        return new RecoverySnapshot(garageName, day, lastTicketNum, journalOffset, checkInOffset, spilledVisits,
+                summary, vehicles);
+    }
+
+    /**
+     * Gets the name of the garage
+     *
+     * @return String containing the garage name
+     */
+    public final String getGarageName() {
+        return garageName;
+    }
+
+    /**
+     * Gets the day the snapshot is for
+     *
+     * @return Integer containing the day in yyyyMMdd form
+     */
+    public final int getDay() {
+        return day;
+    }
+
+    /**
+     * Gets the last ticket number issued
+     *
+     * @return Integer containing the ticket number
+     */
+    public final int getLastTicketNum() {
+        return lastTicketNum;
+    }
+
+    /**
+     * Gets the length of the day's segment the snapshot covers
+     *
+     * @return Long containing the offset in bytes
+     */
+    public final long getJournalOffset() {
+        return journalOffset;
+    }
+
+    /**
+     * Gets the length of the day's check-in file the snapshot covers
+     *
+     * @return Long containing the offset in bytes
+     */
+    public final long getCheckInOffset() {
+        return checkInOffset;
+    }
+
+    /**
+     * Gets the number of closed visits in the receipt's spill
+     *
+     * @return Integer containing the number of visits spilled
+     */
+    public final int getSpilledVisits() {
+        return spilledVisits;
+    }
+
+    /**
+     * Gets the day's totals
+     *
+     * @return Instance of the TransactionSummary
+     */
+    public final TransactionSummary getSummary() {
+        return summary;
+    }
+
+    /**
+     * Gets the vehicles on the receipt
+     *
+     * @return Array of vehicles
+     */
+    public final Vehicle[] getVehicles() {
+        return vehicles;
+    }
+
+    /**
+     * Overrides the toString method, converts a RecoverySnapshot to a string
+     *
+     * @return A string containing the garage, day, offset and vehicle count
+     */
+    @Override
+    public String toString() {
+        return "Snapshot for " + garageName + " " + day + " at " + journalOffset + " with "
+                + vehicles.length + " vehicles";
+    }
+
+}
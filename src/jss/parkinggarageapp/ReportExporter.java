@@ -0,0 +1,210 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+
+/**
+ * ReportExporter class is used to write daily or monthly revenue reports as CSV
+ * or JSON while reading the history through a TransactionCursor. Transactions
+ * are totalled into one TransactionSummary for the garage and period being read,
+ * and its row is written as soon as the next garage or period starts, so memory
+ * use stays the same however much history is exported. The cursor must return
+ * each garage's transactions in day order, which both a DailySegmentStore and a
+ * history file appended to day by day do.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class ReportExporter {
+
+    /**
+     * ReportPeriod lists the lengths of time a report row can cover
+     */
+    public enum ReportPeriod {
+        DAILY, MONTHLY
+    }
+
+    /**
+     * ReportFormat lists the formats a report can be written in
+     */
+    public enum ReportFormat {
+        CSV, JSON
+    }
+
+    private ReportPeriod period;
+    private ReportFormat format;
+
+    /**
+     * Overrides the default constructor requiring the period and format to be passed in
+     *
+     * @param period Length of time each row covers
+     * @param format Format the report is written in
+     */
+    public ReportExporter(ReportPeriod period, ReportFormat format) {
+        setPeriod(period);
+        setFormat(format);
+    }
+
+    /**
+     * export reads every transaction from the cursor and writes one row per garage
+     * per period
+     *
+     * @param cursor Instance of the TransactionCursor to read
+     * @param out Writer the report is written to, flushed but not closed
+     * @return Integer containing the number of rows written
+     * @throws IOException If the cursor cannot be read or the report cannot be written
+     * @throws IllegalArgumentException Cursor and writer cannot be null
+     */
+    public final int export(TransactionCursor cursor, Writer out) throws IOException, IllegalArgumentException {
+        if (cursor == null || out == null) {
+            throw new IllegalArgumentException("Cursor and writer cannot be null");
+        }
+        if (format == ReportFormat.CSV) {
+            out.write("garage,period,transactions,revenue,hours\n");
+        } else {
+            out.write("[");
+        }
+
+        int rows = 0;
+        String garageName = null;
+        int periodKey = 0;
+        TransactionSummary summary = new TransactionSummary();
+        Transaction transaction;
+        while ((transaction = cursor.next()) != null) {
+            int key = period == ReportPeriod.DAILY ? transaction.getDay() : transaction.getDay() / 100;
+            if (garageName != null && (key != periodKey || !garageName.equals(transaction.getGarageName()))) {
+                writeRow(out, rows++, garageName, periodKey, summary);
+                summary = new TransactionSummary();
+            }
+            garageName = transaction.getGarageName();
+            periodKey = key;
+            summary.add(transaction.getCalcID(), TransactionHistory.toCents(transaction.getFees()),
+                    TransactionHistory.toHundredths(transaction.getHours()));
+        }
+        if (garageName != null) {
+            writeRow(out, rows++, garageName, periodKey, summary);
+        }
+
+        if (format == ReportFormat.JSON) {
+            out.write(rows == 0 ? "]\n" : "\n]\n");
+        }
+        out.flush();
+        return rows;
+    }
+
+    /**
+     * writeRow writes the totals of one garage's period
+     */
+    private void writeRow(Writer out, int row, String garageName, int periodKey, TransactionSummary summary)
+            throws IOException {
+        String label = period == ReportPeriod.DAILY
+                ? String.format("%04d-%02d-%02d", periodKey / 10000, periodKey / 100 % 100, periodKey % 100)
+                : String.format("%04d-%02d", periodKey / 100, periodKey % 100);
+        String revenue = String.format("%.2f", summary.getRevenue());
+        String hours = String.format("%.2f", summary.getTotalHours());
+
+        if (format == ReportFormat.CSV) {
+            out.write(csv(garageName) + "," + label + "," + summary.getCount() + "," + revenue + "," + hours + "\n");
+        } else {
+            out.write((row == 0 ? "\n" : ",\n") + "  {\"garage\": " + json(garageName) + ", \"period\": \"" + label
+                    + "\", \"transactions\": " + summary.getCount() + ", \"revenue\": " + revenue
+                    + ", \"hours\": " + hours + "}");
+        }
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String json(String value) {
+        StringBuilder text = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\').append(c);
+            } else if (c < 0x20) {
+                text.append(String.format("\\u%04x", (int) c));
+            } else {
+                text.append(c);
+            }
+        }
+        return text.append('"').toString();
+    }
+
+    /**
+     * Gets the length of time each row covers
+     *
+     * @return DAILY or MONTHLY
+     */
+    public final ReportPeriod getPeriod() {
+        return period;
+    }
+
+    /**
+     * Sets the length of time each row covers
+     *
+     * @param period DAILY or MONTHLY
+     * @throws IllegalArgumentException Period cannot be null
+     */
+    public final void setPeriod(ReportPeriod period) throws IllegalArgumentException {
+        if (period == null) {
+            throw new IllegalArgumentException("Period cannot be null");
+        }
+        this.period = period;
+    }
+
+    /**
+     * Gets the format the report is written in
+     *
+     * @return CSV or JSON
+     */
+    public final ReportFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the format the report is written in
+     *
+     * @param format CSV or JSON
+     * @throws IllegalArgumentException Format cannot be null
+     */
+    public final void setFormat(ReportFormat format) throws IllegalArgumentException {
+        if (format == null) {
+            throw new IllegalArgumentException("Format cannot be null");
+        }
+        this.format = format;
+    }
+
+    /**
+     * Writes a report to standard out from a segment store folder or from a
+     * history file written with the TransactionFileFormat.
+     *
+     * Usage: ReportExporter storeFolder|history.txt daily|monthly csv|json [fromDay toDay [garage]]
+     *
+     * @param args Source, period, format and for a store an optional range and garage
+     * @throws IOException If the history cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        File source = new File(args[0]);
+        ReportExporter exporter = new ReportExporter(ReportPeriod.valueOf(args[1].toUpperCase()),
+                ReportFormat.valueOf(args[2].toUpperCase()));
+
+        TransactionCursor cursor;
+        if (source.isDirectory()) {
+            int fromDay = args.length > 4 ? Integer.parseInt(args[3]) : 0;
+            int toDay = args.length > 4 ? Integer.parseInt(args[4]) : Integer.MAX_VALUE;
+            String garageName = args.length > 5 ? args[5] : null;
+            cursor = new TransactionCursor(new DailySegmentStore(source), garageName, fromDay, toDay);
+        } else {
+            cursor = new TransactionCursor(source);
+        }
+        try {
+            exporter.export(cursor, new BufferedWriter(new OutputStreamWriter(System.out), 65536));
+        } finally {
+            cursor.close();
+        }
+    }
+
+}
@@ -0,0 +1,502 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * ReservationCalendar class is used to sell pre-booked spots in one garage and
+ * match each booking to its vehicle at the gate. Time is split into slots of a
+ * few minutes from the start of the calendar, and a segment tree over the slots
+ * holds how many spots are booked in each, so both "how many spots are free from
+ * 7am to 6pm on Friday" and booking a range take time in proportion to the log
+ * of the number of slots instead of a look at every booking. Bookings are also
+ * kept by vehicle ID so check-in finds a vehicle's booking without a search.
+ *
+ * Bookings live longer than a day, so the calendar keeps its own journal
+ * rather than riding on the teller's daily segments. Once openJournal is
+ * called every booking, cancellation and check-in is written to the journal
+ * before it changes the calendar, one line each:
+ * <pre>
+ *   B|reservationID|vehicleID|fromMillis|toMillis    a booking
+ *   X|reservationID                                  a cancellation
+ *   I|reservationID                                  a check-in
+ *   U|reservationID                                  a check-in taken back
+ * </pre>
+ * and opening the journal again after a restart replays it, so the same
+ * reservation IDs resolve to the same bookings and a booking already used
+ * at the gate is not matched again.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class ReservationCalendar implements Closeable {
+    private final String garageName;
+    private final int spots;
+    private final long startMillis;
+    private final long slotMillis;
+    private final int slots;
+    private final int[] booked;
+    private final int[] pending;
+    private final Map<Integer, Reservation> reservations = new HashMap<Integer, Reservation>();
+    private final Map<String, List<Reservation>> byVehicle = new HashMap<String, List<Reservation>>();
+    private int lastReservationID;
+    private long earlyArrivalMillis = 30 * 60 * 1000L;
+    private File journalFile;
+    private Writer journal;
+
+    /**
+     * Reservation class holds one booking of a spot
+     */
+    public static class Reservation {
+        private final int reservationID;
+        private final String vehicleID;
+        private final long fromMillis;
+        private final long toMillis;
+        private boolean checkedIn;
+
+        private Reservation(int reservationID, String vehicleID, long fromMillis, long toMillis) {
+            this.reservationID = reservationID;
+            this.vehicleID = vehicleID;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+        }
+
+        /**
+         * Gets the number of the booking
+         *
+         * @return Integer containing the reservation ID
+         */
+        public final int getReservationID() {
+            return reservationID;
+        }
+
+        /**
+         * Gets the vehicle the spot is booked for
+         *
+         * @return String containing the vehicle ID
+         */
+        public final String getVehicleID() {
+            return vehicleID;
+        }
+
+        /**
+         * Gets the start of the booking
+         *
+         * @return Long containing the time in milliseconds
+         */
+        public final long getFromMillis() {
+            return fromMillis;
+        }
+
+        /**
+         * Gets the end of the booking
+         *
+         * @return Long containing the time in milliseconds
+         */
+        public final long getToMillis() {
+            return toMillis;
+        }
+
+        /**
+         * Checks if the vehicle has arrived for the booking
+         *
+         * @return A boolean whether the booking has been matched at the gate
+         */
+        public final boolean isCheckedIn() {
+            return checkedIn;
+        }
+
+        /**
+         * Overrides the toString method, converts a Reservation to a string
+         *
+         * @return A string containing the reservation ID, vehicle and times
+         */
+        @Override
+        public String toString() {
+            return "Reservation " + reservationID + " for " + vehicleID + " from " + new Date(fromMillis) + " to "
+                    + new Date(toMillis) + (checkedIn ? " checked in" : "");
+        }
+    }
+
+    /**
+     * Overrides the default constructor requiring the garage, the number of spots
+     * that can be booked and the time the calendar covers to be passed in
+     *
+     * @param garageName String containing the garage name
+     * @param spots Integer containing the spots that can be booked at once
+     * @param startMillis Long containing the time the calendar starts in milliseconds
+     * @param days Integer containing the number of days the calendar covers
+     * @param slotMinutes Integer containing the length of a slot, the smallest unit a booking is rounded out to
+     * @throws IllegalArgumentException Name cannot be null, spots cannot be below zero and days and slot length must be greater than zero
+     */
+    public ReservationCalendar(String garageName, int spots, long startMillis, int days, int slotMinutes)
+            throws IllegalArgumentException {
+        if (garageName == null || spots < 0 || days <= 0 || slotMinutes <= 0 || (24 * 60) % slotMinutes != 0) {
+            throw new IllegalArgumentException("Name cannot be null, spots cannot be below zero and days and slot"
+                    + " length must be greater than zero and divide a day");
+        }
+        this.garageName = garageName;
+        this.spots = spots;
+        this.startMillis = startMillis;
+        this.slotMillis = slotMinutes * 60 * 1000L;
+        this.slots = days * (24 * 60 / slotMinutes);
+        this.booked = new int[4 * slots];
+        this.pending = new int[4 * slots];
+    }
+
+    /**
+     * getFreeSpots gets how many spots can still be booked for the whole of a time range
+     *
+     * @param fromMillis Long containing the start of the range in milliseconds
+     * @param toMillis Long containing the end of the range in milliseconds
+     * @return Integer containing the spots free in every slot of the range
+     * @throws IllegalArgumentException Range must be inside the calendar and end after it starts
+     */
+    public final synchronized int getFreeSpots(long fromMillis, long toMillis) throws IllegalArgumentException {
+        int[] range = toSlots(fromMillis, toMillis);
+        return spots - max(1, 0, slots - 1, range[0], range[1]);
+    }
+
+    /**
+     * book reserves a spot for a vehicle if one is free for the whole time range
+     *
+     * @param vehicleID String containing the vehicle ID
+     * @param fromMillis Long containing the start of the booking in milliseconds
+     * @param toMillis Long containing the end of the booking in milliseconds
+     * @return Instance of the Reservation, or null when no spot is free for the whole range
+     * @throws IllegalArgumentException Vehicle ID must be 4 characters and the range must be inside the calendar
+     */
+    public final synchronized Reservation book(String vehicleID, long fromMillis, long toMillis)
+            throws IllegalArgumentException {
+        if (vehicleID == null || vehicleID.length() != 4) {
+            throw new IllegalArgumentException("Improper vehicle ID");
+        }
+        int[] range = toSlots(fromMillis, toMillis);
+        if (max(1, 0, slots - 1, range[0], range[1]) >= spots) {
+            return null;
+        }
+        Reservation reservation = new Reservation(lastReservationID + 1, vehicleID, fromMillis, toMillis);
+        log("B|" + reservation.reservationID + "|" + vehicleID + "|" + fromMillis + "|" + toMillis);
+        put(reservation, range);
+        return reservation;
+    }
+
+    /**
+     * put adds a booking whose slots have been checked to the tree and the maps
+     */
+    private void put(Reservation reservation, int[] range) {
+        add(1, 0, slots - 1, range[0], range[1], 1);
+        lastReservationID = Math.max(lastReservationID, reservation.reservationID);
+        reservations.put(reservation.reservationID, reservation);
+        List<Reservation> bookings = byVehicle.get(reservation.vehicleID);
+        if (bookings == null) {
+            bookings = new ArrayList<Reservation>(1);
+            byVehicle.put(reservation.vehicleID, bookings);
+        }
+        bookings.add(reservation);
+    }
+
+    /**
+     * cancel releases a booking that has not been checked in
+     *
+     * @param reservationID Integer containing the reservation ID
+     * @return A boolean whether the booking was found and cancelled
+     * @throws IllegalStateException The cancellation could not be journaled, in which case the booking stands
+     */
+    public final synchronized boolean cancel(int reservationID) throws IllegalStateException {
+        Reservation reservation = reservations.get(reservationID);
+        if (reservation == null || reservation.checkedIn) {
+            return false;
+        }
+        log("X|" + reservationID);
+        remove(reservation);
+        return true;
+    }
+
+    /**
+     * checkIn matches an arriving vehicle to its booking. A booking matches from
+     * the early arrival allowance before it starts until it ends, and once matched
+     * it cannot be matched again.
+     *
+     * @param vehicleID String containing the vehicle ID
+     * @param nowMillis Long containing the arrival time in milliseconds
+     * @return Instance of the Reservation matched, or null when the vehicle has no booking now
+     * @throws IllegalStateException The check-in could not be journaled, in which case the booking is not matched
+     */
+    public final synchronized Reservation checkIn(String vehicleID, long nowMillis) throws IllegalStateException {
+        List<Reservation> bookings = byVehicle.get(vehicleID);
+        if (bookings == null) {
+            return null;
+        }
+        for (Reservation reservation : bookings) {
+            if (!reservation.checkedIn && nowMillis >= reservation.fromMillis - earlyArrivalMillis
+                    && nowMillis < reservation.toMillis) {
+                log("I|" + reservation.reservationID);
+                reservation.checkedIn = true;
+                return reservation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * undoCheckIn takes back the match of a booking whose vehicle did not get to
+     * park after all, so it can be matched again
+     *
+     * @param reservationID Integer containing the reservation ID
+     * @return A boolean whether the booking was found checked in and taken back
+     * @throws IllegalStateException The change could not be journaled, in which case the booking stays checked in
+     */
+    public final synchronized boolean undoCheckIn(int reservationID) throws IllegalStateException {
+        Reservation reservation = reservations.get(reservationID);
+        if (reservation == null || !reservation.checkedIn) {
+            return false;
+        }
+        log("U|" + reservationID);
+        reservation.checkedIn = false;
+        return true;
+    }
+
+    /**
+     * openJournal replays the bookings kept in a journal file, when it exists,
+     * and then keeps every later change in it. A last line left half written by
+     * a crash is cut off first.
+     *
+     * @param file File the journal is kept in
+     * @throws IOException If the journal cannot be read or written, or holds a line that does not fit this calendar
+     * @throws IllegalArgumentException File cannot be null
+     * @throws IllegalStateException A journal is already open
+     */
+    public final synchronized void openJournal(File file) throws IOException, IllegalArgumentException,
+            IllegalStateException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        if (journal != null) {
+            throw new IllegalStateException("Journal is already open at " + journalFile);
+        }
+        if (file.isFile()) {
+            DailySegmentStore.trimTornLine(file);
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                    StandardCharsets.UTF_8))) {
+                String line;
+                int lineNum = 0;
+                while ((line = in.readLine()) != null) {
+                    lineNum++;
+                    try {
+                        replay(line.split("\\|"));
+                    } catch (IllegalArgumentException ex) {
+                        throw new IOException("Bad line " + lineNum + " in " + file + ": " + line, ex);
+                    }
+                }
+            }
+        }
+        journal = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        journalFile = file;
+    }
+
+    /**
+     * replay applies one journal line to the calendar without writing it again
+     */
+    private void replay(String[] fields) throws IllegalArgumentException {
+        if (fields[0].equals("B") && fields.length == 5) {
+            Reservation reservation = new Reservation(Integer.parseInt(fields[1]), fields[2],
+                    Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+            if (reservations.containsKey(reservation.reservationID)) {
+                throw new IllegalArgumentException("Reservation " + reservation.reservationID + " is booked twice");
+            }
+            put(reservation, toSlots(reservation.fromMillis, reservation.toMillis));
+            return;
+        }
+        Reservation reservation = fields.length == 2 ? reservations.get(Integer.parseInt(fields[1])) : null;
+        if (reservation == null) {
+            throw new IllegalArgumentException("Unknown journal line");
+        }
+        switch (fields[0]) {
+            case "X":
+                remove(reservation);
+                break;
+            case "I":
+                reservation.checkedIn = true;
+                break;
+            case "U":
+                reservation.checkedIn = false;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown journal line");
+        }
+    }
+
+    /**
+     * log writes a change to the journal, when one is open, before it is made
+     */
+    private void log(String line) throws IllegalStateException {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.write(line);
+            journal.write('\n');
+            journal.flush();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not journal the reservations to " + journalFile, ex);
+        }
+    }
+
+    /**
+     * close closes the journal, when one is open. Changes made after it is
+     * closed are kept in memory only.
+     *
+     * @throws IOException If the journal cannot be closed
+     */
+    @Override
+    public final synchronized void close() throws IOException {
+        if (journal != null) {
+            try {
+                journal.close();
+            } finally {
+                journal = null;
+                journalFile = null;
+            }
+        }
+    }
+
+    /**
+     * getReservation gets a booking by its number
+     *
+     * @param reservationID Integer containing the reservation ID
+     * @return Instance of the Reservation, or null when there is no such booking
+     */
+    public final synchronized Reservation getReservation(int reservationID) {
+        return reservations.get(reservationID);
+    }
+
+    /**
+     * getReservations gets every booking of a vehicle
+     *
+     * @param vehicleID String containing the vehicle ID
+     * @return List of the vehicle's bookings in the order they were made
+     */
+    public final synchronized List<Reservation> getReservations(String vehicleID) {
+        List<Reservation> bookings = byVehicle.get(vehicleID);
+        return bookings == null ? new ArrayList<Reservation>() : new ArrayList<Reservation>(bookings);
+    }
+
+    private void remove(Reservation reservation) {
+        int[] range = toSlots(reservation.fromMillis, reservation.toMillis);
+        add(1, 0, slots - 1, range[0], range[1], -1);
+        reservations.remove(reservation.reservationID);
+        List<Reservation> bookings = byVehicle.get(reservation.vehicleID);
+        bookings.remove(reservation);
+        if (bookings.isEmpty()) {
+            byVehicle.remove(reservation.vehicleID);
+        }
+    }
+
+    /**
+     * toSlots turns a time range into the first and last slot it touches
+     */
+    private int[] toSlots(long fromMillis, long toMillis) throws IllegalArgumentException {
+        if (fromMillis < startMillis || toMillis <= fromMillis || toMillis > startMillis + slots * slotMillis) {
+            throw new IllegalArgumentException("Range must be inside the calendar for " + garageName
+                    + " and end after it starts");
+        }
+        int first = (int) ((fromMillis - startMillis) / slotMillis);
+        int last = (int) ((toMillis - startMillis + slotMillis - 1) / slotMillis) - 1;
+        return new int[]{first, last};
+    }
+
+    /**
+     * add adds a count to every slot from first to last, leaving the change pending
+     * on nodes that cover their whole range
+     */
+    private void add(int node, int low, int high, int first, int last, int count) {
+        if (last < low || high < first) {
+            return;
+        }
+        if (first <= low && high <= last) {
+            booked[node] += count;
+            pending[node] += count;
+            return;
+        }
+        int middle = (low + high) >>> 1;
+        add(2 * node, low, middle, first, last, count);
+        add(2 * node + 1, middle + 1, high, first, last, count);
+        booked[node] = Math.max(booked[2 * node], booked[2 * node + 1]) + pending[node];
+    }
+
+    /**
+     * max gets the most spots booked in any slot from first to last
+     */
+    private int max(int node, int low, int high, int first, int last) {
+        if (last < low || high < first) {
+            return 0;
+        }
+        if (first <= low && high <= last) {
+            return booked[node];
+        }
+        int middle = (low + high) >>> 1;
+        return Math.max(max(2 * node, low, middle, first, last), max(2 * node + 1, middle + 1, high, first, last))
+                + pending[node];
+    }
+
+    /**
+     * Gets the highest reservation ID given out so far
+     *
+     * @return Integer containing the last reservation ID
+     */
+    public final synchronized int getLastReservationID() {
+        return lastReservationID;
+    }
+
+    /**
+     * Gets the file the journal is kept in
+     *
+     * @return The journal file, or null when no journal is open
+     */
+    public final synchronized File getJournalFile() {
+        return journalFile;
+    }
+
+    /**
+     * Gets the name of the garage
+     *
+     * @return String containing the garage name
+     */
+    public final String getGarageName() {
+        return garageName;
+    }
+
+    /**
+     * Gets the number of spots that can be booked at once
+     *
+     * @return Integer containing the spots
+     */
+    public final int getSpots() {
+        return spots;
+    }
+
+    /**
+     * Gets how long before a booking starts its vehicle is matched at the gate
+     *
+     * @return Long containing the allowance in milliseconds
+     */
+    public final synchronized long getEarlyArrivalMillis() {
+        return earlyArrivalMillis;
+    }
+
+    /**
+     * Sets how long before a booking starts its vehicle is matched at the gate
+     *
+     * @param earlyArrivalMillis Long containing the allowance in milliseconds
+     * @throws IllegalArgumentException Allowance cannot be less than zero
+     */
+    public final synchronized void setEarlyArrivalMillis(long earlyArrivalMillis) throws IllegalArgumentException {
+        if (earlyArrivalMillis < 0) {
+            throw new IllegalArgumentException("Allowance cannot be less than zero");
+        }
+        this.earlyArrivalMillis = earlyArrivalMillis;
+    }
+
+}
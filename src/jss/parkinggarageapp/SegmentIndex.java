@@ -0,0 +1,199 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * SegmentIndex class is used to find transactions in one garage's day by ticket
+ * number or vehicle ID without reading the whole segment. Each entry points at a
+ * transaction by its row number, which stays the same when the day is archived,
+ * and by the byte offset of its line in the plain text segment.
+ *
+ * While the day is hot the index is kept in memory and grows with every append.
+ * When the day is closed it is written to yyyyMMdd.idx next to the segment:
+ * <pre>
+ *   ticket count, vehicle count, posting count
+ *   ticket entries sorted by ticket:      ticket, row, offset
+ *   vehicle entries sorted by vehicle ID: the ID's four chars, first posting, posting count
+ *   postings in the order appended:       row, offset
+ * </pre>
+ * Every entry has a fixed width so a lookup is a binary search of the file.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class SegmentIndex {
+    private static final int HEADER_BYTES = 12;
+    private static final int TICKET_BYTES = 16;
+    private static final int VEHICLE_BYTES = 16;
+    private static final int POSTING_BYTES = 12;
+
+    private final File file;
+    private final TreeMap<Integer, long[]> tickets = new TreeMap<Integer, long[]>();
+    private final Map<String, List<long[]>> vehicles = new HashMap<String, List<long[]>>();
+
+    /**
+     * Overrides the default constructor requiring the index file to be passed in.
+     * A new index is empty and in memory until it is written.
+     *
+     * @param file File the index is written to and read from
+     * @throws IllegalArgumentException File cannot be null
+     */
+    public SegmentIndex(File file) throws IllegalArgumentException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        this.file = file;
+    }
+
+    /**
+     * add records where a transaction was appended
+     *
+     * @param ticketNumber Integer containing the ticket number
+     * @param vehicleID String containing the vehicle ID
+     * @param row Integer containing the row number within the segment
+     * @param offset Long containing the byte offset of the line in the segment
+     */
+    public final void add(int ticketNumber, String vehicleID, int row, long offset) {
+        long[] entry = {row, offset};
+        tickets.put(ticketNumber, entry);
+        List<long[]> postings = vehicles.get(vehicleID);
+        if (postings == null) {
+            postings = new ArrayList<long[]>(2);
+            vehicles.put(vehicleID, postings);
+        }
+        postings.add(entry);
+    }
+
+    /**
+     * write saves the in-memory index, writing a temporary file first and moving it
+     * over the old one
+     *
+     * @throws IOException If the index cannot be written
+     */
+    public final void write() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        List<String> vehicleIDs = new ArrayList<String>(vehicles.keySet());
+        Collections.sort(vehicleIDs);
+        int postingCount = 0;
+        for (List<long[]> postings : vehicles.values()) {
+            postingCount += postings.size();
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(tickets.size());
+            out.writeInt(vehicleIDs.size());
+            out.writeInt(postingCount);
+            for (Map.Entry<Integer, long[]> ticket : tickets.entrySet()) {
+                out.writeInt(ticket.getKey());
+                out.writeInt((int) ticket.getValue()[0]);
+                out.writeLong(ticket.getValue()[1]);
+            }
+            int first = 0;
+            for (String vehicleID : vehicleIDs) {
+                int count = vehicles.get(vehicleID).size();
+                out.writeChars(vehicleID);
+                out.writeInt(first);
+                out.writeInt(count);
+                first += count;
+            }
+            for (String vehicleID : vehicleIDs) {
+                for (long[] posting : vehicles.get(vehicleID)) {
+                    out.writeInt((int) posting[0]);
+                    out.writeLong(posting[1]);
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * findTicket looks up a ticket, in memory while the index is hot and by binary
+     * search of the file once it has been written
+     *
+     * @param ticketNumber Integer containing the ticket number
+     * @return Array holding the row and offset, or null when the ticket is not in the segment
+     * @throws IOException If the index file cannot be read
+     */
+    public final long[] findTicket(int ticketNumber) throws IOException {
+        if (!tickets.isEmpty() || !file.isFile()) {
+            return tickets.get(ticketNumber);
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            int low = 0;
+            int high = in.readInt() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                in.seek(HEADER_BYTES + (long) middle * TICKET_BYTES);
+                int ticket = in.readInt();
+                if (ticket < ticketNumber) {
+                    low = middle + 1;
+                } else if (ticket > ticketNumber) {
+                    high = middle - 1;
+                } else {
+                    return new long[]{in.readInt(), in.readLong()};
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * findVehicle looks up every visit of a vehicle, in memory while the index is
+     * hot and by binary search of the file once it has been written
+     *
+     * @param vehicleID String containing the vehicle ID
+     * @return List of arrays holding the row and offset of each visit in the order appended, empty when there are none
+     * @throws IOException If the index file cannot be read
+     */
+    public final List<long[]> findVehicle(String vehicleID) throws IOException {
+        if (!vehicles.isEmpty() || !file.isFile()) {
+            List<long[]> postings = vehicles.get(vehicleID);
+            return postings == null ? new ArrayList<long[]>() : new ArrayList<long[]>(postings);
+        }
+        List<long[]> postings = new ArrayList<long[]>();
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            int ticketCount = in.readInt();
+            int vehicleCount = in.readInt();
+            long directory = HEADER_BYTES + (long) ticketCount * TICKET_BYTES;
+            long postingStart = directory + (long) vehicleCount * VEHICLE_BYTES;
+            int low = 0;
+            int high = vehicleCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                in.seek(directory + (long) middle * VEHICLE_BYTES);
+                char[] chars = new char[4];
+                for (int c = 0; c < 4; c++) {
+                    chars[c] = in.readChar();
+                }
+                int compare = new String(chars).compareTo(vehicleID);
+                if (compare < 0) {
+                    low = middle + 1;
+                } else if (compare > 0) {
+                    high = middle - 1;
+                } else {
+                    int first = in.readInt();
+                    int count = in.readInt();
+                    in.seek(postingStart + (long) first * POSTING_BYTES);
+                    for (int i = 0; i < count; i++) {
+                        postings.add(new long[]{in.readInt(), in.readLong()});
+                    }
+                    break;
+                }
+            }
+        }
+        return postings;
+    }
+
+    /**
+     * Gets the file the index is written to
+     *
+     * @return The index file, which may not exist yet
+     */
+    public final File getFile() {
+        return file;
+    }
+
+}
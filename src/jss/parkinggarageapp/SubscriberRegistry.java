@@ -0,0 +1,280 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * SubscriberRegistry class is used to hold the vehicles with a monthly pass, who
+ * leave without paying. Each vehicle ID maps to the last day its pass is good
+ * for. In front of the map sits a Bloom filter, a few bits set per subscriber
+ * in a table sized to a power of two, and almost every vehicle without a pass
+ * is turned away after a handful of masked bit tests without touching the map.
+ *
+ * The filter and map are built together and published as one immutable view
+ * through a volatile field. Lookups read that field once and take no lock, and
+ * a bulk reload builds the new view off to the side and swaps it in, so
+ * checkouts keep going while the list is replaced.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class SubscriberRegistry {
+    private static final int BITS_PER_SUBSCRIBER = 10;
+    private static final int HASHES = 7;
+
+    private final String garageName;
+    private volatile View view = new View(new HashMap<String, Integer>());
+
+    /**
+     * View class holds one immutable version of the subscribers and their filter
+     */
+    private static class View {
+        private final Map<String, Integer> passes;
+        private final long[] bits;
+        private final int mask;
+
+        private View(Map<String, Integer> passes) {
+            this.passes = passes;
+            int bitCount = Integer.highestOneBit(Math.max(64, passes.size() * BITS_PER_SUBSCRIBER - 1)) << 1;
+            this.mask = bitCount - 1;
+            this.bits = new long[bitCount >>> 6];
+            for (String vehicleID : passes.keySet()) {
+                int hash1 = hash1(vehicleID);
+                int hash2 = hash2(vehicleID);
+                for (int i = 0; i < HASHES; i++) {
+                    int bit = (hash1 + i * hash2) & mask;
+                    bits[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+
+        private boolean mightContain(String vehicleID) {
+            int hash1 = hash1(vehicleID);
+            int hash2 = hash2(vehicleID);
+            for (int i = 0; i < HASHES; i++) {
+                int bit = (hash1 + i * hash2) & mask;
+                if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Overrides the default constructor requiring the garage name to be passed in
+     *
+     * @param garageName String containing the garage name
+     * @throws IllegalArgumentException Name cannot be null
+     */
+    public SubscriberRegistry(String garageName) throws IllegalArgumentException {
+        if (garageName == null) {
+            throw new IllegalArgumentException("Name cannot be null");
+        }
+        this.garageName = garageName;
+    }
+
+    /**
+     * isSubscriber checks if the vehicle has a pass good for the day
+     *
+     * @param vehicleID String containing the vehicle ID
+     * @param day Integer containing the day in yyyyMMdd form
+     * @return A boolean whether the vehicle leaves without paying
+     */
+    public final boolean isSubscriber(String vehicleID, int day) {
+        if (vehicleID == null) {
+            return false;
+        }
+        View current = view;
+        if (!current.mightContain(vehicleID)) {
+            return false;
+        }
+        Integer validThrough = current.passes.get(vehicleID);
+        return validThrough != null && validThrough >= day;
+    }
+
+    /**
+     * getValidThrough gets the last day a vehicle's pass is good for
+     *
+     * @param vehicleID String containing the vehicle ID
+     * @return Integer containing the day in yyyyMMdd form, 0 when the vehicle has no pass
+     */
+    public final int getValidThrough(String vehicleID) {
+        View current = view;
+        if (vehicleID == null || !current.mightContain(vehicleID)) {
+            return 0;
+        }
+        Integer validThrough = current.passes.get(vehicleID);
+        return validThrough == null ? 0 : validThrough;
+    }
+
+    /**
+     * reload replaces every subscriber at once. Lookups already running finish
+     * against the old list and later ones see the new one.
+     *
+     * @param passes Map of vehicle ID to the last day its pass is good for in yyyyMMdd form
+     * @throws IllegalArgumentException Map cannot be null and every vehicle ID must be 4 characters
+     */
+    public final synchronized void reload(Map<String, Integer> passes) throws IllegalArgumentException {
+        if (passes == null) {
+            throw new IllegalArgumentException("Passes cannot be null");
+        }
+        Map<String, Integer> copy = new HashMap<String, Integer>(passes.size() * 2);
+        for (Map.Entry<String, Integer> pass : passes.entrySet()) {
+            if (pass.getKey() == null || pass.getKey().length() != 4 || pass.getValue() == null) {
+                throw new IllegalArgumentException("Improper pass for vehicle " + pass.getKey());
+            }
+            copy.put(pass.getKey(), pass.getValue());
+        }
+        view = new View(copy);
+    }
+
+    /**
+     * reload replaces every subscriber with the ones in a file holding one
+     * vehicleID|validThroughDay line per pass
+     *
+     * @param file File containing the passes
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException Every line must be a pass
+     */
+    public final void reload(File file) throws IOException, IllegalArgumentException {
+        Map<String, Integer> passes = new HashMap<String, Integer>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split("\\|");
+                if (fields.length != 2) {
+                    throw new IllegalArgumentException("Improper pass line: " + line);
+                }
+                passes.put(fields[0], Integer.parseInt(fields[1].trim()));
+            }
+        }
+        reload(passes);
+    }
+
+    /**
+     * addPass adds or extends one vehicle's pass. The list is copied, so this is
+     * meant for the occasional sale at the desk and not for loading many passes.
+     *
+     * @param vehicleID String containing the vehicle ID
+     * @param validThrough Integer containing the last day the pass is good for in yyyyMMdd form
+     * @throws IllegalArgumentException Vehicle ID must be 4 characters
+     */
+    public final synchronized void addPass(String vehicleID, int validThrough) throws IllegalArgumentException {
+        Map<String, Integer> passes = new HashMap<String, Integer>(view.passes);
+        passes.put(vehicleID, validThrough);
+        reload(passes);
+    }
+
+    /**
+     * removePass takes away one vehicle's pass
+     *
+     * @param vehicleID String containing the vehicle ID
+     * @return A boolean whether the vehicle had a pass
+     */
+    public final synchronized boolean removePass(String vehicleID) {
+        if (!view.passes.containsKey(vehicleID)) {
+            return false;
+        }
+        Map<String, Integer> passes = new HashMap<String, Integer>(view.passes);
+        passes.remove(vehicleID);
+        view = new View(passes);
+        return true;
+    }
+
+    /**
+     * Gets the number of vehicles with a pass
+     *
+     * @return Integer containing the subscribers
+     */
+    public final int size() {
+        return view.passes.size();
+    }
+
+    /**
+     * Gets the name of the garage
+     *
+     * @return String containing the garage name
+     */
+    public final String getGarageName() {
+        return garageName;
+    }
+
+    private static int hash1(String vehicleID) {
+        int hash = vehicleID.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    private static int hash2(String vehicleID) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < vehicleID.length(); i++) {
+            hash = (hash ^ vehicleID.charAt(i)) * 0x01000193;
+        }
+        return hash | 1;
+    }
+
+    /**
+     * Overrides the toString method, converts a SubscriberRegistry to a string
+     *
+     * @return A string containing the garage name and number of subscribers
+     */
+    @Override
+    public String toString() {
+        return garageName + " subscribers: " + size();
+    }
+
+    /**
+     * Measures lookups of vehicles without a pass against a list of subscribers,
+     * and how many of them get past the filter to the map.
+     *
+     * Usage: SubscriberRegistry [subscribers [lookups]]
+     *
+     * @param args Optional number of subscribers, 5,000 by default, and lookups, 20,000,000 by default
+     */
+    public static void main(String[] args) {
+        int subscribers = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 20000000;
+        Random random = new Random(42);
+        Map<String, Integer> passes = new HashMap<String, Integer>();
+        while (passes.size() < Math.min(subscribers, 10000)) {
+            passes.put(String.format("%04d", random.nextInt(10000)), 99991231);
+        }
+        SubscriberRegistry registry = new SubscriberRegistry("Benchmark");
+        registry.reload(passes);
+
+        String[] visitors = new String[4096];
+        for (int i = 0; i < visitors.length; i++) {
+            visitors[i] = "V" + (char) ('A' + random.nextInt(26)) + random.nextInt(10) + random.nextInt(10);
+        }
+        View current = registry.view;
+        int passed = 0;
+        for (String visitor : visitors) {
+            if (current.mightContain(visitor)) {
+                passed++;
+            }
+        }
+        System.out.println(String.format("%s, %.2f%% of visitors get past the filter", registry,
+                100.0 * passed / visitors.length));
+
+        int day = Transaction.today();
+        for (int round = 1; round <= 3; round++) {
+            int found = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                if (registry.isSubscriber(visitors[i & 4095], day)) {
+                    found++;
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.println(String.format("round %d: %.1f ns per lookup, %d found", round,
+                    (double) nanos / lookups, found));
+        }
+    }
+
+}
@@ -129,6 +129,7 @@ public class ThriftyFeeCalculator implements FeeCalculatorStrategy {
      * 
      * @return A string containing a unique ID 
      */
+    @Override
     public String getCalcID() {
         return calcID;
     }
@@ -0,0 +1,377 @@
+package jss.parkinggarageapp;
+
+import filemanager.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TrafficSimulator class is used to generate realistic garage traffic for sizing
+ * hardware. Arrivals follow a Poisson process whose rate is raised during the
+ * morning and evening rush hours, and each vehicle stays for a length drawn from
+ * the chosen distribution. The same seed always gives the same traffic.
+ *
+ * Every arrival is parked through the AutomatedTeller, every departure is checked
+ * out through it, and the hours and fees of every day are written through the
+ * FileService together once the last day ends. The writer replaces the file it
+ * writes, so writing each day on its own would keep only the last one.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class TrafficSimulator {
+
+    /**
+     * StayDistribution lists the ways a stay length can be drawn, each around the
+     * mean stay hours of the simulator
+     */
+    public enum StayDistribution {
+        UNIFORM, EXPONENTIAL, LOG_NORMAL
+    }
+
+    private static final int[][] RUSH_HOURS = {{7, 9}, {16, 18}};
+    private static final String ID_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private long seed;
+    private double arrivalsPerHour;
+    private double rushHourMultiplier = 3;
+    private StayDistribution stayDistribution = StayDistribution.EXPONENTIAL;
+    private double meanStayHours = 3;
+    private double targetRate;
+
+    /**
+     * Overrides the default constructor requiring a seed and the base number of
+     * arrivals per hour to be passed in
+     *
+     * @param seed Long used to seed the random traffic
+     * @param arrivalsPerHour Double containing the average arrivals per hour outside rush hour
+     */
+    public TrafficSimulator(long seed, double arrivalsPerHour) {
+        this.seed = seed;
+        setArrivalsPerHour(arrivalsPerHour);
+    }
+
+    /**
+     * simulate runs the given number of days and returns one line of statistics
+     * per day, followed by a line for writing the history. The teller is started
+     * on a new day before each one, beginning with today, so a segment store on
+     * the teller gets one segment per day.
+     *
+     * @param atm Instance of the AutomatedTeller the traffic is driven through
+     * @param fs Instance of the FileService the hours and fees of every day are written to, may be null
+     * @param days Number of days to simulate
+     * @return List of strings with the throughput, latency and heap growth of each day and the write time
+     * @throws IOException If the FileService cannot write
+     * @throws IllegalArgumentException ATM cannot be null and days must be greater than zero
+     */
+    public final List<String> simulate(AutomatedTeller atm, FileService fs, int days) throws IOException, IllegalArgumentException {
+        if (atm == null || days <= 0) {
+            throw new IllegalArgumentException("ATM cannot be null and days must be greater than zero");
+        }
+        Random random = new Random(seed);
+        List<String> report = new ArrayList<String>();
+        List<LinkedHashMap<String, String>> history = new ArrayList<LinkedHashMap<String, String>>();
+        Calendar calendar = Calendar.getInstance();
+
+        for (int day = 1; day <= days; day++) {
+            atm.startNewDay(atm.getGarage(), Transaction.toDay(calendar));
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            long heapBefore = usedHeap();
+
+            LatencyRecorder latency = new LatencyRecorder();
+            List<LinkedHashMap<String, String>> carFees = new ArrayList<LinkedHashMap<String, String>>();
+            long start = System.nanoTime();
+            int events = simulateDay(atm, random, latency, carFees);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            history.addAll(carFees);
+
+            long heapAfter = usedHeap();
+            report.add(String.format("day=%d events=%d checkouts=%d throughput=%.0f/s heapGrowth=%dKB %s",
+                    day, events, carFees.size(), events / seconds,
+                    (heapAfter - heapBefore) / 1024, latency));
+        }
+
+        if (fs != null) {
+            long start = System.nanoTime();
+            fs.addNewData(history);
+            report.add(String.format("history=%d write=%.1fms", history.size(), (System.nanoTime() - start) / 1e6));
+        }
+        return report;
+    }
+
+    /**
+     * simulateDay generates the arrivals and departures of one day in time order,
+     * runs each through the teller and returns the number of teller calls made
+     */
+    private int simulateDay(AutomatedTeller atm, Random random, LatencyRecorder latency,
+            List<LinkedHashMap<String, String>> carFees) throws IOException {
+        PriorityQueue<double[]> departures = new PriorityQueue<double[]>(64, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] a, double[] b) {
+                return Double.compare(a[0], b[0]);
+            }
+        });
+        double peakRate = arrivalsPerHour * Math.max(1, rushHourMultiplier);
+        double clock = 0;
+        int vehicleNum = 0;
+        long periodNanos = targetRate > 0 ? (long) (1e9 / targetRate) : 0;
+        long next = System.nanoTime();
+        int events = 0;
+
+        while (true) {
+            // Thinning: draw from the peak rate and keep the arrival with probability rate(t) / peak
+            clock += -Math.log(1 - random.nextDouble()) / peakRate;
+            while (!departures.isEmpty() && (departures.peek()[0] <= clock || clock >= 24)) {
+                String vehicleID = vehicleID((int) departures.poll()[1]);
+                long start = System.nanoTime();
+                carFees.add(atm.checkoutVehicle(vehicleID));
+                latency.record(System.nanoTime() - start);
+                next = pace(next, periodNanos);
+                events++;
+            }
+            if (clock >= 24) {
+                break;
+            }
+            if (random.nextDouble() * peakRate > arrivalRate(clock)) {
+                continue;
+            }
+            double hours = stayHours(random);
+            long start = System.nanoTime();
+            atm.parkNewVehicle(vehicleID(vehicleNum), hours);
+            latency.record(System.nanoTime() - start);
+            departures.add(new double[]{clock + hours, vehicleNum});
+            vehicleNum++;
+            next = pace(next, periodNanos);
+            events++;
+        }
+        return events;
+    }
+
+    /**
+     * pace sleeps until the next event is due when a target rate is set
+     */
+    private static long pace(long next, long periodNanos) {
+        if (periodNanos == 0) {
+            return next;
+        }
+        next += periodNanos;
+        long sleep = next - System.nanoTime();
+        if (sleep > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleep);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return next;
+    }
+
+    /**
+     * arrivalRate gets the arrivals per hour at the given hour of the day
+     */
+    private double arrivalRate(double hourOfDay) {
+        for (int[] rush : RUSH_HOURS) {
+            if (hourOfDay >= rush[0] && hourOfDay < rush[1]) {
+                return arrivalsPerHour * rushHourMultiplier;
+            }
+        }
+        return arrivalsPerHour;
+    }
+
+    /**
+     * stayHours draws a stay length and keeps it within the hours a ticket allows
+     */
+    private double stayHours(Random random) {
+        double hours;
+        switch (stayDistribution) {
+            case UNIFORM:
+                hours = random.nextDouble() * 2 * meanStayHours;
+                break;
+            case LOG_NORMAL:
+                // sigma of 0.75 with mu chosen so the mean is meanStayHours
+                hours = Math.exp(Math.log(meanStayHours) - 0.28125 + 0.75 * random.nextGaussian());
+                break;
+            default:
+                hours = -Math.log(1 - random.nextDouble()) * meanStayHours;
+                break;
+        }
+        hours = Math.round(hours * 4) / 4.0;
+        return Math.min(24, Math.max(0.25, hours));
+    }
+
+    /**
+     * vehicleID turns the vehicle number into a four character ID
+     */
+    private static String vehicleID(int vehicleNum) {
+        char[] id = new char[4];
+        for (int i = 3; i >= 0; i--) {
+            id[i] = ID_CHARS.charAt(vehicleNum % 36);
+            vehicleNum /= 36;
+        }
+        return new String(id);
+    }
+
+    /**
+     * usedHeap collects garbage first so the heap growth between days is not noise
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Gets the seed used for the random traffic
+     *
+     * @return Long containing the seed
+     */
+    public final long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the average arrivals per hour outside rush hour
+     *
+     * @return Double containing the arrivals per hour
+     */
+    public final double getArrivalsPerHour() {
+        return arrivalsPerHour;
+    }
+
+    /**
+     * Sets the average arrivals per hour outside rush hour
+     *
+     * @param arrivalsPerHour Double containing the arrivals per hour
+     * @throws IllegalArgumentException Arrivals per hour must be greater than zero
+     */
+    public final void setArrivalsPerHour(double arrivalsPerHour) throws IllegalArgumentException {
+        if (arrivalsPerHour <= 0) {
+            throw new IllegalArgumentException("Arrivals per hour must be greater than zero");
+        } else {
+            this.arrivalsPerHour = arrivalsPerHour;
+        }
+    }
+
+    /**
+     * Gets how many times busier rush hour is than the rest of the day
+     *
+     * @return Double containing the rush hour multiplier
+     */
+    public final double getRushHourMultiplier() {
+        return rushHourMultiplier;
+    }
+
+    /**
+     * Sets how many times busier rush hour is than the rest of the day
+     *
+     * @param rushHourMultiplier Double containing the rush hour multiplier
+     * @throws IllegalArgumentException Multiplier cannot be less than 1
+     */
+    public final void setRushHourMultiplier(double rushHourMultiplier) throws IllegalArgumentException {
+        if (rushHourMultiplier < 1) {
+            throw new IllegalArgumentException("Rush hour multiplier cannot be less than 1");
+        } else {
+            this.rushHourMultiplier = rushHourMultiplier;
+        }
+    }
+
+    /**
+     * Gets the distribution stay lengths are drawn from
+     *
+     * @return The StayDistribution being used
+     */
+    public final StayDistribution getStayDistribution() {
+        return stayDistribution;
+    }
+
+    /**
+     * Sets the distribution stay lengths are drawn from
+     *
+     * @param stayDistribution The StayDistribution to use
+     * @throws IllegalArgumentException Distribution cannot be null
+     */
+    public final void setStayDistribution(StayDistribution stayDistribution) throws IllegalArgumentException {
+        if (stayDistribution == null) {
+            throw new IllegalArgumentException("Stay distribution cannot be null");
+        } else {
+            this.stayDistribution = stayDistribution;
+        }
+    }
+
+    /**
+     * Gets the average stay in hours
+     *
+     * @return Double containing the mean stay hours
+     */
+    public final double getMeanStayHours() {
+        return meanStayHours;
+    }
+
+    /**
+     * Sets the average stay in hours
+     *
+     * @param meanStayHours Double containing the mean stay hours
+     * @throws IllegalArgumentException Mean stay must be greater than zero and no more than 12 hours
+     */
+    public final void setMeanStayHours(double meanStayHours) throws IllegalArgumentException {
+        if (meanStayHours <= 0 || meanStayHours > 12) {
+            throw new IllegalArgumentException("Mean stay hours must be greater than zero and no more than 12");
+        } else {
+            this.meanStayHours = meanStayHours;
+        }
+    }
+
+    /**
+     * Gets the target number of teller calls per second, zero runs as fast as possible
+     *
+     * @return Double containing the target rate
+     */
+    public final double getTargetRate() {
+        return targetRate;
+    }
+
+    /**
+     * Sets the target number of teller calls per second, zero runs as fast as possible
+     *
+     * @param targetRate Double containing the target rate
+     * @throws IllegalArgumentException Target rate cannot be negative
+     */
+    public final void setTargetRate(double targetRate) throws IllegalArgumentException {
+        if (targetRate < 0) {
+            throw new IllegalArgumentException("Target rate cannot be negative");
+        } else {
+            this.targetRate = targetRate;
+        }
+    }
+
+    /**
+     * Runs the simulator and prints one line per day.
+     *
+     * Usage: TrafficSimulator [days] [arrivalsPerHour] [seed] [targetRate] [historyFile]
+     *
+     * @param args Optional days, arrivals per hour, seed, target rate and history file
+     * @throws IOException If the history file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int days = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        double arrivals = args.length > 1 ? Double.parseDouble(args[1]) : 2000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        TrafficSimulator simulator = new TrafficSimulator(seed, arrivals);
+        if (args.length > 3) {
+            simulator.setTargetRate(Double.parseDouble(args[3]));
+        }
+        String filePath = args.length > 4 ? args[4] : "simulated.txt";
+        FileService fs = new FileService(new TextFileWriter(new CustomGarageFileFormat(), filePath),
+                new TextFileReader(new CustomGarageFileFormat(), filePath));
+
+        Garage garage = new Garage(new ThriftyFeeCalculator(1.5, 2, .75, "A1234"),
+                "Jims Parking Garage", "1234 West Ave, Pewaukee, WI");
+        AutomatedTeller atm = new AutomatedTeller(new Receipt(garage), new ReceiptNoOutput(), garage);
+
+        for (String line : simulator.simulate(atm, fs, days)) {
+            System.out.println(line);
+        }
+    }
+
+}
@@ -0,0 +1,338 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+
+/**
+ * Transaction class is used to hold one finished checkout: the ticket, the vehicle,
+ * the hours and fee, which calculator priced it, the garage and the day it happened.
+ * Days are stored as an integer in yyyyMMdd form so they sort and compare as numbers.
+ * The rate is the multiplier the calculator applied on top of its normal fee, 1
+ * unless the price changes with how full the garage is.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class Transaction {
+    private int ticketNumber;
+    private String vehicleID;
+    private double hours;
+    private double fees;
+    private String calcID;
+    private String garageName;
+    private int day;
+    private double rate = 1;
+
+    /**
+     * Overrides the default constructor requiring every field of the checkout to be passed in
+     *
+     * @param ticketNumber A unique integer referencing the ticket number
+     * @param vehicleID 4 character String representing the vehicle
+     * @param hours Double containing the hours the vehicle was parked
+     * @param fees Double containing the fee charged
+     * @param calcID 5 character String identifying the calculator that priced the fee
+     * @param garageName String containing the name of the garage
+     * @param day Integer containing the day in yyyyMMdd form
+     */
+    public Transaction(int ticketNumber, String vehicleID, double hours, double fees, String calcID,
+            String garageName, int day) {
+        setTicketNumber(ticketNumber);
+        setVehicleID(vehicleID);
+        setHours(hours);
+        setFees(fees);
+        setCalcID(calcID);
+        setGarageName(garageName);
+        setDay(day);
+    }
+
+    /**
+     * Overrides the default constructor requiring every field of the checkout and
+     * the rate the calculator applied to be passed in
+     *
+     * @param ticketNumber A unique integer referencing the ticket number
+     * @param vehicleID 4 character String representing the vehicle
+     * @param hours Double containing the hours the vehicle was parked
+     * @param fees Double containing the fee charged
+     * @param calcID 5 character String identifying the calculator that priced the fee
+     * @param garageName String containing the name of the garage
+     * @param day Integer containing the day in yyyyMMdd form
+     * @param rate Double containing the multiplier applied to the calculator's normal fee
+     */
+    public Transaction(int ticketNumber, String vehicleID, double hours, double fees, String calcID,
+            String garageName, int day, double rate) {
+        this(ticketNumber, vehicleID, hours, fees, calcID, garageName, day);
+        setRate(rate);
+    }
+
+    /**
+     * today gets the current day in yyyyMMdd form
+     *
+     * @return Integer containing today's date
+     */
+    public static int today() {
+        return toDay(Calendar.getInstance());
+    }
+
+    /**
+     * toDay converts a calendar to a day in yyyyMMdd form
+     *
+     * @param calendar Calendar set to the day
+     * @return Integer containing the day
+     */
+    public static int toDay(Calendar calendar) {
+        return calendar.get(Calendar.YEAR) * 10000 + (calendar.get(Calendar.MONTH) + 1) * 100
+                + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    /**
+     * toMap converts the transaction to the map layout the FileService writes,
+     * with the Hours and Fees keys first. The Rate key is only written when it is not 1.
+     *
+     * @return Map containing every field of the transaction
+     */
+    public final LinkedHashMap<String, String> toMap() {
+        LinkedHashMap<String, String> map = new LinkedHashMap<String, String>();
+        map.put("Hours", Double.toString(hours));
+        map.put("Fees", Double.toString(fees));
+        map.put("Ticket", Integer.toString(ticketNumber));
+        map.put("VehicleID", vehicleID);
+        map.put("CalcID", calcID);
+        map.put("Garage", garageName);
+        map.put("Day", Integer.toString(day));
+        if (rate != 1) {
+            map.put("Rate", Double.toString(rate));
+        }
+        return map;
+    }
+
+    /**
+     * Gets the ticket number
+     *
+     * @return A unique integer referencing the ticket number
+     */
+    public final int getTicketNumber() {
+        return ticketNumber;
+    }
+
+    /**
+     * Sets the ticket number
+     *
+     * @param ticketNumber A unique integer referencing the ticket number
+     * @throws IllegalArgumentException Ticket number cannot be less than 1
+     */
+    public final void setTicketNumber(int ticketNumber) throws IllegalArgumentException {
+        if (ticketNumber <= 0) {
+            throw new IllegalArgumentException("Ticket Number cannot be less than 1");
+        } else {
+            this.ticketNumber = ticketNumber;
+        }
+    }
+
+    /**
+     * Gets the vehicle ID
+     *
+     * @return 4 character String representing the vehicle
+     */
+    public final String getVehicleID() {
+        return vehicleID;
+    }
+
+    /**
+     * Sets the vehicle ID
+     *
+     * @param vehicleID 4 character String representing the vehicle
+     * @throws IllegalArgumentException VehicleID cannot be null and must be 4 characters long
+     */
+    public final void setVehicleID(String vehicleID) throws IllegalArgumentException {
+        if (vehicleID == null || vehicleID.length() != 4) {
+            throw new IllegalArgumentException("Improper vehicle ID");
+        } else {
+            this.vehicleID = vehicleID;
+        }
+    }
+
+    /**
+     * Gets the hours the vehicle was parked
+     *
+     * @return Double containing the hours
+     */
+    public final double getHours() {
+        return hours;
+    }
+
+    /**
+     * Sets the hours the vehicle was parked
+     *
+     * @param hours Double containing the hours
+     * @throws IllegalArgumentException Hours must be greater than zero and no more than 24
+     */
+    public final void setHours(double hours) throws IllegalArgumentException {
+        if (hours <= 0 || hours > 24) {
+            throw new IllegalArgumentException("Hours must be greater than zero and no more than 24");
+        } else {
+            this.hours = hours;
+        }
+    }
+
+    /**
+     * Gets the fee charged
+     *
+     * @return Double containing the fee
+     */
+    public final double getFees() {
+        return fees;
+    }
+
+    /**
+     * Sets the fee charged
+     *
+     * @param fees Double containing the fee
+     * @throws IllegalArgumentException Fees cannot be negative
+     */
+    public final void setFees(double fees) throws IllegalArgumentException {
+        if (fees < 0) {
+            throw new IllegalArgumentException("Fees cannot be negative");
+        } else {
+            this.fees = fees;
+        }
+    }
+
+    /**
+     * Gets the ID of the calculator that priced the fee
+     *
+     * @return 5 character String identifying the calculator
+     */
+    public final String getCalcID() {
+        return calcID;
+    }
+
+    /**
+     * Sets the ID of the calculator that priced the fee
+     *
+     * @param calcID 5 character String identifying the calculator
+     * @throws IllegalArgumentException Calculator ID cannot be null and must be 5 characters long
+     */
+    public final void setCalcID(String calcID) throws IllegalArgumentException {
+        if (calcID == null || calcID.length() != 5) {
+            throw new IllegalArgumentException("Calcuator ID cannot be null and must be 5 characters long");
+        } else {
+            this.calcID = calcID;
+        }
+    }
+
+    /**
+     * Gets the name of the garage
+     *
+     * @return String containing the garage name
+     */
+    public final String getGarageName() {
+        return garageName;
+    }
+
+    /**
+     * Sets the name of the garage
+     *
+     * @param garageName String containing the garage name
+     * @throws IllegalArgumentException Name cannot be null, less than 2 or greater than 50 characters
+     */
+    public final void setGarageName(String garageName) throws IllegalArgumentException {
+        if (garageName == null || garageName.length() < 2 || garageName.length() > 50) {
+            throw new IllegalArgumentException("Name cannot be null, less than 2 or greater than 50");
+        } else {
+            this.garageName = garageName;
+        }
+    }
+
+    /**
+     * Gets the day of the checkout
+     *
+     * @return Integer containing the day in yyyyMMdd form
+     */
+    public final int getDay() {
+        return day;
+    }
+
+    /**
+     * Sets the day of the checkout
+     *
+     * @param day Integer containing the day in yyyyMMdd form
+     * @throws IllegalArgumentException Day must be a yyyyMMdd date
+     */
+    public final void setDay(int day) throws IllegalArgumentException {
+        if (day < 19000101 || day > 99991231 || day / 100 % 100 < 1 || day / 100 % 100 > 12
+                || day % 100 < 1 || day % 100 > 31) {
+            throw new IllegalArgumentException("Day must be in yyyyMMdd form");
+        } else {
+            this.day = day;
+        }
+    }
+
+    /**
+     * Gets the rate the calculator applied
+     *
+     * @return Double containing the multiplier applied to the calculator's normal fee
+     */
+    public final double getRate() {
+        return rate;
+    }
+
+    /**
+     * Sets the rate the calculator applied
+     *
+     * @param rate Double containing the multiplier applied to the calculator's normal fee
+     * @throws IllegalArgumentException Rate must be greater than zero
+     */
+    public final void setRate(double rate) throws IllegalArgumentException {
+        if (rate <= 0 || Double.isInfinite(rate) || Double.isNaN(rate)) {
+            throw new IllegalArgumentException("Rate must be greater than zero");
+        } else {
+            this.rate = rate;
+        }
+    }
+
+    /**
+     * Overrides the toString method, converts a Transaction to a string
+     *
+     * @return A string containing the ticket number, vehicle, hours, fee, rate and day
+     */
+    @Override
+    public String toString() {
+        return "Ticket Number: " + ticketNumber + " Vehicle ID: " + vehicleID + " Hours: " + hours
+                + " Fees: " + fees + (rate != 1 ? " Rate: " + rate : "") + " Day: " + day;
+    }
+
+    /**
+     * Overrides the equal method, two transactions are equal when they are for the
+     * same ticket at the same garage
+     *
+     * @param obj Instance of the object being compared
+     * @return A boolean whether or not the two objects are equal
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final Transaction other = (Transaction) obj;
+        if (this.ticketNumber != other.getTicketNumber() || !this.garageName.equals(other.getGarageName())) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Overrides the hashCode method, uses the ticket number and garage name
+     *
+     * @return Integer containing the hash code
+     */
+    @Override
+    public int hashCode() {
+        int hash = 3;
+        hash = 53 * hash + this.ticketNumber;
+        hash = 53 * hash + this.garageName.hashCode();
+        return hash;
+    }
+
+}
@@ -0,0 +1,188 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * TransactionAggregator class is used to total the revenue, hours and count of a
+ * TransactionHistory over a range of days, for all garages or just one. The
+ * parallel path splits the rows in half until each piece is small and totals the
+ * pieces on a fork-join pool. Because every amount is summed in whole cents and
+ * hundredths of an hour, it gives exactly the same summary as the sequential path.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class TransactionAggregator extends RecursiveTask<TransactionSummary> {
+    private static final long serialVersionUID = 1L;
+    private static final int THRESHOLD = 1 << 15;
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    private final TransactionHistory history;
+    private final int lo;
+    private final int hi;
+    private final int fromDay;
+    private final int toDay;
+    private final int garageIndex;
+
+    /**
+     * Creates a task that totals rows lo up to but not including hi
+     */
+    private TransactionAggregator(TransactionHistory history, int lo, int hi, int fromDay, int toDay, int garageIndex) {
+        this.history = history;
+        this.lo = lo;
+        this.hi = hi;
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+        this.garageIndex = garageIndex;
+    }
+
+    /**
+     * aggregate totals the history in parallel using every core
+     *
+     * @param history Instance of the TransactionHistory to total
+     * @param fromDay First day to include in yyyyMMdd form
+     * @param toDay Last day to include in yyyyMMdd form
+     * @param garageName Name of the garage to include, or null for all garages
+     * @return Instance of the TransactionSummary with the totals
+     * @throws IllegalArgumentException History cannot be null and fromDay cannot be after toDay
+     */
+    public static TransactionSummary aggregate(TransactionHistory history, int fromDay, int toDay, String garageName)
+            throws IllegalArgumentException {
+        TransactionAggregator task = create(history, fromDay, toDay, garageName);
+        if (task == null) {
+            return new TransactionSummary();
+        }
+        return POOL.invoke(task);
+    }
+
+    /**
+     * aggregateSequential totals the history on the calling thread
+     *
+     * @param history Instance of the TransactionHistory to total
+     * @param fromDay First day to include in yyyyMMdd form
+     * @param toDay Last day to include in yyyyMMdd form
+     * @param garageName Name of the garage to include, or null for all garages
+     * @return Instance of the TransactionSummary with the totals
+     * @throws IllegalArgumentException History cannot be null and fromDay cannot be after toDay
+     */
+    public static TransactionSummary aggregateSequential(TransactionHistory history, int fromDay, int toDay,
+            String garageName) throws IllegalArgumentException {
+        TransactionAggregator task = create(history, fromDay, toDay, garageName);
+        if (task == null) {
+            return new TransactionSummary();
+        }
+        return task.computeDirectly();
+    }
+
+    /**
+     * create checks the arguments and builds the task for every row, or returns
+     * null when the garage is not in the history
+     */
+    private static TransactionAggregator create(TransactionHistory history, int fromDay, int toDay, String garageName)
+            throws IllegalArgumentException {
+        if (history == null || fromDay > toDay) {
+            throw new IllegalArgumentException("History cannot be null and fromDay cannot be after toDay");
+        }
+        int garageIndex = -1;
+        if (garageName != null) {
+            garageIndex = history.getGarageIndex(garageName);
+            if (garageIndex < 0) {
+                return null;
+            }
+        }
+        return new TransactionAggregator(history, 0, history.size(), fromDay, toDay, garageIndex);
+    }
+
+    /**
+     * compute splits the rows in half until the piece is below the threshold
+     *
+     * @return Instance of the TransactionSummary for the rows of this task
+     */
+    @Override
+    protected TransactionSummary compute() {
+        if (hi - lo <= THRESHOLD) {
+            return computeDirectly();
+        }
+        int mid = (lo + hi) >>> 1;
+        TransactionAggregator left = new TransactionAggregator(history, lo, mid, fromDay, toDay, garageIndex);
+        TransactionAggregator right = new TransactionAggregator(history, mid, hi, fromDay, toDay, garageIndex);
+        left.fork();
+        TransactionSummary summary = right.compute();
+        return left.join().merge(summary);
+    }
+
+    /**
+     * computeDirectly totals the rows into one slot per calculator and only turns
+     * them into a summary at the end
+     */
+    private TransactionSummary computeDirectly() {
+        List<String> calcIDs = history.getCalcIDs();
+        long[] counts = new long[calcIDs.size()];
+        long[] fees = new long[calcIDs.size()];
+        long[] hours = new long[calcIDs.size()];
+        int[] days = history.days();
+        long[] feeCents = history.feeCents();
+        long[] hourHundredths = history.hourHundredths();
+        int[] calcIndexes = history.calcIndexes();
+        int[] garageIndexes = history.garageIndexes();
+
+        for (int i = lo; i < hi; i++) {
+            if (days[i] < fromDay || days[i] > toDay || (garageIndex >= 0 && garageIndexes[i] != garageIndex)) {
+                continue;
+            }
+            int calc = calcIndexes[i];
+            counts[calc]++;
+            fees[calc] += feeCents[i];
+            hours[calc] += hourHundredths[i];
+        }
+
+        TransactionSummary summary = new TransactionSummary();
+        for (int calc = 0; calc < counts.length; calc++) {
+            if (counts[calc] > 0) {
+                summary.add(calcIDs.get(calc), counts[calc], fees[calc], hours[calc]);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Fills a history with random rows and times the sequential and parallel paths
+     * over a month, checking that both give the same summary.
+     *
+     * Usage: TransactionAggregator [rows]
+     *
+     * @param args Optional number of rows
+     */
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        FeeCalculatorStrategy[] calcs = {new ThriftyFeeCalculator(1.5, 2, .75, "A1234"),
+            new BestValueFeeCalculator(2, 3, .5, 10, "B7899")};
+        String[] garages = {"Jims Parking Garage", "Downtown Garage", "Airport Garage"};
+        Random random = new Random(42);
+        TransactionHistory history = new TransactionHistory();
+
+        for (int i = 0; i < rows; i++) {
+            FeeCalculatorStrategy calc = calcs[random.nextInt(calcs.length)];
+            double hours = 1 + random.nextInt(24 * 4 - 4) / 4.0;
+            int day = 20260100 + 100 * random.nextInt(12) + 1 + random.nextInt(28);
+            history.add(new Transaction(i + 1, "V" + (char) ('A' + i % 26) + (i % 10) + (i / 10 % 10), hours,
+                    calc.calculateFee(hours), calc.getCalcID(), garages[i % garages.length], day));
+        }
+
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            TransactionSummary sequential = aggregateSequential(history, 20260301, 20260331, null);
+            long sequentialNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            TransactionSummary parallel = aggregate(history, 20260301, 20260331, null);
+            long parallelNanos = System.nanoTime() - start;
+
+            System.out.println(String.format("sequential=%.1fms parallel=%.1fms cores=%d identical=%b",
+                    sequentialNanos / 1e6, parallelNanos / 1e6, POOL.getParallelism(), sequential.equals(parallel)));
+        }
+        System.out.println(aggregate(history, 20260301, 20260331, null));
+    }
+
+}
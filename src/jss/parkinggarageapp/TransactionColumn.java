@@ -0,0 +1,30 @@
+package jss.parkinggarageapp;
+
+/**
+ * TransactionColumn enum lists the columns of a columnar export and how many
+ * bytes each value takes. Fees are in cents, hours in hundredths, and the
+ * calculator and garage columns hold the number of the name in the export's
+ * dictionary.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public enum TransactionColumn {
+    DAY(4), TICKET(4), FEE(8), HOURS(8), CALC(4), GARAGE(4);
+
+    private final int width;
+
+    private TransactionColumn(int width) {
+        this.width = width;
+    }
+
+    /**
+     * Gets the number of bytes each value in the column takes
+     *
+     * @return Integer containing the width in bytes
+     */
+    public final int getWidth() {
+        return width;
+    }
+
+}
@@ -0,0 +1,117 @@
+package jss.parkinggarageapp;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * TransactionCursor class is used to read transactions one at a time instead of
+ * loading a whole history into a list first. It reads either one history file
+ * written with the TransactionFileFormat, or a range of a DailySegmentStore one
+ * segment after another, opening each segment only when the one before it is
+ * finished. Only the current line is held in memory, so a year of history can
+ * be read on a small heap.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class TransactionCursor implements Closeable {
+    private final DailySegmentStore store;
+    private final Iterator<DailySegmentStore.Segment> segments;
+    private BufferedReader in;
+    private long position;
+    private boolean closed;
+
+    /**
+     * Overrides the default constructor requiring a history file written with the
+     * TransactionFileFormat to be passed in
+     *
+     * @param history File containing one transaction per line
+     * @throws IOException If the file cannot be opened
+     * @throws IllegalArgumentException File cannot be null
+     */
+    public TransactionCursor(File history) throws IOException, IllegalArgumentException {
+        if (history == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        store = null;
+        segments = Collections.<DailySegmentStore.Segment>emptyList().iterator();
+        in = new BufferedReader(new InputStreamReader(new FileInputStream(history), StandardCharsets.UTF_8), 65536);
+    }
+
+    /**
+     * Overrides the default constructor requiring a segment store and the range
+     * of days to be passed in. Transactions come in the order of the segments,
+     * by garage and then by day.
+     *
+     * @param store Instance of the DailySegmentStore to read
+     * @param garageName String containing the garage name, or null for all garages
+     * @param fromDay First day in yyyyMMdd form
+     * @param toDay Last day in yyyyMMdd form
+     * @throws IllegalArgumentException Store cannot be null
+     */
+    public TransactionCursor(DailySegmentStore store, String garageName, int fromDay, int toDay)
+            throws IllegalArgumentException {
+        if (store == null) {
+            throw new IllegalArgumentException("Store cannot be null");
+        }
+        this.store = store;
+        segments = store.getSegments(garageName, fromDay, toDay).iterator();
+    }
+
+    /**
+     * next reads the next transaction
+     *
+     * @return Instance of the Transaction class, or null after the last transaction or once closed
+     * @throws IOException If a file cannot be read
+     * @throws IllegalArgumentException A line is not a transaction
+     */
+    public final Transaction next() throws IOException, IllegalArgumentException {
+        while (!closed) {
+            if (in != null) {
+                String line = in.readLine();
+                if (line != null) {
+                    if (!line.isEmpty()) {
+                        position++;
+                        return TransactionFileFormat.parse(line);
+                    }
+                    continue;
+                }
+                in.close();
+                in = null;
+            }
+            if (!segments.hasNext()) {
+                return null;
+            }
+            DailySegmentStore.Segment segment = segments.next();
+            if (segment.getFile().isFile()) {
+                in = store.openReader(segment);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of transactions read so far
+     *
+     * @return Long containing the count
+     */
+    public final long getPosition() {
+        return position;
+    }
+
+    /**
+     * close closes the file being read
+     *
+     * @throws IOException If the file cannot be closed
+     */
+    @Override
+    public final void close() throws IOException {
+        closed = true;
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+    }
+
+}
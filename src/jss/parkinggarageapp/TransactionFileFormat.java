@@ -0,0 +1,115 @@
+package jss.parkinggarageapp;
+
+import filemanager.*;
+import java.util.*;
+
+/**
+ * TransactionFileFormat class is used to write a whole Transaction on one line of
+ * a text file, so it can be read back with its ticket, vehicle, calculator,
+ * garage and day and not just the hours and fees. Fields are separated by | and
+ * the garage name comes last so it may hold any character but a new line:
+ * <pre>
+ *   ticket|vehicleID|hours|fees|calcID|day|garage
+ * </pre>
+ * When the calculator applied a rate other than 1 the fees field is written as
+ * fees;rate, so lines priced at the normal rate read the same as before.
+ * It implements FileFormatStrategy so the TextFileReader and TextFileWriter can
+ * use it in place of the CustomGarageFileFormat.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class TransactionFileFormat implements FileFormatStrategy {
+
+    /**
+     * decodeData turns every line of the text into a map of the transaction fields
+     *
+     * @param data String containing one transaction per line
+     * @return List of maps using the keys written by Transaction.toMap
+     * @throws IllegalArgumentException Data cannot be null and every line must be a transaction
+     */
+    @Override
+    public final List<LinkedHashMap<String, String>> decodeData(String data) throws IllegalArgumentException {
+        if (data == null) {
+            throw new IllegalArgumentException("Data cannot be null");
+        }
+        List<LinkedHashMap<String, String>> rows = new ArrayList<LinkedHashMap<String, String>>();
+        for (String line : data.split("\n")) {
+            if (!line.trim().isEmpty()) {
+                rows.add(parse(line).toMap());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * encodeData turns every map into one line of text
+     *
+     * @param data List of maps using the keys written by Transaction.toMap
+     * @return String containing one transaction per line
+     * @throws IllegalArgumentException Data cannot be null and every map must hold every key
+     */
+    @Override
+    public final String encodeData(List<LinkedHashMap<String, String>> data) throws IllegalArgumentException {
+        if (data == null) {
+            throw new IllegalArgumentException("Data cannot be null");
+        }
+        StringBuilder text = new StringBuilder();
+        for (LinkedHashMap<String, String> row : data) {
+            text.append(format(fromMap(row))).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * format writes one transaction as a line without the line ending
+     *
+     * @param transaction Instance of the Transaction class
+     * @return String containing the line
+     */
+    public static String format(Transaction transaction) {
+        return transaction.getTicketNumber() + "|" + transaction.getVehicleID() + "|" + transaction.getHours()
+                + "|" + transaction.getFees() + (transaction.getRate() != 1 ? ";" + transaction.getRate() : "")
+                + "|" + transaction.getCalcID() + "|" + transaction.getDay() + "|" + transaction.getGarageName();
+    }
+
+    /**
+     * parse reads one line written by format
+     *
+     * @param line String containing the line
+     * @return Instance of the Transaction class
+     * @throws IllegalArgumentException Line must contain every field
+     */
+    public static Transaction parse(String line) throws IllegalArgumentException {
+        String[] fields = line.split("\\|", 7);
+        if (fields.length != 7) {
+            throw new IllegalArgumentException("Improper transaction line: " + line);
+        }
+        int rateAt = fields[3].indexOf(';');
+        if (rateAt < 0) {
+            return new Transaction(Integer.parseInt(fields[0]), fields[1], Double.parseDouble(fields[2]),
+                    Double.parseDouble(fields[3]), fields[4], fields[6], Integer.parseInt(fields[5]));
+        }
+        return new Transaction(Integer.parseInt(fields[0]), fields[1], Double.parseDouble(fields[2]),
+                Double.parseDouble(fields[3].substring(0, rateAt)), fields[4], fields[6], Integer.parseInt(fields[5]),
+                Double.parseDouble(fields[3].substring(rateAt + 1)));
+    }
+
+    /**
+     * fromMap rebuilds a transaction from a map written by Transaction.toMap
+     *
+     * @param row Map containing every transaction key
+     * @return Instance of the Transaction class
+     * @throws IllegalArgumentException Map must hold every key
+     */
+    public static Transaction fromMap(Map<String, String> row) throws IllegalArgumentException {
+        if (row == null || row.get("Ticket") == null || row.get("Day") == null) {
+            throw new IllegalArgumentException("Row must contain every transaction field");
+        }
+        return new Transaction(Integer.parseInt(row.get("Ticket")), row.get("VehicleID"),
+                Double.parseDouble(row.get("Hours")), Double.parseDouble(row.get("Fees")), row.get("CalcID"),
+                row.get("Garage"), Integer.parseInt(row.get("Day")),
+                row.get("Rate") == null ? 1 : Double.parseDouble(row.get("Rate")));
+    }
+
+}
@@ -0,0 +1,180 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+
+/**
+ * TransactionHistory class is used to keep a long run of transactions in memory
+ * as one array per field instead of one object per checkout. Fees are kept in
+ * cents and hours in hundredths so sums are exact whatever order they are added
+ * in, and calculator IDs and garage names are stored once and referenced by number.
+ * Any range of rows can be split off and scanned on its own, which is what the
+ * TransactionAggregator does.
+ *
+ * The history is not synchronized: add rows from one thread and aggregate once
+ * the rows are in.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class TransactionHistory {
+    private int size;
+    private int[] days = new int[16];
+    private int[] tickets = new int[16];
+    private String[] vehicleIDs = new String[16];
+    private long[] feeCents = new long[16];
+    private long[] hourHundredths = new long[16];
+    private int[] calcIndexes = new int[16];
+    private int[] garageIndexes = new int[16];
+    private List<String> calcIDs = new ArrayList<String>();
+    private Map<String, Integer> calcLookup = new HashMap<String, Integer>();
+    private List<String> garageNames = new ArrayList<String>();
+    private Map<String, Integer> garageLookup = new HashMap<String, Integer>();
+
+    /**
+     * add appends one transaction to the end of the history
+     *
+     * @param transaction Instance of the Transaction class
+     * @throws IllegalArgumentException Transaction cannot be null
+     */
+    public final void add(Transaction transaction) throws IllegalArgumentException {
+        if (transaction == null) {
+            throw new IllegalArgumentException("Transaction cannot be null");
+        }
+        if (size == days.length) {
+            grow();
+        }
+        days[size] = transaction.getDay();
+        tickets[size] = transaction.getTicketNumber();
+        vehicleIDs[size] = transaction.getVehicleID();
+        feeCents[size] = toCents(transaction.getFees());
+        hourHundredths[size] = toHundredths(transaction.getHours());
+        calcIndexes[size] = indexOf(transaction.getCalcID(), calcIDs, calcLookup);
+        garageIndexes[size] = indexOf(transaction.getGarageName(), garageNames, garageLookup);
+        size++;
+    }
+
+    /**
+     * get rebuilds the transaction stored at the index
+     *
+     * @param index Integer position of the row
+     * @return Instance of the Transaction class
+     * @throws IndexOutOfBoundsException Index must be less than the size
+     */
+    public final Transaction get(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside the history");
+        }
+        return new Transaction(tickets[index], vehicleIDs[index], hourHundredths[index] / 100.0,
+                feeCents[index] / 100.0, calcIDs.get(calcIndexes[index]), garageNames.get(garageIndexes[index]),
+                days[index]);
+    }
+
+    /**
+     * Gets the number of transactions in the history
+     *
+     * @return Integer containing the number of rows
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * Gets the calculator IDs in the order they were first seen
+     *
+     * @return Unmodifiable list of calculator IDs
+     */
+    public final List<String> getCalcIDs() {
+        return Collections.unmodifiableList(calcIDs);
+    }
+
+    /**
+     * Gets the garage names in the order they were first seen
+     *
+     * @return Unmodifiable list of garage names
+     */
+    public final List<String> getGarageNames() {
+        return Collections.unmodifiableList(garageNames);
+    }
+
+    /**
+     * getGarageIndex gets the number a garage name is stored as
+     *
+     * @param garageName String containing the garage name
+     * @return Integer index of the garage, or -1 when it is not in the history
+     */
+    public final int getGarageIndex(String garageName) {
+        Integer index = garageLookup.get(garageName);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * toCents converts a dollar amount to whole cents
+     *
+     * @param dollars Double containing the dollar amount
+     * @return Long containing the cents
+     */
+    public static long toCents(double dollars) {
+        return Math.round(dollars * 100);
+    }
+
+    /**
+     * toHundredths converts hours to whole hundredths of an hour
+     *
+     * @param hours Double containing the hours
+     * @return Long containing the hundredths of an hour
+     */
+    public static long toHundredths(double hours) {
+        return Math.round(hours * 100);
+    }
+
+    // The column accessors below hand out the backing arrays so the aggregator can
+    // scan rows without copying; only the first size() entries are valid
+
+    final int[] days() {
+        return days;
+    }
+
+    final long[] feeCents() {
+        return feeCents;
+    }
+
+    final long[] hourHundredths() {
+        return hourHundredths;
+    }
+
+    final int[] calcIndexes() {
+        return calcIndexes;
+    }
+
+    final int[] garageIndexes() {
+        return garageIndexes;
+    }
+
+    /**
+     * grow doubles every column when the history is full
+     */
+    private void grow() {
+        int capacity = days.length * 2;
+        days = Arrays.copyOf(days, capacity);
+        tickets = Arrays.copyOf(tickets, capacity);
+        vehicleIDs = Arrays.copyOf(vehicleIDs, capacity);
+        feeCents = Arrays.copyOf(feeCents, capacity);
+        hourHundredths = Arrays.copyOf(hourHundredths, capacity);
+        calcIndexes = Arrays.copyOf(calcIndexes, capacity);
+        garageIndexes = Arrays.copyOf(garageIndexes, capacity);
+    }
+
+    /**
+     * indexOf gets the number a value is stored as, adding it when it is new
+     */
+    private static int indexOf(String value, List<String> values, Map<String, Integer> lookup) {
+        Integer index = lookup.get(value);
+        if (index == null) {
+            index = values.size();
+            values.add(value);
+            lookup.put(value, index);
+        }
+        return index;
+    }
+
+}
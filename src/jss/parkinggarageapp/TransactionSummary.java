@@ -0,0 +1,200 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+
+/**
+ * TransactionSummary class is used to hold the totals of a group of transactions:
+ * how many there were, the revenue, the hours, and the same three figures for each
+ * calculator. Amounts are kept in cents and hundredths of an hour so summaries
+ * merged in any order give exactly the same result.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class TransactionSummary {
+    private long count;
+    private long feeCents;
+    private long hourHundredths;
+    private TreeMap<String, long[]> byCalculator = new TreeMap<String, long[]>();
+
+    /**
+     * add counts one transaction in the summary
+     *
+     * @param calcID String identifying the calculator that priced the fee
+     * @param feeCents Long containing the fee in cents
+     * @param hourHundredths Long containing the hours in hundredths
+     */
+    public final void add(String calcID, long feeCents, long hourHundredths) {
+        add(calcID, 1, feeCents, hourHundredths);
+    }
+
+    /**
+     * add counts a group of transactions for one calculator in the summary
+     *
+     * @param calcID String identifying the calculator that priced the fees
+     * @param count Long containing the number of transactions
+     * @param feeCents Long containing the total fees in cents
+     * @param hourHundredths Long containing the total hours in hundredths
+     */
+    public final void add(String calcID, long count, long feeCents, long hourHundredths) {
+        this.count += count;
+        this.feeCents += feeCents;
+        this.hourHundredths += hourHundredths;
+
+        long[] totals = byCalculator.get(calcID);
+        if (totals == null) {
+            totals = new long[3];
+            byCalculator.put(calcID, totals);
+        }
+        totals[0] += count;
+        totals[1] += feeCents;
+        totals[2] += hourHundredths;
+    }
+
+    /**
+     * merge adds every total of another summary to this one
+     *
+     * @param other Instance of the TransactionSummary class
+     * @return This summary, so merges can be chained
+     * @throws IllegalArgumentException Summary cannot be null
+     */
+    public final TransactionSummary merge(TransactionSummary other) throws IllegalArgumentException {
+        if (other == null) {
+            throw new IllegalArgumentException("Summary cannot be null");
+        }
+        for (Map.Entry<String, long[]> entry : other.byCalculator.entrySet()) {
+            long[] totals = entry.getValue();
+            add(entry.getKey(), totals[0], totals[1], totals[2]);
+        }
+        return this;
+    }
+
+    /**
+     * Gets the number of transactions
+     *
+     * @return Long containing the count
+     */
+    public final long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the total fees
+     *
+     * @return Double containing the revenue in dollars
+     */
+    public final double getRevenue() {
+        return feeCents / 100.0;
+    }
+
+    /**
+     * Gets the total hours
+     *
+     * @return Double containing the hours
+     */
+    public final double getTotalHours() {
+        return hourHundredths / 100.0;
+    }
+
+    /**
+     * Gets the IDs of every calculator in the summary in sorted order
+     *
+     * @return Unmodifiable set of calculator IDs
+     */
+    public final Set<String> getCalcIDs() {
+        return Collections.unmodifiableSet(byCalculator.keySet());
+    }
+
+    /**
+     * Gets the number of transactions priced by one calculator
+     *
+     * @param calcID String identifying the calculator
+     * @return Long containing the count, zero when the calculator is not in the summary
+     */
+    public final long getCount(String calcID) {
+        long[] totals = byCalculator.get(calcID);
+        return totals == null ? 0 : totals[0];
+    }
+
+    /**
+     * Gets the fees priced by one calculator
+     *
+     * @param calcID String identifying the calculator
+     * @return Double containing the revenue in dollars
+     */
+    public final double getRevenue(String calcID) {
+        long[] totals = byCalculator.get(calcID);
+        return totals == null ? 0 : totals[1] / 100.0;
+    }
+
+    /**
+     * Gets the hours priced by one calculator
+     *
+     * @param calcID String identifying the calculator
+     * @return Double containing the hours
+     */
+    public final double getTotalHours(String calcID) {
+        long[] totals = byCalculator.get(calcID);
+        return totals == null ? 0 : totals[2] / 100.0;
+    }
+
+    /**
+     * Overrides the toString method, shows the totals and each calculator's share
+     *
+     * @return A string containing the count, revenue and hours
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append("Transactions: ").append(count).append(" Revenue: $").append(getRevenue())
+                .append(" Hours: ").append(getTotalHours());
+        for (Map.Entry<String, long[]> entry : byCalculator.entrySet()) {
+            long[] totals = entry.getValue();
+            text.append(" [").append(entry.getKey()).append(": ").append(totals[0]).append(" $")
+                    .append(totals[1] / 100.0).append(" ").append(totals[2] / 100.0).append("h]");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Overrides the equal method, two summaries are equal when every total matches
+     *
+     * @param obj Instance of the object being compared
+     * @return A boolean whether or not the two objects are equal
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final TransactionSummary other = (TransactionSummary) obj;
+        if (count != other.count || feeCents != other.feeCents || hourHundredths != other.hourHundredths
+                || !byCalculator.keySet().equals(other.byCalculator.keySet())) {
+            return false;
+        }
+        for (Map.Entry<String, long[]> entry : byCalculator.entrySet()) {
+            if (!Arrays.equals(entry.getValue(), other.byCalculator.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Overrides the hashCode method, uses the count and totals
+     *
+     * @return Integer containing the hash code
+     */
+    @Override
+    public int hashCode() {
+        int hash = 3;
+        hash = 53 * hash + (int) (count ^ (count >>> 32));
+        hash = 53 * hash + (int) (feeCents ^ (feeCents >>> 32));
+        hash = 53 * hash + (int) (hourHundredths ^ (hourHundredths >>> 32));
+        return hash;
+    }
+
+}
@@ -39,13 +39,24 @@ public class Vehicle {
      *                                  to 3, or greater than equal to 5
      */
     public final void setVehicleID(String vehicleID) throws IllegalArgumentException{
-        if(vehicleID == null || vehicleID.length() <= 3 || vehicleID.length() >= 5) {
+        if(validateVehicleID(vehicleID) != GateStatus.OK) {
             throw new IllegalArgumentException("Improper vehicle ID");
         }else {
             this.vehicleID = vehicleID;
         }
     }
 
+    /**Checks a vehicleID the way setVehicleID does without throwing, for
+     * checking many IDs where most bad ones are expected
+     * 
+     * @param vehicleID  4 character String representing the vehicle
+     * @return GateStatus.OK, or GateStatus.BAD_VEHICLE_ID if vehicleID is null
+     *         or not 4 characters long
+     */
+    public static int validateVehicleID(String vehicleID) {
+        return vehicleID == null || vehicleID.length() != 4 ? GateStatus.BAD_VEHICLE_ID : GateStatus.OK;
+    }
+
     /**Gets the instances of the Parking Ticket assigned to the vehicle
      * 
      * @return ticket instances of the Parking Ticket
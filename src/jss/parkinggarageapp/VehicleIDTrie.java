@@ -0,0 +1,233 @@
+package jss.parkinggarageapp;
+
+import java.util.*;
+
+/**
+ * VehicleIDTrie class is used to look up vehicle IDs from part of a plate or a
+ * plate with one character misread, for when a customer has lost their ticket.
+ * Each character of an ID is one level of the tree, so a lookup only visits the
+ * branches that can match instead of every vehicle on the receipt. Children are
+ * kept in a small sorted array per node, and results come back in sorted order.
+ *
+ * The trie is not synchronized; the Receipt holding it is only used through the
+ * synchronized methods of the AutomatedTeller.
+ *
+ * @author Jamie Studzinski
+ * @version 1.2
+ */
+public class VehicleIDTrie {
+    private Node root = new Node();
+    private int size;
+
+    /**
+     * Node class holds the children of one prefix and how many times the prefix
+     * ends an ID
+     */
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int count;
+
+        private Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index < 0 ? null : children[index];
+        }
+
+        private Node addChild(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, keys.length - index);
+            newKeys[index] = key;
+            newChildren[index] = new Node();
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[index];
+        }
+    }
+
+    /**
+     * add records a vehicle ID, counting it again when it is already in the trie
+     *
+     * @param vehicleID String containing the vehicle ID
+     * @throws IllegalArgumentException Vehicle ID cannot be null or empty
+     */
+    public final void add(String vehicleID) throws IllegalArgumentException {
+        if (vehicleID == null || vehicleID.isEmpty()) {
+            throw new IllegalArgumentException("Vehicle ID cannot be null or empty");
+        }
+        Node node = root;
+        for (int i = 0; i < vehicleID.length(); i++) {
+            node = node.addChild(vehicleID.charAt(i));
+        }
+        if (node.count++ == 0) {
+            size++;
+        }
+    }
+
+    /**
+     * remove takes one count of a vehicle ID away, dropping the branches only it
+     * used once its count reaches zero
+     *
+     * @param vehicleID String containing the vehicle ID
+     * @return A boolean whether the ID was in the trie
+     */
+    public final boolean remove(String vehicleID) {
+        if (vehicleID == null || vehicleID.isEmpty() || !contains(vehicleID)) {
+            return false;
+        }
+        remove(root, vehicleID, 0);
+        return true;
+    }
+
+    /**
+     * remove takes one count away below the node and reports whether the node
+     * is now empty and can be dropped by its parent
+     */
+    private boolean remove(Node node, String vehicleID, int depth) {
+        if (depth == vehicleID.length()) {
+            if (--node.count == 0) {
+                size--;
+            }
+        } else {
+            int index = Arrays.binarySearch(node.keys, vehicleID.charAt(depth));
+            if (remove(node.children[index], vehicleID, depth + 1)) {
+                int moved = node.keys.length - index - 1;
+                char[] newKeys = new char[node.keys.length - 1];
+                Node[] newChildren = new Node[node.keys.length - 1];
+                System.arraycopy(node.keys, 0, newKeys, 0, index);
+                System.arraycopy(node.children, 0, newChildren, 0, index);
+                System.arraycopy(node.keys, index + 1, newKeys, index, moved);
+                System.arraycopy(node.children, index + 1, newChildren, index, moved);
+                node.keys = newKeys;
+                node.children = newChildren;
+            }
+        }
+        return node.count == 0 && node.keys.length == 0;
+    }
+
+    /**
+     * contains checks if a vehicle ID is in the trie
+     *
+     * @param vehicleID String containing the vehicle ID
+     * @return A boolean whether the ID has been added
+     */
+    public final boolean contains(String vehicleID) {
+        Node node = find(vehicleID);
+        return node != null && node.count > 0;
+    }
+
+    /**
+     * getCount gets how many times a vehicle ID has been added
+     *
+     * @param vehicleID String containing the vehicle ID
+     * @return Integer containing the count, zero when the ID is not in the trie
+     */
+    public final int getCount(String vehicleID) {
+        Node node = find(vehicleID);
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * findByPrefix gets the vehicle IDs starting with the prefix
+     *
+     * @param prefix String containing the start of the ID, empty for every ID
+     * @param limit Most IDs to return
+     * @return List of the matching IDs in sorted order
+     * @throws IllegalArgumentException Prefix cannot be null and limit must be greater than zero
+     */
+    public final List<String> findByPrefix(String prefix, int limit) throws IllegalArgumentException {
+        if (prefix == null || limit <= 0) {
+            throw new IllegalArgumentException("Prefix cannot be null and limit must be greater than zero");
+        }
+        List<String> matches = new ArrayList<String>();
+        Node node = find(prefix);
+        if (node != null) {
+            collect(node, new StringBuilder(prefix), matches, limit);
+        }
+        return matches;
+    }
+
+    /**
+     * findSimilar gets the vehicle IDs that match exactly or differ in one
+     * character, which covers a single misread character on the plate
+     *
+     * @param vehicleID String containing the vehicle ID as read
+     * @return List of the matching IDs in sorted order
+     * @throws IllegalArgumentException Vehicle ID cannot be null
+     */
+    public final List<String> findSimilar(String vehicleID) throws IllegalArgumentException {
+        if (vehicleID == null) {
+            throw new IllegalArgumentException("Vehicle ID cannot be null");
+        }
+        List<String> matches = new ArrayList<String>();
+        findSimilar(root, vehicleID, 0, 1, new StringBuilder(), matches);
+        return matches;
+    }
+
+    /**
+     * clear removes every vehicle ID
+     */
+    public final void clear() {
+        root = new Node();
+        size = 0;
+    }
+
+    /**
+     * Gets the number of different vehicle IDs in the trie
+     *
+     * @return Integer containing the number of IDs
+     */
+    public final int size() {
+        return size;
+    }
+
+    private Node find(String text) {
+        if (text == null) {
+            return null;
+        }
+        Node node = root;
+        for (int i = 0; i < text.length() && node != null; i++) {
+            node = node.child(text.charAt(i));
+        }
+        return node;
+    }
+
+    private static void collect(Node node, StringBuilder id, List<String> matches, int limit) {
+        if (node.count > 0) {
+            matches.add(id.toString());
+        }
+        for (int i = 0; i < node.keys.length && matches.size() < limit; i++) {
+            id.append(node.keys[i]);
+            collect(node.children[i], id, matches, limit);
+            id.setLength(id.length() - 1);
+        }
+    }
+
+    private static void findSimilar(Node node, String vehicleID, int depth, int changesLeft, StringBuilder id,
+            List<String> matches) {
+        if (depth == vehicleID.length()) {
+            if (node.count > 0) {
+                matches.add(id.toString());
+            }
+            return;
+        }
+        char wanted = vehicleID.charAt(depth);
+        for (int i = 0; i < node.keys.length; i++) {
+            boolean same = node.keys[i] == wanted;
+            if (same || changesLeft > 0) {
+                id.append(node.keys[i]);
+                findSimilar(node.children[i], vehicleID, depth + 1, same ? changesLeft : changesLeft - 1, id, matches);
+                id.setLength(id.length() - 1);
+            }
+        }
+    }
+
+}